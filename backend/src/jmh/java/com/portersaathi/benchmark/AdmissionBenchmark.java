@@ -0,0 +1,84 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.DriverRateLimiter;
+import com.portersaathi.service.QueryExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a refused query costs compared with answering it: a rate-limited
+ * driver, a shed greeting, and a fully answered earnings query for scale.
+ * The context is set up so every limited and shed call is refused.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private DriverRateLimiter rateLimiter;
+    private QueryExecutor queryExecutor;
+    private AssistantService assistantService;
+    private AssistantRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // One token every ~3 hours, and shedding from the first permit on
+        context = BenchmarkContext.start("porter.rate-limit-per-second=0.0001", "porter.rate-limit-burst=1",
+                "porter.execution-shed-threshold=0");
+        rateLimiter = context.getBean(DriverRateLimiter.class);
+        queryExecutor = context.getBean(QueryExecutor.class);
+        assistantService = context.getBean(AssistantService.class);
+        request = new AssistantRequest();
+        request.setDriverId("driver123");
+        request.setQuery("Aaj ka kharcha kaat ke kitna kamaya?");
+        rateLimiter.tryAcquire("driver123");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long rateLimited() {
+        return rateLimiter.tryAcquire("driver123");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long rateLimitedContended() {
+        return rateLimiter.tryAcquire("driver123");
+    }
+
+    @Benchmark
+    public CompletableFuture<AssistantResponse> shed() {
+        return queryExecutor.execute(() -> assistantService.processQuery(request), true);
+    }
+
+    @Benchmark
+    public AssistantResponse answered() {
+        return assistantService.processQuery(request);
+    }
+}
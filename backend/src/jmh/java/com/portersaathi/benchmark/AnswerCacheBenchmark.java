@@ -0,0 +1,113 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.service.AssistantService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A driver repeating a question with and without answer memoization
+ * ({@code porter.answer-cache-drivers=0} turns it off): today's earnings,
+ * yesterday's, and the week-on-week business comparison, which reads the
+ * most data. {@code askAfterUpdate} writes the driver's earnings before
+ * every query, so each one misses; it shows what a miss costs on top of
+ * the plain computation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnswerCacheBenchmark {
+
+    @Param({"0", "100000"})
+    public int answerCacheDrivers;
+
+    private ConfigurableApplicationContext context;
+    private AssistantService assistantService;
+    private AssistantRequest today;
+    private AssistantRequest yesterday;
+    private AssistantRequest business;
+    private DailyEarnings earnings;
+    private LocalDate date;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("porter.answer-cache-drivers=" + answerCacheDrivers);
+        assistantService = context.getBean(AssistantService.class);
+
+        LocalDate now = LocalDate.now();
+        for (int day = 0; day < 60; day++) {
+            assistantService.updateDriverEarnings("driver123", now.minusDays(day), earnings(day));
+        }
+        earnings = earnings(0);
+        date = now.minusDays(30);
+
+        today = request("Aaj ka kharcha kaat ke kitna kamaya?");
+        yesterday = request("Kal maine kitna kamaya?");
+        business = request("Pichle hafte ke mukable mera business kaisa raha?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AssistantResponse askToday() {
+        return assistantService.processQuery(today);
+    }
+
+    @Benchmark
+    public AssistantResponse askYesterday() {
+        return assistantService.processQuery(yesterday);
+    }
+
+    @Benchmark
+    public AssistantResponse askBusiness() {
+        return assistantService.processQuery(business);
+    }
+
+    @Benchmark
+    public AssistantResponse askAfterUpdate() {
+        assistantService.updateDriverEarnings("driver123", date, earnings);
+        return assistantService.processQuery(business);
+    }
+
+    private static DailyEarnings earnings(int day) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(2000 + day % 500);
+        earnings.setExpenses(400 + day % 100);
+        earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+        earnings.setCompletedTrips(6 + day % 4);
+        if (day % 10 == 0) {
+            earnings.getPenalties().put("penalty" + day, "Late delivery by 15 minutes");
+        }
+        return earnings;
+    }
+
+    private static AssistantRequest request(String query) {
+        AssistantRequest request = new AssistantRequest();
+        request.setDriverId("driver123");
+        request.setQuery(query);
+        return request;
+    }
+}
@@ -0,0 +1,52 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.PorterSaathiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Starts the application without the web server, so benchmarks exercise the
+ * same wired beans as production. Persistence is off unless a benchmark
+ * turns it back on.
+ */
+final class BenchmarkContext {
+
+    private static final String[] DEFAULTS = {
+            "spring.main.banner-mode=off",
+            "logging.level.root=WARN",
+            "logging.level.com.portersaathi=WARN",
+            "logging.level.org.springframework.web=WARN",
+            "logging.level.org.springframework.web.socket=WARN",
+            "porter.persistence-enabled=false"
+    };
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        // Devtools would otherwise restart the context inside the forked benchmark JVM
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        // Passed as command-line arguments so they override application.properties;
+        // a repeated argument would turn into a list, so overrides replace defaults by key
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String property : concat(DEFAULTS, properties)) {
+            merged.put(property.substring(0, property.indexOf('=')), property);
+        }
+        String[] args = merged.values().stream().map(property -> "--" + property).toArray(String[]::new);
+
+        return new SpringApplicationBuilder(PorterSaathiApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        return Stream.concat(Stream.of(first), Stream.of(second)).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,48 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.service.ConversationStore;
+import com.portersaathi.service.Intent;
+
+import java.time.LocalDate;
+
+/**
+ * Retained heap of the conversation store per concurrent session. Driver
+ * IDs are allocated before measuring, as the store keys on the IDs the
+ * driver store already holds.
+ *
+ * Usage: ConversationFootprint [sessions] (default 100000).
+ */
+public final class ConversationFootprint {
+
+    private static final Intent[] INTENTS = {Intent.EARNINGS, Intent.PENALTY, Intent.CHALLAN, Intent.DIGILOCKER};
+
+    private ConversationFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        LocalDate today = LocalDate.now();
+        String[] driverIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            driverIds[i] = "driver" + i;
+        }
+
+        long before = usedHeap();
+        ConversationStore store = new ConversationStore();
+        for (int i = 0; i < sessions; i++) {
+            store.remember(driverIds[i], INTENTS[i % INTENTS.length], today.minusDays(i % 3), i % 7);
+        }
+        long bytes = usedHeap() - before;
+
+        System.out.printf("%,d sessions: %,d bytes, %.1f bytes per session%n",
+                store.size(), bytes, (double) bytes / sessions);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,105 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.RollingEarnings;
+import com.portersaathi.model.Vehicle;
+import com.portersaathi.service.DriverStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver store reads at fleet scale, from all cores at once.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class DriverLookupBenchmark {
+
+    private static final int HISTORY_DAYS = 7;
+
+    @Param({"10000", "1000000"})
+    public int drivers;
+
+    private ConfigurableApplicationContext context;
+    private DriverStore driverStore;
+    private String[] driverIds;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        driverStore = context.getBean(DriverStore.class);
+        today = LocalDate.now();
+
+        driverIds = new String[drivers];
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench" + i);
+            driver.setName("Driver " + i);
+            Vehicle vehicle = new Vehicle();
+            vehicle.setType(i % 2 == 0 ? "Tata Ace" : "Mahindra Bolero");
+            driver.setVehicle(vehicle);
+            for (int day = 0; day < HISTORY_DAYS; day++) {
+                DailyEarnings earnings = new DailyEarnings();
+                earnings.setTotalEarnings(1500 + (i + day) % 1000);
+                earnings.setExpenses(300 + day * 10);
+                earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+                earnings.setCompletedTrips(5 + day % 5);
+                driver.getEarnings().put(today.minusDays(day), earnings);
+            }
+            driverStore.put(driver);
+            driverIds[i] = driver.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Driver profileLookup() {
+        return driverStore.get(randomDriver());
+    }
+
+    @Benchmark
+    public DailyEarnings todayLookup() {
+        return driverStore.getEarnings(randomDriver(), today);
+    }
+
+    @Benchmark
+    public RollingEarnings rollingLookup() {
+        return driverStore.getRollingEarnings(randomDriver());
+    }
+
+    @Benchmark
+    public Driver fullDriverLookup() {
+        return driverStore.getWithEarnings(randomDriver());
+    }
+
+    private String randomDriver() {
+        return driverIds[ThreadLocalRandom.current().nextInt(driverIds.length)];
+    }
+}
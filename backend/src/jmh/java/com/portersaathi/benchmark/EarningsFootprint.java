@@ -0,0 +1,81 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.service.EarningsStore;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retained heap of a year of earnings per driver: the former
+ * {@code HashMap<LocalDate, DailyEarnings>} layout against the columnar
+ * EarningsStore, extrapolated to 1M drivers x 365 days.
+ *
+ * Usage: EarningsFootprint [drivers] (default 10000). Give the JVM enough
+ * heap for both layouts at the chosen size.
+ */
+public final class EarningsFootprint {
+
+    private static final int DAYS = 365;
+    private static final long FLEET = 1_000_000L;
+
+    private EarningsFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int drivers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        LocalDate today = LocalDate.now();
+
+        long before = usedHeap();
+        Map<String, Map<LocalDate, DailyEarnings>> legacy = new HashMap<>();
+        for (int d = 0; d < drivers; d++) {
+            Map<LocalDate, DailyEarnings> days = new HashMap<>();
+            for (int day = 0; day < DAYS; day++) {
+                days.put(today.minusDays(day), sampleDay(d, day));
+            }
+            legacy.put("driver" + d, days);
+        }
+        long legacyBytes = usedHeap() - before;
+        report("HashMap<LocalDate, DailyEarnings>", legacyBytes, drivers);
+        legacy.clear();
+        legacy = null;
+
+        before = usedHeap();
+        EarningsStore store = new EarningsStore();
+        for (int d = 0; d < drivers; d++) {
+            String driverId = "driver" + d;
+            for (int day = 0; day < DAYS; day++) {
+                store.put(driverId, today.minusDays(day), sampleDay(d, day));
+            }
+        }
+        long columnarBytes = usedHeap() - before;
+        report("EarningsStore (columnar)", columnarBytes, drivers);
+        System.out.printf("Columns incl. growth headroom: %.1f bytes per driver-day%n",
+                (double) store.columnBytes() / ((long) drivers * DAYS));
+        System.out.printf("Reduction: %.1fx%n", (double) legacyBytes / columnarBytes);
+    }
+
+    private static DailyEarnings sampleDay(int driver, int day) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(1500 + (driver + day) % 1000);
+        earnings.setExpenses(300 + day % 50);
+        earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+        earnings.setCompletedTrips(5 + day % 5);
+        return earnings;
+    }
+
+    private static void report(String layout, long bytes, int drivers) {
+        double perDay = (double) bytes / ((long) drivers * DAYS);
+        System.out.printf("%-36s %8.1f bytes/driver-day, %6.1f GB for %,d drivers x %d days%n",
+                layout, perDay, perDay * FLEET * DAYS / 1e9, FLEET, DAYS);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,85 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.Vehicle;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.ExpiryReminders;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+
+/**
+ * Memory and time of the expiry reminder index: retained heap per entry
+ * with every driver's insurance expiring within the next year, and the
+ * daily check over a month of days, each sending that day's reminders to
+ * the broker.
+ *
+ * Usage: ExpiryReminderBenchmark [drivers] (default 1000000)
+ */
+public final class ExpiryReminderBenchmark {
+
+    private static final int DAYS = 30;
+
+    private ExpiryReminderBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int drivers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ConfigurableApplicationContext context = BenchmarkContext.start("porter.expiry-check-seconds=" + Integer.MAX_VALUE);
+        DriverStore store = context.getBean(DriverStore.class);
+        ExpiryReminders reminders = context.getBean(ExpiryReminders.class);
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("fleet" + i);
+            driver.setName("Driver " + i);
+            Vehicle vehicle = new Vehicle();
+            vehicle.setType("Tata Ace");
+            vehicle.setNumber("MH01AB" + (1000 + i % 9000));
+            vehicle.setInsuranceExpiry(today.plusDays(1 + i % 365).toString());
+            driver.setVehicle(vehicle);
+            store.put(driver);
+        }
+
+        long entriesBefore = reminders.getScheduled();
+        long before = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < drivers; i++) {
+            reminders.schedule("fleet" + i);
+        }
+        double scheduleMillis = (System.nanoTime() - start) / 1e6;
+        long entries = reminders.getScheduled() - entriesBefore;
+        long bytes = usedHeap() - before;
+        System.out.printf("Indexed %,d entries for %,d drivers in %.0f ms: %,d bytes, %.1f bytes per entry%n",
+                entries, drivers, scheduleMillis, bytes, (double) bytes / entries);
+
+        long sent = 0;
+        long slowest = 0;
+        start = System.nanoTime();
+        for (int day = 1; day <= DAYS; day++) {
+            long dayStart = System.nanoTime();
+            sent += reminders.drain(today.plusDays(day));
+            slowest = Math.max(slowest, System.nanoTime() - dayStart);
+        }
+        double drainMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("Checked %d days: %,d reminders sent in %.0f ms, %.2f us each, slowest day %.1f ms%n",
+                DAYS, sent, drainMillis, drainMillis * 1000 / Math.max(1, sent), slowest / 1e6);
+
+        start = System.nanoTime();
+        int checks = 1_000_000;
+        for (int i = 0; i < checks; i++) {
+            reminders.drain(today.plusDays(DAYS));
+        }
+        System.out.printf("Check with nothing due: %.0f ns%n", (System.nanoTime() - start) / (double) checks);
+        context.close();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
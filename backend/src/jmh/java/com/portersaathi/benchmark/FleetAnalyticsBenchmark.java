@@ -0,0 +1,107 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.Vehicle;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.FleetAnalytics;
+import com.portersaathi.service.FleetSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fleet analytics at fleet scale: a full recompute re-reads every driver's
+ * week, an incremental refresh with nothing changed only compares store
+ * versions, and a peer comparison reads the precomputed snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FleetAnalyticsBenchmark {
+
+    private static final int HISTORY_DAYS = 7;
+    private static final String[] VEHICLE_TYPES = {"Tata Ace", "Mahindra Bolero", "Ashok Leyland Dost", "Three Wheeler"};
+
+    @Param({"100000", "1000000"})
+    public int drivers;
+
+    private ConfigurableApplicationContext context;
+    private FleetAnalytics fleetAnalytics;
+    private double[] weeklyNet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Refreshes only happen when the benchmark asks for them
+        context = BenchmarkContext.start("porter.fleet-analytics-refresh-seconds=86400");
+        DriverStore driverStore = context.getBean(DriverStore.class);
+        fleetAnalytics = context.getBean(FleetAnalytics.class);
+        LocalDate today = LocalDate.now();
+
+        weeklyNet = new double[1024];
+        for (int i = 0; i < weeklyNet.length; i++) {
+            weeklyNet[i] = 5000 + ThreadLocalRandom.current().nextInt(15000);
+        }
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench" + i);
+            driver.setName("Driver " + i);
+            Vehicle vehicle = new Vehicle();
+            vehicle.setType(VEHICLE_TYPES[i % VEHICLE_TYPES.length]);
+            driver.setVehicle(vehicle);
+            for (int day = 0; day < HISTORY_DAYS; day++) {
+                DailyEarnings earnings = new DailyEarnings();
+                earnings.setTotalEarnings(1500 + (i * 31 + day * 7) % 1000);
+                earnings.setExpenses(300 + day * 10);
+                earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+                earnings.setCompletedTrips(5 + (i + day) % 5);
+                driver.getEarnings().put(today.minusDays(day), earnings);
+            }
+            driverStore.put(driver);
+        }
+        fleetAnalytics.refresh(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FleetSegment fullRecompute() {
+        fleetAnalytics.refresh(true);
+        return fleetAnalytics.fleet();
+    }
+
+    @Benchmark
+    public FleetSegment incrementalRefresh() {
+        fleetAnalytics.refresh(false);
+        return fleetAnalytics.fleet();
+    }
+
+    @Benchmark
+    public double peerComparison() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        FleetSegment peers = fleetAnalytics.segment(VEHICLE_TYPES[random.nextInt(VEHICLE_TYPES.length)]);
+        return peers.weeklyNetRank(weeklyNet[random.nextInt(weeklyNet.length)])
+                + peers.weeklyNetPercentile(50) + peers.weeklyNetPercentile(90) + peers.tripsPerDayPercentile(50);
+    }
+}
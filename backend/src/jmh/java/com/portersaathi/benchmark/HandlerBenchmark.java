@@ -0,0 +1,69 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.AssistantService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AssistantService.processQuery for one representative query per handler.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerBenchmark {
+
+    @Param({
+            "Aaj ka kharcha kaat ke kitna kamaya?",
+            "Mera business pichle hafte se behtar hai ya nahi?",
+            "Kya mujhe koi penalty lagi hai?",
+            "Challan kaise contest karein?",
+            "DigiLocker par documents kaise upload karein?",
+            "Insurance kaise renew karein?",
+            "madad chahiye",
+            "Namaste",
+            "mera payment kab aayega"
+    })
+    public String query;
+
+    private ConfigurableApplicationContext context;
+    private AssistantService assistantService;
+    private AssistantRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        assistantService = context.getBean(AssistantService.class);
+        request = new AssistantRequest();
+        request.setDriverId("driver123");
+        request.setQuery(query);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AssistantResponse processQuery() {
+        return assistantService.processQuery(request);
+    }
+}
@@ -0,0 +1,99 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.Intent;
+import com.portersaathi.service.IntentMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent routing over the Hinglish query corpus. The compiled matcher should
+ * stay flat as the keyword table grows; the legacy contains() chain is kept
+ * as the baseline it replaced.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntentRoutingBenchmark {
+
+    @Param({"0", "1000", "5000"})
+    public int extraKeywords;
+
+    private String[] queries;
+    private IntentMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConfigurableApplicationContext context = BenchmarkContext.start();
+        Map<Intent, List<String>> table = context.getBean(AssistantService.class).getIntentKeywords();
+        matcher = IntentMatcher.compile(QueryCorpus.withSyntheticKeywords(table, extraKeywords));
+        context.close();
+        queries = QueryCorpus.QUERIES;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(28) // one operation per corpus query
+    public void compiledMatcher(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(matcher.match(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(28) // one operation per corpus query
+    public void legacyContainsChain(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(legacyRoute(query));
+        }
+    }
+
+    // The if/else chain AssistantService.processQuery used before the matcher
+    private static Intent legacyRoute(String rawQuery) {
+        String query = rawQuery.toLowerCase();
+        if (query.contains("namaste") || query.contains("hello") || query.contains("hi")) {
+            return Intent.GREETING;
+        }
+        if (query.contains("thank") || query.contains("dhanyavad")) {
+            return Intent.THANKS;
+        }
+        if (query.contains("help") || query.contains("madad")) {
+            return Intent.HELP;
+        }
+        if (query.contains("kamaya") || query.contains("earn") || query.contains("earning")) {
+            return Intent.EARNINGS;
+        } else if (query.contains("penalty") || query.contains("fine") || query.contains("dand")) {
+            return Intent.PENALTY;
+        } else if (query.contains("challan") || query.contains("ticket")) {
+            return Intent.CHALLAN;
+        } else if (query.contains("digilocker") || query.contains("document")) {
+            return Intent.DIGILOCKER;
+        } else if (query.contains("business") || query.contains("vyapar")) {
+            return Intent.BUSINESS;
+        } else if (query.contains("emergency") || query.contains("sahayata") || query.contains("help")) {
+            return Intent.EMERGENCY;
+        } else if (query.contains("insurance") || query.contains("bima")) {
+            return Intent.INSURANCE;
+        }
+        return Intent.UNKNOWN;
+    }
+}
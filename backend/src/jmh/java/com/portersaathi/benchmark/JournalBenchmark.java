@@ -0,0 +1,211 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.EmergencyContact;
+import com.portersaathi.model.Vehicle;
+import com.portersaathi.persistence.DriverJournal;
+import com.portersaathi.service.DriverStore;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput and startup time of the persistent driver store at fleet
+ * scale.
+ *
+ * The write phase loads the drivers and applies random earnings updates
+ * from many threads with fsync on, then halts the JVM without a clean
+ * shutdown, like a crash. A second JVM then measures a cold start that
+ * replays the whole log, shuts down cleanly (writing a snapshot) and
+ * measures a warm start from that snapshot.
+ *
+ * Usage: JournalBenchmark [drivers] [updates] [threads] (default 1000000 1000000 32)
+ */
+public final class JournalBenchmark {
+
+    private static final int HISTORY_DAYS = 7;
+    private static final Path DIRECTORY = Paths.get("target", "journal-bench");
+
+    private JournalBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("write")) {
+            write(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("recover")) {
+            recover();
+            return;
+        }
+
+        String drivers = args.length > 0 ? args[0] : "1000000";
+        String updates = args.length > 1 ? args[1] : "1000000";
+        String threads = args.length > 2 ? args[2] : "32";
+        deleteDirectory();
+        fork("write", drivers, updates, threads);
+        fork("recover");
+    }
+
+    private static void write(int drivers, int updates, int threads) throws Exception {
+        ConfigurableApplicationContext context = start();
+        DriverStore store = context.getBean(DriverStore.class);
+        DriverJournal journal = context.getBean(DriverJournal.class);
+        LocalDate today = LocalDate.now();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long syncsBefore = journal.getSyncs();
+        long start = System.nanoTime();
+        runParallel(pool, threads, drivers, i -> store.put(sampleDriver(i, today)));
+        report("Load drivers", drivers, start, journal.getSyncs() - syncsBefore);
+
+        syncsBefore = journal.getSyncs();
+        start = System.nanoTime();
+        runParallel(pool, threads, updates, i -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int day = random.nextInt(HISTORY_DAYS);
+            store.updateEarnings("fleet" + random.nextInt(drivers), today.minusDays(day), sampleDay(i, day));
+        });
+        report("Earnings updates", updates, start, journal.getSyncs() - syncsBefore);
+        System.out.printf("Log size: %.1f MB for %,d records%n",
+                journal.getBytesWritten() / 1e6, journal.getRecordsWritten());
+        System.out.flush();
+
+        // Simulate a crash: no shutdown hooks, so no snapshot
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void recover() throws IOException {
+        long start = System.nanoTime();
+        BenchmarkContext.start().close();
+        System.out.printf("Startup without persistence: %,d ms%n", elapsedMillis(start));
+
+        start = System.nanoTime();
+        ConfigurableApplicationContext context = start();
+        int drivers = context.getBean(DriverStore.class).size();
+        System.out.printf("Cold start replaying the log: %,d ms (%,d drivers)%n", elapsedMillis(start), drivers);
+
+        start = System.nanoTime();
+        context.close();
+        System.out.printf("Clean shutdown writing a snapshot: %,d ms (%.1f MB)%n", elapsedMillis(start),
+                directorySize() / 1e6);
+
+        start = System.nanoTime();
+        context = start();
+        drivers = context.getBean(DriverStore.class).size();
+        System.out.printf("Warm start from the snapshot: %,d ms (%,d drivers)%n", elapsedMillis(start), drivers);
+        context.close();
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return BenchmarkContext.start("porter.persistence-enabled=true",
+                "porter.persistence-dir=" + DIRECTORY,
+                "porter.persistence-fsync=true",
+                "porter.persistence-snapshot-records=" + Long.MAX_VALUE);
+    }
+
+    private interface Task {
+        void run(int index);
+    }
+
+    private static void runParallel(ExecutorService pool, int threads, int count, Task task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            futures.add(pool.submit(() -> {
+                for (int i = first; i < count; i += threads) {
+                    task.run(i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static Driver sampleDriver(int i, LocalDate today) {
+        Driver driver = new Driver();
+        driver.setId("fleet" + i);
+        driver.setName("Driver " + i);
+        driver.setPhone(String.valueOf(9000000000L + i));
+
+        Vehicle vehicle = new Vehicle();
+        vehicle.setType(i % 2 == 0 ? "Tata Ace" : "Mahindra Bolero");
+        vehicle.setNumber("MH01AB" + (i % 10000));
+        driver.setVehicle(vehicle);
+
+        EmergencyContact contact = new EmergencyContact();
+        contact.setName("Contact " + i);
+        contact.setPhone(String.valueOf(8000000000L + i));
+        driver.setEmergencyContact(contact);
+
+        for (int day = 0; day < HISTORY_DAYS; day++) {
+            driver.getEarnings().put(today.minusDays(day), sampleDay(i, day));
+        }
+        return driver;
+    }
+
+    private static DailyEarnings sampleDay(int i, int day) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(1500 + (i + day) % 1000);
+        earnings.setExpenses(300 + day * 10);
+        earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+        earnings.setCompletedTrips(5 + day % 5);
+        return earnings;
+    }
+
+    private static void report(String phase, int operations, long startNanos, long syncs) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-18s %,12d ops in %6.1f s = %,10.0f ops/s, %,d fsyncs (%.1f records per fsync)%n",
+                phase, operations, seconds, operations / seconds, syncs, (double) operations / Math.max(1, syncs));
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static long directorySize() throws IOException {
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteDirectory() throws IOException {
+        if (!Files.exists(DIRECTORY)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(DIRECTORY)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // Runs a phase in a fresh JVM with the same classpath and heap limit
+    private static void fork(String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(JournalBenchmark.class.getName());
+        command.addAll(List.of(args));
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException("Phase " + args[0] + " exited with " + exit);
+        }
+    }
+}
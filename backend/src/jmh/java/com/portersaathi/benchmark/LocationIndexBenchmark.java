@@ -0,0 +1,105 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.DriverLocation;
+import com.portersaathi.model.NearbyDriver;
+import com.portersaathi.service.LocationIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Location pings and nearest-driver queries over a fleet spread across a
+ * Mumbai-sized area, alone and with pings and queries running concurrently.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class LocationIndexBenchmark {
+
+    // Roughly Greater Mumbai: 0.5 x 0.4 degrees around Dadar
+    private static final double MIN_LAT = 18.90;
+    private static final double MIN_LNG = 72.80;
+    private static final double LAT_SPAN = 0.5;
+    private static final double LNG_SPAN = 0.4;
+
+    @Param({"10000", "100000"})
+    public int drivers;
+
+    private ConfigurableApplicationContext context;
+    private LocationIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        index = context.getBean(LocationIndex.class);
+        for (int i = 0; i < drivers; i++) {
+            index.update(randomPing(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean ping() {
+        return index.update(randomPing(ThreadLocalRandom.current().nextInt(drivers)));
+    }
+
+    @Benchmark
+    public List<NearbyDriver> nearest10() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.nearest(MIN_LAT + random.nextDouble() * LAT_SPAN, MIN_LNG + random.nextDouble() * LNG_SPAN, 10);
+    }
+
+    @Benchmark
+    public List<NearbyDriver> within2km() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.within(MIN_LAT + random.nextDouble() * LAT_SPAN, MIN_LNG + random.nextDouble() * LNG_SPAN, 2000);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public boolean mixedPing() {
+        return ping();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public List<NearbyDriver> mixedNearest() {
+        return nearest10();
+    }
+
+    private static DriverLocation randomPing(int driver) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        DriverLocation location = new DriverLocation();
+        location.setDriverId("fleet" + driver);
+        location.setLat(MIN_LAT + random.nextDouble() * LAT_SPAN);
+        location.setLng(MIN_LNG + random.nextDouble() * LNG_SPAN);
+        location.setStatus(driver % 5 == 0 ? "busy" : "online");
+        return location;
+    }
+}
@@ -0,0 +1,62 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What processQuery pays per request for its metrics: one counter increment
+ * and one latency record, alone and from several threads at once. Run with
+ * -prof gc to confirm nothing is allocated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsRecordingBenchmark {
+
+    private LongAdder counter;
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setUp() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        counter = metrics.counter("bench_total", "Benchmark counter", "intent", "earnings");
+        histogram = metrics.histogram("bench_seconds", "Benchmark latency", "intent", "earnings");
+    }
+
+    // The two clock reads every timed section pays, for comparison
+    @Benchmark
+    public long clockOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void recordQuery() {
+        long start = System.nanoTime();
+        histogram.recordNanos(System.nanoTime() - start);
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordQueryContended() {
+        recordQuery();
+    }
+}
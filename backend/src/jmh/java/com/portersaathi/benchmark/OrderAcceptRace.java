@@ -0,0 +1,112 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.Order;
+import com.portersaathi.model.OrderStatus;
+import com.portersaathi.service.OrderBook;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of simultaneous accepts on the same orders.
+ *
+ * Every driver thread walks the same list of orders and tries to accept
+ * each one, so every order is raced by all threads at once. A winner
+ * delivers the order straight away to become free again; losers move on.
+ * The run fails unless every order ends up with exactly one winner and
+ * delivered.
+ *
+ * Usage: OrderAcceptRace [orders] [threads] (default 200000 16)
+ */
+public final class OrderAcceptRace {
+
+    private OrderAcceptRace() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        ConfigurableApplicationContext context = BenchmarkContext.start("porter.matching-tick-millis=60000");
+        try {
+            OrderBook book = context.getBean(OrderBook.class);
+            // Warm-up round, then the measured one
+            race(book, orders / 10, threads, false);
+            race(book, orders, threads, true);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void race(OrderBook book, int orders, int threads, boolean report) throws Exception {
+        String[] ids = new String[orders];
+        for (int i = 0; i < orders; i++) {
+            Order order = new Order();
+            order.setPickupAddress("Pickup " + i);
+            order.setDeliveryAddress("Drop " + i);
+            order.setPaymentAmount(250 + i % 500);
+            ids[i] = book.post(order).getId();
+        }
+
+        AtomicIntegerArray winners = new AtomicIntegerArray(orders);
+        LongAdder attempts = new LongAdder();
+        LongAdder lost = new LongAdder();
+        CyclicBarrier startLine = new CyclicBarrier(threads + 1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String driverId = "racer" + t;
+            futures.add(pool.submit(() -> {
+                startLine.await();
+                for (int i = 0; i < orders; i++) {
+                    OrderBook.Outcome outcome = book.accept(ids[i], driverId);
+                    attempts.increment();
+                    if (outcome == OrderBook.Outcome.DONE) {
+                        winners.incrementAndGet(i);
+                        check(book.transition(ids[i], driverId, OrderStatus.PICKED_UP));
+                        check(book.transition(ids[i], driverId, OrderStatus.DELIVERED));
+                    } else if (outcome == OrderBook.Outcome.ALREADY_TAKEN) {
+                        lost.increment();
+                    } else {
+                        throw new IllegalStateException("Unexpected outcome " + outcome + " for " + driverId);
+                    }
+                }
+                return null;
+            }));
+        }
+        startLine.await();
+        long start = System.nanoTime();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        for (int i = 0; i < orders; i++) {
+            if (winners.get(i) != 1) {
+                throw new IllegalStateException("Order " + ids[i] + " had " + winners.get(i) + " winners");
+            }
+            if (book.get(ids[i]).getStatus() != OrderStatus.DELIVERED) {
+                throw new IllegalStateException("Order " + ids[i] + " ended " + book.get(ids[i]).getStatus());
+            }
+        }
+        if (report) {
+            System.out.printf("%d threads racing for %,d orders: %.2f s, %,.0f orders/s, %,.0f accept attempts/s, "
+                            + "%,d lost races, every order won exactly once%n",
+                    threads, orders, seconds, orders / seconds, attempts.sum() / seconds, lost.sum());
+        }
+    }
+
+    private static void check(OrderBook.Outcome outcome) {
+        if (outcome != OrderBook.Outcome.DONE) {
+            throw new IllegalStateException("Transition failed: " + outcome);
+        }
+    }
+}
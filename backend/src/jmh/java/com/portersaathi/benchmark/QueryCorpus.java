@@ -0,0 +1,82 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.service.Intent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Realistic driver utterances and synthetic keyword tables for routing benchmarks.
+ */
+final class QueryCorpus {
+
+    static final String[] QUERIES = {
+            "Aaj ka kharcha kaat ke kitna kamaya?",
+            "aaj maine kitna kamaya bhai",
+            "Mera business pichle hafte se behtar hai ya nahi?",
+            "business kaisa chal raha hai is hafte",
+            "Kya mujhe koi penalty lagi hai?",
+            "aaj koi fine ya dand laga kya",
+            "Challan kaise contest karein?",
+            "traffic police ne ticket diya hai kya karu",
+            "DigiLocker par documents kaise upload karein?",
+            "mera registration document kahan upload hoga",
+            "Sahayata chahiye",
+            "emergency hai jaldi help karo",
+            "gaadi ka bima kaise renew karu",
+            "insurance expire ho gaya hai",
+            "Namaste Saathi",
+            "hello bhai kaise ho",
+            "dhanyavad aapka",
+            "thanks yaar bahut madad ki",
+            "madad chahiye mujhe",
+            "kal kitni earning hui thi",
+            "What did I earn today?",
+            "How do I contest a challan?",
+            "mujhe nahi pata kya puchna hai",
+            "aaj trip kam mile kya karu",
+            "petrol ka kharcha bahut zyada ho gaya",
+            "customer ne rating kam di hai",
+            "app mein order nahi aa raha",
+            "mera payment kab aayega",
+    };
+
+    private static final String SYLLABLES = "ka kha ga cha ja ta da na pa ba ma ya ra la va sa ha ki ko ku re ro ne no";
+
+    private QueryCorpus() {
+    }
+
+    /**
+     * Returns the base table plus generated Hinglish-like keywords spread across intents.
+     */
+    static Map<Intent, List<String>> withSyntheticKeywords(Map<Intent, List<String>> base, int extraKeywords) {
+        Map<Intent, List<String>> table = new EnumMap<>(Intent.class);
+        base.forEach((intent, keywords) -> table.put(intent, new ArrayList<>(keywords)));
+
+        String[] syllables = SYLLABLES.split(" ");
+        Intent[] intents = base.keySet().toArray(new Intent[0]);
+        Random random = new Random(42);
+        for (int i = 0; i < extraKeywords; i++) {
+            StringBuilder keyword = new StringBuilder();
+            int length = 3 + random.nextInt(3);
+            for (int s = 0; s < length; s++) {
+                keyword.append(syllables[random.nextInt(syllables.length)]);
+            }
+            table.get(intents[random.nextInt(intents.length)]).add(keyword.toString());
+        }
+        return table;
+    }
+
+    static int size(Map<Intent, ? extends Collection<String>> table) {
+        return table.values().stream().mapToInt(Collection::size).sum();
+    }
+
+    static List<String> queries() {
+        return Arrays.asList(QUERIES);
+    }
+}
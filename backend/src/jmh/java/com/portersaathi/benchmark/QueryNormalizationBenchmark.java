@@ -0,0 +1,92 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.service.QueryNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of normalizing queries before routing, from scratch and through the
+ * cache of recent utterances, for the Hinglish corpus and for Devanagari
+ * queries. Repeated queries arrive as new String instances, as they would
+ * from a request body, so the cache pays for hashing the text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryNormalizationBenchmark {
+
+    private static final String[] DEVANAGARI = {
+            "आज मैंने कितना कमाया?",
+            "क्या मुझे कोई पेनल्टी लगी है?",
+            "चालान कैसे कंटेस्ट करें?",
+            "डिजिलॉकर पर दस्तावेज़ कैसे अपलोड करें?",
+            "मेरा व्यापार पिछले हफ्ते से बेहतर है या नहीं?",
+            "सहायता चाहिए",
+            "धन्यवाद",
+            "नमस्ते"
+    };
+
+    private ConfigurableApplicationContext context;
+    private QueryNormalizer normalizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        normalizer = context.getBean(QueryNormalizer.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(28) // one operation per corpus query
+    public void hinglishUncached(Blackhole blackhole) {
+        for (String query : QueryCorpus.QUERIES) {
+            blackhole.consume(QueryNormalizer.normalizeText(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(28)
+    public void hinglishCached(Blackhole blackhole) {
+        for (String query : QueryCorpus.QUERIES) {
+            blackhole.consume(normalizer.normalize(new String(query)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void devanagariUncached(Blackhole blackhole) {
+        for (String query : DEVANAGARI) {
+            blackhole.consume(QueryNormalizer.normalizeText(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void devanagariCached(Blackhole blackhole) {
+        for (String query : DEVANAGARI) {
+            blackhole.consume(normalizer.normalize(new String(query)));
+        }
+    }
+}
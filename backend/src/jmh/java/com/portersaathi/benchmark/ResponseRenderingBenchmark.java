@@ -0,0 +1,94 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.ResponseCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per response before and after the response catalog. Run with
+ * {@code -prof gc} and compare gc.alloc.rate.norm between the legacy and
+ * catalog variants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseRenderingBenchmark {
+
+    private static final String INTRO = "Main aapko challan contest karne mein madad kar sakta hun. " +
+            "Yeh ek step-by-step process hai:";
+    private static final List<String> STEPS = Arrays.asList(
+            "Visit the traffic police website",
+            "Click on 'Contest Challan' option",
+            "Enter your vehicle number and challan number",
+            "Upload necessary documents",
+            "Submit your explanation",
+            "Pay any required fees",
+            "Track your application status");
+
+    private ResponseCatalog catalog;
+    private int trips = 8;
+    private double total = 2500;
+    private double expenses = 500;
+    private double net = 2000;
+
+    @Setup
+    public void setUp() {
+        catalog = new ResponseCatalog("hi");
+        catalog.registerGuide("challan", "hi", INTRO, STEPS);
+        catalog.registerTemplate("earnings", "hi", "Aaj aapne {} trip complete kiye aur ₹{} kamaye. " +
+                "Aapka kharcha ₹{} tha, isliye aapki net kamai hai ₹{}.");
+    }
+
+    @Benchmark
+    public AssistantResponse legacyGuide() {
+        AssistantResponse response = new AssistantResponse();
+        response.setResponse(INTRO);
+        Map<String, String> suggestions = new HashMap<>();
+        for (int i = 0; i < STEPS.size(); i++) {
+            suggestions.put("step_" + (i + 1), "Step " + (i + 1) + ": " + STEPS.get(i));
+        }
+        response.setSuggestions(suggestions);
+        response.setType("text");
+        return response;
+    }
+
+    @Benchmark
+    public AssistantResponse catalogGuide() {
+        return catalog.respond("challan", "hi");
+    }
+
+    @Benchmark
+    public String legacyEarningsText() {
+        return String.format("Aaj aapne %d trip complete kiye aur ₹%.2f kamaye. " +
+                        "Aapka kharcha ₹%.2f tha, isliye aapki net kamai hai ₹%.2f.",
+                trips, total, expenses, net);
+    }
+
+    @Benchmark
+    public String templateEarningsText() {
+        return catalog.template("earnings", "hi").writer()
+                .integer(trips)
+                .money(total)
+                .money(expenses)
+                .money(net)
+                .toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.portersaathi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.DriverViewWriter;
+import com.portersaathi.service.EarningsPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the REST surface: a full /api/query round trip (parse the
+ * request body, route, serialize the response) and the /api/driver payload
+ * as earnings history grows, both as a serialized Driver and through the
+ * projected view writer, against the delta pushed to open dashboards when
+ * one day changes.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"7", "365"})
+    public int historyDays;
+
+    private ConfigurableApplicationContext context;
+    private AssistantService assistantService;
+    private EarningsPublisher earningsPublisher;
+    private DriverViewWriter driverViewWriter;
+    private Set<String> todayView;
+    private ObjectMapper objectMapper;
+    private byte[] earningsRequest;
+    private byte[] guideRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        assistantService = context.getBean(AssistantService.class);
+        earningsPublisher = context.getBean(EarningsPublisher.class);
+        driverViewWriter = context.getBean(DriverViewWriter.class);
+        todayView = driverViewWriter.parseFields("vehicle,today");
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        LocalDate today = LocalDate.now();
+        for (int day = 1; day < historyDays; day++) {
+            DailyEarnings earnings = new DailyEarnings();
+            earnings.setTotalEarnings(2000 + day % 500);
+            earnings.setExpenses(400 + day % 100);
+            earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+            earnings.setCompletedTrips(6 + day % 4);
+            if (day % 10 == 0) {
+                earnings.getPenalties().put("penalty" + day, "Late delivery by 15 minutes");
+            }
+            assistantService.updateDriverEarnings("driver123", today.minusDays(day), earnings);
+        }
+
+        earningsRequest = requestBody("Aaj ka kharcha kaat ke kitna kamaya?");
+        guideRequest = requestBody("Challan kaise contest karein?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] queryRoundTripEarnings() throws Exception {
+        return roundTrip(earningsRequest);
+    }
+
+    @Benchmark
+    public byte[] queryRoundTripGuide() throws Exception {
+        return roundTrip(guideRequest);
+    }
+
+    @Benchmark
+    public byte[] driverPayload() throws Exception {
+        return objectMapper.writeValueAsBytes(assistantService.getDriver("driver123"));
+    }
+
+    @Benchmark
+    public byte[] driverViewPayload() throws Exception {
+        return driverViewWriter.write("driver123", DriverViewWriter.DEFAULT_FIELDS, null, null);
+    }
+
+    @Benchmark
+    public byte[] driverViewTodayPayload() throws Exception {
+        return driverViewWriter.write("driver123", todayView, null, null);
+    }
+
+    @Benchmark
+    public byte[] earningsDeltaPayload() throws Exception {
+        return objectMapper.writeValueAsBytes(
+                earningsPublisher.buildDelta("driver123", Collections.singleton(LocalDate.now())));
+    }
+
+    // What AssistantController does for POST /api/query, minus the servlet container
+    private byte[] roundTrip(byte[] body) throws Exception {
+        AssistantRequest request = objectMapper.readValue(body, AssistantRequest.class);
+        AssistantResponse response = assistantService.processQuery(request);
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    private byte[] requestBody(String query) throws Exception {
+        AssistantRequest request = new AssistantRequest();
+        request.setDriverId("driver123");
+        request.setQuery(query);
+        return objectMapper.writeValueAsBytes(request);
+    }
+}
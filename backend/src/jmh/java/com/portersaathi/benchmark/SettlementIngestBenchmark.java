@@ -0,0 +1,171 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.SettlementReport;
+import com.portersaathi.model.Vehicle;
+import com.portersaathi.persistence.DriverJournal;
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.SettlementIngestor;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Settlement import throughput with the journal on, while a query thread
+ * keeps asking for earnings and records how long each answer takes.
+ *
+ * Rows are generated on the fly by a channel, as CSV, so the file never
+ * exists in memory or on disk.
+ *
+ * Usage: SettlementIngestBenchmark [rows] [drivers] [fsync] (default 10000000 100000 true)
+ */
+public final class SettlementIngestBenchmark {
+
+    private static final Path DIRECTORY = Paths.get("target", "settlement-bench");
+
+    private SettlementIngestBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        int drivers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        boolean fsync = args.length <= 2 || Boolean.parseBoolean(args[2]);
+
+        deleteDirectory();
+        ConfigurableApplicationContext context = BenchmarkContext.start("porter.persistence-enabled=true",
+                "porter.persistence-dir=" + DIRECTORY,
+                "porter.persistence-fsync=" + fsync,
+                "porter.persistence-snapshot-records=" + Long.MAX_VALUE);
+        DriverStore store = context.getBean(DriverStore.class);
+        DriverJournal journal = context.getBean(DriverJournal.class);
+        SettlementIngestor ingestor = context.getBean(SettlementIngestor.class);
+        AssistantService assistant = context.getBean(AssistantService.class);
+
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("fleet" + i);
+            driver.setName("Driver " + i);
+            Vehicle vehicle = new Vehicle();
+            vehicle.setType(i % 2 == 0 ? "Tata Ace" : "Mahindra Bolero");
+            driver.setVehicle(vehicle);
+            store.put(driver);
+        }
+
+        LatencyHistogram queryLatency = new LatencyHistogram();
+        Thread queries = new Thread(() -> {
+            AssistantRequest request = new AssistantRequest();
+            request.setQuery("Aaj maine kitna kamaya?");
+            while (!Thread.currentThread().isInterrupted()) {
+                request.setDriverId("fleet" + ThreadLocalRandom.current().nextInt(drivers));
+                long start = System.nanoTime();
+                assistant.processQuery(request);
+                queryLatency.recordNanos(System.nanoTime() - start);
+            }
+        }, "bench-queries");
+        queries.setDaemon(true);
+
+        long syncsBefore = journal.getSyncs();
+        long start = System.nanoTime();
+        queries.start();
+        SettlementReport report = ingestor.ingest(new GeneratedRows(rows, drivers), SettlementIngestor.Format.CSV);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        queries.interrupt();
+
+        System.out.printf("Imported %,d rows (%,d rejected) into %,d driver-days in %.1f s = %,.0f rows/s%n",
+                report.getAccepted(), report.getRejected(), report.getDriverDays(), seconds, report.getAccepted() / seconds);
+        System.out.printf("Journal: %,d records, %,d fsyncs, %.1f MB%n",
+                journal.getRecordsWritten(), journal.getSyncs() - syncsBefore, journal.getBytesWritten() / 1e6);
+        System.out.printf("Concurrent earnings queries: %,d, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                queryLatency.getCount(), queryLatency.getPercentileMillis(50),
+                queryLatency.getPercentileMillis(99), queryLatency.getMaxMillis());
+        context.close();
+        deleteDirectory();
+    }
+
+    /**
+     * A CSV settlement file of the given size, written into the caller's
+     * buffer as it is read. Each driver's rows spread over the last 3 days.
+     */
+    private static final class GeneratedRows implements ReadableByteChannel {
+        private final long rows;
+        private final int drivers;
+        private final String[] days = new String[3];
+        private final StringBuilder line = new StringBuilder(128);
+        private byte[] pending = "driverId,date,tripId,fare,expenses,penaltyReason\n".getBytes(StandardCharsets.US_ASCII);
+        private int pendingOffset;
+        private long next;
+
+        GeneratedRows(long rows, int drivers) {
+            this.rows = rows;
+            this.drivers = drivers;
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < days.length; i++) {
+                days[i] = today.minusDays(i).toString();
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            int written = 0;
+            while (target.hasRemaining()) {
+                if (pendingOffset == pending.length) {
+                    if (next == rows) {
+                        break;
+                    }
+                    pending = nextRow();
+                    pendingOffset = 0;
+                }
+                int count = Math.min(target.remaining(), pending.length - pendingOffset);
+                target.put(pending, pendingOffset, count);
+                pendingOffset += count;
+                written += count;
+            }
+            return written == 0 && next == rows ? -1 : written;
+        }
+
+        private byte[] nextRow() {
+            long row = next++;
+            line.setLength(0);
+            line.append("fleet").append(row % drivers).append(',')
+                    .append(days[(int) (row / drivers % days.length)]).append(",trip").append(row).append(',')
+                    .append(150 + row % 350).append('.').append(row % 100).append(',')
+                    .append(10 + row % 40).append(',');
+            if (row % 50 == 0) {
+                line.append("\"Late delivery, customer complaint\"");
+            }
+            return line.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void deleteDirectory() throws IOException {
+        if (!Files.exists(DIRECTORY)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(DIRECTORY)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
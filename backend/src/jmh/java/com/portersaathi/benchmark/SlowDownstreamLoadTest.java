@@ -0,0 +1,155 @@
+package com.portersaathi.benchmark;
+
+import com.portersaathi.PorterSaathiApplication;
+import com.portersaathi.config.VirtualThreads;
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.QueryExecutor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Load test for the REST execution modes with a simulated slow downstream
+ * call in every query. The test adds its own endpoint for this, which runs
+ * each query through the {@link QueryExecutor} like /api/query does, after
+ * sleeping for the downstream latency; the application itself never sleeps.
+ * For each mode and concurrency level it fires one burst of simultaneous
+ * requests and reports throughput, latency percentiles and how many
+ * requests failed.
+ *
+ * Tomcat is capped at 50 worker threads so the sync mode saturates early.
+ * Virtual mode is skipped unless the JVM is Java 21 or newer.
+ *
+ * Usage: SlowDownstreamLoadTest [latencyMs] [concurrency,...]
+ */
+public final class SlowDownstreamLoadTest {
+
+    private static final String PATH = "/benchmark/slow-query";
+    private static final String BODY = "{\"driverId\":\"driver123\",\"query\":\"Aaj kitna kamaya?\"}";
+
+    private SlowDownstreamLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int latencyMs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] concurrencyLevels = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{50, 200, 1000};
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.out.printf("%-8s %11s %10s %9s %9s %9s %7s%n",
+                "mode", "concurrency", "req/s", "p50 ms", "p99 ms", "max ms", "failed");
+        for (String mode : new String[]{"sync", "async", "virtual"}) {
+            if (mode.equals("virtual") && !VirtualThreads.isSupported()) {
+                System.out.println("virtual  skipped: needs a Java 21+ runtime");
+                continue;
+            }
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(PorterSaathiApplication.class)
+                    .logStartupInfo(false)
+                    .initializers(app -> ((GenericApplicationContext) app).registerBean("slowQueries",
+                            RouterFunction.class, () -> slowQueries(app, latencyMs)))
+                    // Command-line arguments, unlike default properties, override application.properties
+                    .run("--server.port=0",
+                            "--server.tomcat.threads.max=50",
+                            "--server.tomcat.accept-count=10000",
+                            "--server.tomcat.max-connections=20000",
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.root=WARN",
+                            "--logging.level.com.portersaathi=WARN",
+                            "--logging.level.org.springframework.web=WARN",
+                            "--logging.level.org.springframework.web.socket=WARN",
+                            "--porter.execution-mode=" + mode,
+                            "--porter.execution-threads=2000",
+                            "--porter.execution-max-concurrency=100000");
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            try {
+                // Warm up the JIT and the connection pool before measuring
+                burst(port, 200);
+                for (int concurrency : concurrencyLevels) {
+                    report(mode, concurrency, burst(port, concurrency));
+                }
+            } finally {
+                context.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    // Stands in for TTS, DigiLocker or payment calls: the handler blocks before answering
+    private static RouterFunction<ServerResponse> slowQueries(ApplicationContext context, int latencyMs) {
+        return RouterFunctions.route().POST(PATH, request -> {
+            AssistantRequest query = request.body(AssistantRequest.class);
+            AssistantService assistantService = context.getBean(AssistantService.class);
+            return ServerResponse.async(context.getBean(QueryExecutor.class).execute(() -> {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ServerResponse.ok().body(assistantService.processQuery(query));
+            }).exceptionally(e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
+        }).build();
+    }
+
+    private static long[] burst(int port, int concurrency) {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(16))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + PATH))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                .build();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Long>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long sent = System.nanoTime();
+            calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == 200 ? System.nanoTime() - sent : -1L)
+                    .exceptionally(e -> -1L));
+        }
+
+        long[] latencies = calls.stream().mapToLong(CompletableFuture::join).toArray();
+        latencies = Arrays.copyOf(latencies, latencies.length + 1);
+        latencies[latencies.length - 1] = System.nanoTime() - start;
+        return latencies;
+    }
+
+    // The last element of the burst result is the wall time of the whole burst
+    private static void report(String mode, int concurrency, long[] burst) {
+        long[] latencies = Arrays.copyOf(burst, burst.length - 1);
+        double elapsedSeconds = burst[burst.length - 1] / 1e9;
+        long failed = Arrays.stream(latencies).filter(latency -> latency < 0).count();
+        long[] ok = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+
+        System.out.printf("%-8s %11d %10.0f %9.1f %9.1f %9.1f %7d%n", mode, concurrency,
+                ok.length / elapsedSeconds, percentile(ok, 50), percentile(ok, 99), percentile(ok, 100), failed);
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+    }
+}
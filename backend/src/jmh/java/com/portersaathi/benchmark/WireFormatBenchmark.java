@@ -0,0 +1,143 @@
+package com.portersaathi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.DriverViewWriter;
+import com.portersaathi.service.EarningsPublisher;
+import com.portersaathi.service.WireCodec;
+import com.portersaathi.service.WireFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and encoding CPU of the mobile payloads per wire format:
+ * a dynamic earnings answer, a static guide answer (cached and encoded from
+ * scratch), the 30-day driver view, and the earnings delta pushed over
+ * STOMP, which is serialized as JSON and re-encoded per session.
+ *
+ * Payload sizes, plain and gzipped, are printed once per format at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public WireFormat format;
+
+    private ConfigurableApplicationContext context;
+    private AssistantService assistantService;
+    private WireCodec wireCodec;
+    private DriverViewWriter driverViewWriter;
+    private EarningsPublisher earningsPublisher;
+    private ObjectMapper jsonMapper;
+    private ObjectMapper mapper;
+    private AssistantRequest earningsRequest;
+    private AssistantResponse guideAnswer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        assistantService = context.getBean(AssistantService.class);
+        wireCodec = context.getBean(WireCodec.class);
+        driverViewWriter = context.getBean(DriverViewWriter.class);
+        earningsPublisher = context.getBean(EarningsPublisher.class);
+        jsonMapper = wireCodec.mapper(WireFormat.JSON);
+        mapper = wireCodec.mapper(format);
+
+        LocalDate today = LocalDate.now();
+        for (int day = 1; day < 30; day++) {
+            DailyEarnings earnings = new DailyEarnings();
+            earnings.setTotalEarnings(2000 + day % 500);
+            earnings.setExpenses(400 + day % 100);
+            earnings.setNetEarnings(earnings.getTotalEarnings() - earnings.getExpenses());
+            earnings.setCompletedTrips(6 + day % 4);
+            if (day % 10 == 0) {
+                earnings.getPenalties().put("penalty" + day, "Late delivery by 15 minutes");
+            }
+            assistantService.updateDriverEarnings("driver123", today.minusDays(day), earnings);
+        }
+
+        earningsRequest = request("Aaj ka kharcha kaat ke kitna kamaya?");
+        guideAnswer = assistantService.processQuery(request("Challan kaise contest karein?"));
+
+        System.out.printf("%n%-14s %8s %8s%n", format, "bytes", "gzipped");
+        printSize("earnings", encodeEarningsAnswer());
+        printSize("guide", encodeGuideAnswer());
+        printSize("driver view", encodeDriverView());
+        printSize("earnings push", encodeEarningsPush());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encodeEarningsAnswer() throws IOException {
+        return wireCodec.encode(assistantService.processQuery(earningsRequest), format);
+    }
+
+    @Benchmark
+    public byte[] encodeGuideAnswer() throws IOException {
+        return wireCodec.encode(guideAnswer, format);
+    }
+
+    @Benchmark
+    public byte[] encodeGuideAnswerUncached() throws IOException {
+        return mapper.writeValueAsBytes(guideAnswer);
+    }
+
+    @Benchmark
+    public byte[] encodeDriverView() throws IOException {
+        return driverViewWriter.write("driver123", DriverViewWriter.DEFAULT_FIELDS, null, null, format);
+    }
+
+    // What a STOMP session gets: the broker's JSON, re-encoded on the way out
+    @Benchmark
+    public byte[] encodeEarningsPush() throws IOException {
+        byte[] json = jsonMapper.writeValueAsBytes(
+                earningsPublisher.buildDelta("driver123", Collections.singleton(LocalDate.now().minusDays(1))));
+        return wireCodec.transcode(json, format);
+    }
+
+    private static AssistantRequest request(String query) {
+        AssistantRequest request = new AssistantRequest();
+        request.setDriverId("driver123");
+        request.setQuery(query);
+        return request;
+    }
+
+    private static void printSize(String payload, byte[] bytes) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(bytes);
+        }
+        System.out.printf("%-14s %8d %8d%n", payload, bytes.length, gzipped.size());
+    }
+}
@@ -7,8 +7,50 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "porter")
 public class ApplicationProperties {
     private String defaultLanguage = "hi";
+    private int normalizerCacheSize = 10_000; // normalized forms of recent queries
+    private int conversationTtlSeconds = 300; // idle time after which follow-ups no longer resolve
+    private int conversationMaxSessions = 200_000;
     private boolean voiceResponsesEnabled = true;
+    private String audioCacheDir = "data/audio";
+    private long audioCacheMaxBytes = 256L << 20;
+    private int ttsThreads = 2;
+    private int ttsMaxStreams = 256; // dynamic answers rendering or waiting to be fetched
+    private int ttsStreamTtlSeconds = 60;
     private int emergencyResponseTimeout = 30; // seconds
+    private int emergencyMaxAttempts = 5;
+    private int emergencyDispatchThreads = 4;
+    private int emergencyCooldownSeconds = 60; // retries of a delivered alert, by alertId, within this are not sent again
+    private String executionMode = "sync"; // "sync", "async" or "virtual"
+    private int executionMaxConcurrency = 1024;
+    private int executionThreads = 64; // worker threads in async mode
+    private int executionEmergencyReserve = 32; // permits only urgent requests may take
+    private double executionShedThreshold = 0.8; // share of the limit above which sheddable queries are refused
+    private double rateLimitPerSecond = 2; // sustained queries per driver; 0 disables the limit
+    private int rateLimitBurst = 10;
+    private int batchMaxQueries = 500;
+    private int ingestThreads = 0; // settlement import workers; 0 uses half the cores
+    private int ingestBatchSize = 1000; // rows per worker batch and journal write
+    private int ingestQueueBatches = 4; // batches queued per worker before the reader waits
+    private int ingestMaxConcurrent = 1;
+    private int wireCachedResponses = 4096; // pre-encoded static answers kept per wire format
+    private boolean persistenceEnabled = true;
+    private String persistenceDir = "data";
+    private boolean persistenceFsync = true;
+    private long persistenceSnapshotRecords = 1_000_000; // log records between snapshots
+    private double locationCellDegrees = 0.01; // about 1.1 km of latitude
+    private int locationTtlSeconds = 120; // pings older than this no longer count
+    private int locationMaxRadiusMeters = 50_000;
+    private long matchingTickMillis = 500;
+    private int matchingOffersPerOrder = 3; // drivers an order is proposed to per tick
+    private int matchingMaxOrdersPerTick = 2000;
+    private int orderRetentionMinutes = 1440; // delivered and cancelled orders stay readable this long
+    private long earningsPushMillis = 250; // bursts of updates within this window go out as one delta
+    private int fleetAnalyticsRefreshSeconds = 60;
+    private int fleetAnalyticsThreads = 0; // 0 uses every core
+    private int fleetAnalyticsMinPeers = 5; // fewer peers than this are not compared against
+    private int[] expiryReminderDays = {7, 1, 0}; // days before an insurance expiry to remind the driver
+    private int expiryCheckSeconds = 60; // how often to look for a new day's due reminders
+    private int answerCacheDrivers = 100_000; // drivers whose data-dependent answers are memoized; 0 disables
 
     // Getters and setters
     public String getDefaultLanguage() {
@@ -19,6 +61,30 @@ public class ApplicationProperties {
         this.defaultLanguage = defaultLanguage;
     }
 
+    public int getNormalizerCacheSize() {
+        return normalizerCacheSize;
+    }
+
+    public void setNormalizerCacheSize(int normalizerCacheSize) {
+        this.normalizerCacheSize = normalizerCacheSize;
+    }
+
+    public int getConversationTtlSeconds() {
+        return conversationTtlSeconds;
+    }
+
+    public void setConversationTtlSeconds(int conversationTtlSeconds) {
+        this.conversationTtlSeconds = conversationTtlSeconds;
+    }
+
+    public int getConversationMaxSessions() {
+        return conversationMaxSessions;
+    }
+
+    public void setConversationMaxSessions(int conversationMaxSessions) {
+        this.conversationMaxSessions = conversationMaxSessions;
+    }
+
     public boolean isVoiceResponsesEnabled() {
         return voiceResponsesEnabled;
     }
@@ -27,6 +93,46 @@ public class ApplicationProperties {
         this.voiceResponsesEnabled = voiceResponsesEnabled;
     }
 
+    public String getAudioCacheDir() {
+        return audioCacheDir;
+    }
+
+    public void setAudioCacheDir(String audioCacheDir) {
+        this.audioCacheDir = audioCacheDir;
+    }
+
+    public long getAudioCacheMaxBytes() {
+        return audioCacheMaxBytes;
+    }
+
+    public void setAudioCacheMaxBytes(long audioCacheMaxBytes) {
+        this.audioCacheMaxBytes = audioCacheMaxBytes;
+    }
+
+    public int getTtsThreads() {
+        return ttsThreads;
+    }
+
+    public void setTtsThreads(int ttsThreads) {
+        this.ttsThreads = ttsThreads;
+    }
+
+    public int getTtsMaxStreams() {
+        return ttsMaxStreams;
+    }
+
+    public void setTtsMaxStreams(int ttsMaxStreams) {
+        this.ttsMaxStreams = ttsMaxStreams;
+    }
+
+    public int getTtsStreamTtlSeconds() {
+        return ttsStreamTtlSeconds;
+    }
+
+    public void setTtsStreamTtlSeconds(int ttsStreamTtlSeconds) {
+        this.ttsStreamTtlSeconds = ttsStreamTtlSeconds;
+    }
+
     public int getEmergencyResponseTimeout() {
         return emergencyResponseTimeout;
     }
@@ -34,4 +140,276 @@ public class ApplicationProperties {
     public void setEmergencyResponseTimeout(int emergencyResponseTimeout) {
         this.emergencyResponseTimeout = emergencyResponseTimeout;
     }
-}
\ No newline at end of file
+
+    public int getEmergencyMaxAttempts() {
+        return emergencyMaxAttempts;
+    }
+
+    public void setEmergencyMaxAttempts(int emergencyMaxAttempts) {
+        this.emergencyMaxAttempts = emergencyMaxAttempts;
+    }
+
+    public int getEmergencyDispatchThreads() {
+        return emergencyDispatchThreads;
+    }
+
+    public void setEmergencyDispatchThreads(int emergencyDispatchThreads) {
+        this.emergencyDispatchThreads = emergencyDispatchThreads;
+    }
+
+    public int getEmergencyCooldownSeconds() {
+        return emergencyCooldownSeconds;
+    }
+
+    public void setEmergencyCooldownSeconds(int emergencyCooldownSeconds) {
+        this.emergencyCooldownSeconds = emergencyCooldownSeconds;
+    }
+
+    public String getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(String executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getExecutionMaxConcurrency() {
+        return executionMaxConcurrency;
+    }
+
+    public void setExecutionMaxConcurrency(int executionMaxConcurrency) {
+        this.executionMaxConcurrency = executionMaxConcurrency;
+    }
+
+    public int getExecutionThreads() {
+        return executionThreads;
+    }
+
+    public void setExecutionThreads(int executionThreads) {
+        this.executionThreads = executionThreads;
+    }
+
+    public int getExecutionEmergencyReserve() {
+        return executionEmergencyReserve;
+    }
+
+    public void setExecutionEmergencyReserve(int executionEmergencyReserve) {
+        this.executionEmergencyReserve = executionEmergencyReserve;
+    }
+
+    public double getExecutionShedThreshold() {
+        return executionShedThreshold;
+    }
+
+    public void setExecutionShedThreshold(double executionShedThreshold) {
+        this.executionShedThreshold = executionShedThreshold;
+    }
+
+    public double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public void setRateLimitPerSecond(double rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public int getBatchMaxQueries() {
+        return batchMaxQueries;
+    }
+
+    public void setBatchMaxQueries(int batchMaxQueries) {
+        this.batchMaxQueries = batchMaxQueries;
+    }
+
+    public int getIngestThreads() {
+        return ingestThreads;
+    }
+
+    public void setIngestThreads(int ingestThreads) {
+        this.ingestThreads = ingestThreads;
+    }
+
+    public int getIngestBatchSize() {
+        return ingestBatchSize;
+    }
+
+    public void setIngestBatchSize(int ingestBatchSize) {
+        this.ingestBatchSize = ingestBatchSize;
+    }
+
+    public int getIngestQueueBatches() {
+        return ingestQueueBatches;
+    }
+
+    public void setIngestQueueBatches(int ingestQueueBatches) {
+        this.ingestQueueBatches = ingestQueueBatches;
+    }
+
+    public int getIngestMaxConcurrent() {
+        return ingestMaxConcurrent;
+    }
+
+    public void setIngestMaxConcurrent(int ingestMaxConcurrent) {
+        this.ingestMaxConcurrent = ingestMaxConcurrent;
+    }
+
+    public int getWireCachedResponses() {
+        return wireCachedResponses;
+    }
+
+    public void setWireCachedResponses(int wireCachedResponses) {
+        this.wireCachedResponses = wireCachedResponses;
+    }
+
+    public boolean isPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    public void setPersistenceEnabled(boolean persistenceEnabled) {
+        this.persistenceEnabled = persistenceEnabled;
+    }
+
+    public String getPersistenceDir() {
+        return persistenceDir;
+    }
+
+    public void setPersistenceDir(String persistenceDir) {
+        this.persistenceDir = persistenceDir;
+    }
+
+    public boolean isPersistenceFsync() {
+        return persistenceFsync;
+    }
+
+    public void setPersistenceFsync(boolean persistenceFsync) {
+        this.persistenceFsync = persistenceFsync;
+    }
+
+    public long getPersistenceSnapshotRecords() {
+        return persistenceSnapshotRecords;
+    }
+
+    public void setPersistenceSnapshotRecords(long persistenceSnapshotRecords) {
+        this.persistenceSnapshotRecords = persistenceSnapshotRecords;
+    }
+
+    public double getLocationCellDegrees() {
+        return locationCellDegrees;
+    }
+
+    public void setLocationCellDegrees(double locationCellDegrees) {
+        this.locationCellDegrees = locationCellDegrees;
+    }
+
+    public int getLocationTtlSeconds() {
+        return locationTtlSeconds;
+    }
+
+    public void setLocationTtlSeconds(int locationTtlSeconds) {
+        this.locationTtlSeconds = locationTtlSeconds;
+    }
+
+    public int getLocationMaxRadiusMeters() {
+        return locationMaxRadiusMeters;
+    }
+
+    public void setLocationMaxRadiusMeters(int locationMaxRadiusMeters) {
+        this.locationMaxRadiusMeters = locationMaxRadiusMeters;
+    }
+
+    public long getMatchingTickMillis() {
+        return matchingTickMillis;
+    }
+
+    public void setMatchingTickMillis(long matchingTickMillis) {
+        this.matchingTickMillis = matchingTickMillis;
+    }
+
+    public int getMatchingOffersPerOrder() {
+        return matchingOffersPerOrder;
+    }
+
+    public void setMatchingOffersPerOrder(int matchingOffersPerOrder) {
+        this.matchingOffersPerOrder = matchingOffersPerOrder;
+    }
+
+    public int getMatchingMaxOrdersPerTick() {
+        return matchingMaxOrdersPerTick;
+    }
+
+    public void setMatchingMaxOrdersPerTick(int matchingMaxOrdersPerTick) {
+        this.matchingMaxOrdersPerTick = matchingMaxOrdersPerTick;
+    }
+
+    public int getOrderRetentionMinutes() {
+        return orderRetentionMinutes;
+    }
+
+    public void setOrderRetentionMinutes(int orderRetentionMinutes) {
+        this.orderRetentionMinutes = orderRetentionMinutes;
+    }
+
+    public long getEarningsPushMillis() {
+        return earningsPushMillis;
+    }
+
+    public void setEarningsPushMillis(long earningsPushMillis) {
+        this.earningsPushMillis = earningsPushMillis;
+    }
+
+    public int getFleetAnalyticsRefreshSeconds() {
+        return fleetAnalyticsRefreshSeconds;
+    }
+
+    public void setFleetAnalyticsRefreshSeconds(int fleetAnalyticsRefreshSeconds) {
+        this.fleetAnalyticsRefreshSeconds = fleetAnalyticsRefreshSeconds;
+    }
+
+    public int getFleetAnalyticsThreads() {
+        return fleetAnalyticsThreads;
+    }
+
+    public void setFleetAnalyticsThreads(int fleetAnalyticsThreads) {
+        this.fleetAnalyticsThreads = fleetAnalyticsThreads;
+    }
+
+    public int getFleetAnalyticsMinPeers() {
+        return fleetAnalyticsMinPeers;
+    }
+
+    public void setFleetAnalyticsMinPeers(int fleetAnalyticsMinPeers) {
+        this.fleetAnalyticsMinPeers = fleetAnalyticsMinPeers;
+    }
+
+    public int[] getExpiryReminderDays() {
+        return expiryReminderDays;
+    }
+
+    public void setExpiryReminderDays(int[] expiryReminderDays) {
+        this.expiryReminderDays = expiryReminderDays;
+    }
+
+    public int getExpiryCheckSeconds() {
+        return expiryCheckSeconds;
+    }
+
+    public void setExpiryCheckSeconds(int expiryCheckSeconds) {
+        this.expiryCheckSeconds = expiryCheckSeconds;
+    }
+
+    public int getAnswerCacheDrivers() {
+        return answerCacheDrivers;
+    }
+
+    public void setAnswerCacheDrivers(int answerCacheDrivers) {
+        this.answerCacheDrivers = answerCacheDrivers;
+    }
+}
@@ -0,0 +1,62 @@
+package com.portersaathi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.WireCodec;
+import com.portersaathi.service.WireFormat;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Locale;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Replaces Spring Boot's JSON converter with one that times every
+     * response body it writes and serves static answers pre-encoded.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   WireCodec wireCodec,
+                                                                                   MetricsRegistry metrics) {
+        return new TimedJsonConverter(objectMapper, wireCodec, serializationLatency(metrics, WireFormat.JSON));
+    }
+
+    static LatencyHistogram serializationLatency(MetricsRegistry metrics, WireFormat format) {
+        return metrics.histogram("porter_http_serialization_seconds",
+                "Time to serialize a response body into the response buffer", "format", format.name().toLowerCase(Locale.ROOT));
+    }
+
+    private static final class TimedJsonConverter extends MappingJackson2HttpMessageConverter {
+
+        private final WireCodec wireCodec;
+        private final LatencyHistogram latency;
+
+        TimedJsonConverter(ObjectMapper objectMapper, WireCodec wireCodec, LatencyHistogram latency) {
+            super(objectMapper);
+            this.wireCodec = wireCodec;
+            this.latency = latency;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+            long start = System.nanoTime();
+            try {
+                if (object instanceof AssistantResponse) {
+                    outputMessage.getBody().write(wireCodec.encode((AssistantResponse) object, WireFormat.JSON));
+                } else {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            } finally {
+                latency.recordNanos(System.nanoTime() - start);
+            }
+        }
+    }
+}
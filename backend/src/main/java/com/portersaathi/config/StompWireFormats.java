@@ -0,0 +1,150 @@
+package com.portersaathi.config;
+
+import com.portersaathi.service.WireCodec;
+import com.portersaathi.service.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-session wire format for STOMP. A client connecting to the plain
+ * WebSocket endpoint may send an {@code accept} header on CONNECT naming
+ * CBOR or Smile; every MESSAGE frame to that session is then re-encoded
+ * from JSON on its way out. SockJS sessions always get JSON, as SockJS
+ * only carries text.
+ *
+ * Spring sends a binary WebSocket frame only for an application/octet-stream
+ * body, so re-encoded frames carry {@code content-type:application/octet-stream;format=cbor}
+ * (or {@code format=smile}). Frames the client sends are decoded by their
+ * own content-type, application/cbor or application/x-jackson-smile.
+ */
+@Component
+public class StompWireFormats {
+
+    private static final Logger log = LoggerFactory.getLogger(StompWireFormats.class);
+
+    private static final String BINARY_FRAMES = StompWireFormats.class.getName() + ".binaryFrames";
+    private static final Map<WireFormat, MimeType> FRAME_TYPES = new EnumMap<>(WireFormat.class);
+
+    static {
+        for (WireFormat format : WireFormat.values()) {
+            FRAME_TYPES.put(format, new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM,
+                    Collections.singletonMap("format", format.name().toLowerCase(Locale.ROOT))));
+        }
+    }
+
+    @Autowired
+    private WireCodec wireCodec;
+
+    private final Map<String, WireFormat> formats = new ConcurrentHashMap<>();
+
+    /**
+     * Marks sessions of the endpoint it is added to as able to take binary frames.
+     */
+    public HandshakeInterceptor binaryFrames() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler handler, Map<String, Object> attributes) {
+                attributes.put(BINARY_FRAMES, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler handler, Exception exception) {
+            }
+        };
+    }
+
+    /**
+     * Records the format a session asks for on CONNECT.
+     */
+    public ChannelInterceptor inbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || accessor.getMessageType() != SimpMessageType.CONNECT) {
+                    return message;
+                }
+                Map<String, Object> attributes = accessor.getSessionAttributes();
+                WireFormat format = WireFormat.negotiate(accessor.getFirstNativeHeader("accept"));
+                if (format != WireFormat.JSON && attributes != null && attributes.containsKey(BINARY_FRAMES)) {
+                    formats.put(accessor.getSessionId(), format);
+                }
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Re-encodes JSON MESSAGE frames for sessions that asked for another format.
+     */
+    public ChannelInterceptor outbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                MessageHeaders headers = message.getHeaders();
+                if (formats.isEmpty() || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+                    return message;
+                }
+                WireFormat format = formats.get(SimpMessageHeaderAccessor.getSessionId(headers));
+                if (format == null || !(message.getPayload() instanceof byte[])
+                        || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+                    return message;
+                }
+                try {
+                    byte[] payload = wireCodec.transcode((byte[]) message.getPayload(), format);
+                    MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+                    accessor.setContentType(FRAME_TYPES.get(format));
+                    return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+                } catch (Exception e) {
+                    // The JSON still reaches the client, which can tell it by its content-type
+                    log.warn("Could not re-encode a message as {}", format, e);
+                    return message;
+                }
+            }
+        };
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        formats.remove(event.getSessionId());
+    }
+
+    // The header is a MimeType when set by a message converter, a String when set by hand
+    private static boolean isJson(Object contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MimeType type = contentType instanceof MimeType
+                ? (MimeType) contentType
+                : MimeTypeUtils.parseMimeType(contentType.toString());
+        return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(type);
+    }
+}
@@ -0,0 +1,43 @@
+package com.portersaathi.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads while the build still targets Java 17: looked
+ * up reflectively, so the same jar runs everywhere and uses virtual threads
+ * when started on a Java 21+ runtime.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return factoryMethod() != null;
+    }
+
+    /**
+     * @return A virtual-thread-per-task executor, or null on runtimes without virtual threads
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        Method method = factoryMethod();
+        if (method == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    private static Method factoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,19 +1,34 @@
 package com.portersaathi.config;
 
+import com.portersaathi.service.WireCodec;
+import com.portersaathi.service.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private WireCodec wireCodec;
+
+    @Autowired
+    private StompWireFormats stompWireFormats;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
     }
 
     @Override
@@ -21,5 +36,32 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/porter-websocket")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Plain WebSocket for the mobile app: binary frames, and permessage-deflate when the client offers it
+        registry.addEndpoint("/porter-stomp")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(stompWireFormats.binaryFrames());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompWireFormats.inbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompWireFormats.outbound());
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Strict, so only frames that declare CBOR or Smile are read as such and
+        // outgoing messages without a content-type still go out as JSON
+        for (WireFormat format : new WireFormat[] {WireFormat.CBOR, WireFormat.SMILE}) {
+            MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(format.getMediaType());
+            converter.setObjectMapper(wireCodec.mapper(format));
+            converter.setStrictContentTypeMatch(true);
+            messageConverters.add(converter);
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
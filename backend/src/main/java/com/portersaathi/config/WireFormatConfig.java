@@ -0,0 +1,70 @@
+package com.portersaathi.config;
+
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.WireCodec;
+import com.portersaathi.service.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * CBOR and Smile request and response bodies for clients that ask for them
+ * in Content-Type and Accept, timed and with static answers pre-encoded
+ * like JSON. They come after the JSON converter, so JSON is still the
+ * answer to an Accept of {@code *}{@code /*} or none.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private WireCodec wireCodec;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring MVC already adds plain CBOR and Smile converters when the libraries are present
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new TimedBinaryConverter(WireFormat.CBOR));
+        converters.add(new TimedBinaryConverter(WireFormat.SMILE));
+    }
+
+    private final class TimedBinaryConverter extends AbstractJackson2HttpMessageConverter {
+
+        private final WireFormat format;
+        private final LatencyHistogram latency;
+
+        TimedBinaryConverter(WireFormat format) {
+            super(wireCodec.mapper(format), format.getMediaType());
+            this.format = format;
+            this.latency = MetricsConfig.serializationLatency(metrics, format);
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+            long start = System.nanoTime();
+            try {
+                if (object instanceof AssistantResponse) {
+                    outputMessage.getBody().write(wireCodec.encode((AssistantResponse) object, format));
+                } else {
+                    super.writeInternal(object, type, outputMessage);
+                }
+            } finally {
+                latency.recordNanos(System.nanoTime() - start);
+            }
+        }
+    }
+}
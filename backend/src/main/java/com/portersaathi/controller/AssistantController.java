@@ -2,79 +2,254 @@ package com.portersaathi.controller;
 
 import com.portersaathi.model.AssistantRequest;
 import com.portersaathi.model.AssistantResponse;
-import com.portersaathi.model.Driver;
+import com.portersaathi.model.BatchQueryResult;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.EmergencyDispatchStats;
+import com.portersaathi.model.FleetSegmentStats;
 import com.portersaathi.service.AssistantService;
+import com.portersaathi.service.BatchQueryService;
+import com.portersaathi.service.DriverRateLimiter;
+import com.portersaathi.service.DriverViewWriter;
+import com.portersaathi.service.EarningsStore;
+import com.portersaathi.service.EmergencyDispatcher;
+import com.portersaathi.service.FleetAnalytics;
+import com.portersaathi.service.Intent;
+import com.portersaathi.service.QueryExecutor;
+import com.portersaathi.service.WireFormat;
+import com.portersaathi.speech.SpeechService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "http://localhost:3000")
 public class AssistantController {
 
+    private static final Logger log = LoggerFactory.getLogger(AssistantController.class);
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private AssistantService assistantService;
 
+    @Autowired
+    private EmergencyDispatcher emergencyDispatcher;
+
+    @Autowired
+    private QueryExecutor queryExecutor;
+
+    @Autowired
+    private BatchQueryService batchQueryService;
+
+    @Autowired
+    private DriverViewWriter driverViewWriter;
+
+    @Autowired
+    private DriverRateLimiter rateLimiter;
+
+    @Autowired
+    private SpeechService speechService;
+
+    @Autowired
+    private FleetAnalytics fleetAnalytics;
+
     /**
-     * Endpoint to process user queries
+     * Endpoint to process user queries. Runs on the execution mode chosen by
+     * porter.execution-mode. Emergencies go to the reserved lane and are never
+     * refused; other queries answer 429 over the driver's rate limit and 503
+     * when the server is shedding load, before any of the answer is worked out.
+     * With voice responses on, answers carry an audioUrl to their speech.
      * @param request The AssistantRequest containing driverId and query
      * @return AssistantResponse with the processed response
      */
     @PostMapping("/query")
-    public ResponseEntity<AssistantResponse> processQuery(@RequestBody AssistantRequest request) {
-        try {
-            AssistantResponse response = assistantService.processQuery(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            // Log the error and return a user-friendly error response
-            AssistantResponse errorResponse = new AssistantResponse();
-            errorResponse.setResponse("Sorry, I'm having trouble processing your request. Please try again.");
-            errorResponse.setType("text");
-            return ResponseEntity.internalServerError().body(errorResponse);
+    public CompletableFuture<ResponseEntity<AssistantResponse>> processQuery(@RequestBody AssistantRequest request) {
+        Intent intent = assistantService.detectIntent(request.getQuery());
+        if (intent == Intent.EMERGENCY) {
+            return queryExecutor.executeUrgent(() -> ResponseEntity.ok(
+                            assistantService.processQuery(request, assistantService.snapshot(request.getDriverId()), intent)))
+                    .exceptionally(e -> errorResponse(e, "Emergency alert failed. Please try again or call directly."));
+        }
+        long waitNanos = rateLimiter.tryAcquire(request.getDriverId());
+        if (waitNanos > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(waitNanos));
+        }
+        return queryExecutor.execute(() -> {
+                    AssistantResponse response = assistantService.processQuery(request,
+                            assistantService.snapshot(request.getDriverId()), intent);
+                    speechService.attachAudio(response, response.getLanguage());
+                    return ResponseEntity.ok(response);
+                }, intent.isSheddable())
+                .exceptionally(e -> errorResponse(e, "Sorry, I'm having trouble processing your request. Please try again."));
+    }
+
+    /**
+     * Endpoint to process queries an offline app synced in one go. Results
+     * are streamed as newline-delimited JSON as soon as each is ready, so
+     * they may arrive out of order; each carries its index in the batch.
+     * Each query takes a token from its driver's rate limit, up to a full
+     * bucket per batch, and the whole batch holds one execution permit. A
+     * refused batch gives back the tokens it took.
+     * @param requests The queued AssistantRequests, in the order they were asked
+     * @return Stream of BatchQueryResult lines, 413 if the batch is too large, 429 over a
+     * driver's rate limit, 503 when the server is shedding load
+     */
+    @PostMapping("/query/batch")
+    public ResponseEntity<ResponseBodyEmitter> processBatch(@RequestBody List<AssistantRequest> requests) {
+        if (requests.size() > batchQueryService.getMaxQueries()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
         }
+        Map<String, Integer> queriesByDriver = new HashMap<>();
+        for (AssistantRequest request : requests) {
+            queriesByDriver.merge(String.valueOf(request.getDriverId()), 1, Integer::sum);
+        }
+        Map<String, Integer> acquired = new HashMap<>();
+        for (Map.Entry<String, Integer> driver : queriesByDriver.entrySet()) {
+            long waitNanos = rateLimiter.tryAcquire(driver.getKey(), driver.getValue());
+            if (waitNanos > 0) {
+                // A refused batch must not cost the other drivers in it their tokens
+                acquired.forEach(rateLimiter::refund);
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds(waitNanos)))
+                        .build();
+            }
+            acquired.put(driver.getKey(), driver.getValue());
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        // Syncing can wait, so a batch is shed like small talk
+        CompletableFuture<Void> batch = queryExecutor.executeAsync(
+                () -> batchQueryService.process(requests, result -> sendLine(emitter, result)), true);
+        if (batch.isCompletedExceptionally()) {
+            acquired.forEach(rateLimiter::refund);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        batch.whenComplete((done, error) -> {
+            if (error == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(error);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
     }
 
     /**
-     * Endpoint to get driver information
+     * Endpoint to get driver information, as JSON, CBOR or Smile by the
+     * Accept header. Answers 304 without rendering anything when
+     * If-None-Match carries the current ETag.
      * @param id The driver ID
-     * @return Driver object with the driver's information
+     * @param fields Comma-separated fields to include, e.g. vehicle,today; defaults to the full driver
+     * @param from First earnings day to include, as yyyy-MM-dd
+     * @param to Last earnings day to include, as yyyy-MM-dd
+     * @return The driver's information, 404 if unknown, 400 for unknown fields
      */
-    @GetMapping("/driver/{id}")
-    public ResponseEntity<Driver> getDriver(@PathVariable String id) {
+    @GetMapping(value = "/driver/{id}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, "application/x-jackson-smile"})
+    public ResponseEntity<byte[]> getDriver(@PathVariable String id,
+                                            @RequestParam(required = false) String fields,
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                            WebRequest request) {
+        Set<String> view;
         try {
-            Driver driver = assistantService.getDriver(id);
-            if (driver != null) {
-                return ResponseEntity.ok(driver);
-            } else {
+            view = driverViewWriter.parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        WireFormat format = WireFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        String etag = driverViewWriter.etag(id, format);
+        if (etag == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        try {
+            byte[] body = driverViewWriter.write(id, view, from, to, format);
+            if (body == null) {
                 return ResponseEntity.notFound().build();
             }
+            return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType()).body(body);
         } catch (Exception e) {
+            log.error("Could not render driver {}", id, e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * Endpoint to record or replace one day of a driver's earnings. The
+     * update is durable once this returns.
+     * @param id The driver ID
+     * @param date The day, as yyyy-MM-dd
+     * @param earnings The day's totals
+     * @return 204 on success, 400 if the day is more than five years from today, 404 if the driver is unknown
+     */
+    @PutMapping("/driver/{id}/earnings/{date}")
+    public ResponseEntity<Void> updateEarnings(@PathVariable String id,
+                                               @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                               @RequestBody DailyEarnings earnings) {
+        if (!EarningsStore.isRecordable(date)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!assistantService.updateDriverEarnings(id, date, earnings)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Endpoint to trigger emergency assistance
      * @param driverId The driver ID
+     * @param location Last known location, if the app has one
      * @return AssistantResponse with emergency information
      */
     @PostMapping("/emergency/{driverId}")
-    public ResponseEntity<AssistantResponse> triggerEmergency(@PathVariable String driverId) {
-        try {
-            AssistantRequest request = new AssistantRequest();
-            request.setDriverId(driverId);
-            request.setQuery("emergency help needed");
+    public CompletableFuture<ResponseEntity<AssistantResponse>> triggerEmergency(@PathVariable String driverId,
+                                                                                 @RequestParam(required = false) String location) {
+        // Emergencies use the reserved lane and skip the rate limit
+        return queryExecutor.executeUrgent(() -> ResponseEntity.ok(assistantService.triggerEmergency(driverId, location, null)))
+                .exceptionally(e -> errorResponse(e, "Emergency alert failed. Please try again or call directly."));
+    }
 
-            AssistantResponse response = assistantService.processQuery(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            // Log the error and return a user-friendly error response
-            AssistantResponse errorResponse = new AssistantResponse();
-            errorResponse.setResponse("Emergency alert failed. Please try again or call directly.");
-            errorResponse.setType("text");
-            return ResponseEntity.internalServerError().body(errorResponse);
-        }
+    /**
+     * Endpoint to get emergency dispatch counters and latency percentiles
+     * @return EmergencyDispatchStats since startup
+     */
+    @GetMapping("/emergency/metrics")
+    public ResponseEntity<EmergencyDispatchStats> getEmergencyMetrics() {
+        return ResponseEntity.ok(emergencyDispatcher.getStats());
+    }
+
+    /**
+     * Endpoint to get weekly earnings and trip-rate percentiles per vehicle
+     * type, from the last fleet analytics refresh
+     * @return The whole fleet first, then each vehicle type
+     */
+    @GetMapping("/fleet/segments")
+    public ResponseEntity<List<FleetSegmentStats>> getFleetSegments() {
+        return ResponseEntity.ok(fleetAnalytics.getStats());
     }
 
     /**
@@ -95,6 +270,7 @@ public class AssistantController {
         String[] commands = {
                 "Aaj ka kharcha kaat ke kitna kamaya?",
                 "Mera business pichle hafte se behtar hai ya nahi?",
+                "Kya main dusre drivers se zyada kamata hoon?",
                 "Kya mujhe koi penalty lagi hai?",
                 "Challan kaise contest karein?",
                 "DigiLocker par documents kaise upload karein?",
@@ -102,4 +278,45 @@ public class AssistantController {
         };
         return ResponseEntity.ok(commands);
     }
-}
\ No newline at end of file
+
+    private static void sendLine(ResponseBodyEmitter emitter, BatchQueryResult result) {
+        // Results come from several threads; keep each JSON object and its newline together
+        synchronized (emitter) {
+            try {
+                emitter.send(result, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static ResponseEntity<AssistantResponse> tooManyRequests(long waitNanos) {
+        AssistantResponse response = new AssistantResponse();
+        response.setResponse("You are asking too quickly. Please wait a moment and try again.");
+        response.setType("text");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds(waitNanos)))
+                .body(response);
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static ResponseEntity<AssistantResponse> errorResponse(Throwable error, String message) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+        // Log the error and return a user-friendly error response
+        AssistantResponse errorResponse = new AssistantResponse();
+        errorResponse.setResponse(message);
+        errorResponse.setType("text");
+        if (cause instanceof RejectedExecutionException) {
+            // Expected under overload and counted in porter_query_rejected_total; logging each would add to the load
+            log.debug("Rejected request: {}", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        }
+        log.error("Request failed", cause);
+        return ResponseEntity.internalServerError().body(errorResponse);
+    }
+}
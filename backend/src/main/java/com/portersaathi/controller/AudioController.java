@@ -0,0 +1,184 @@
+package com.portersaathi.controller;
+
+import com.portersaathi.speech.AudioCache;
+import com.portersaathi.speech.AudioStream;
+import com.portersaathi.speech.SpeechService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/audio")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AudioController {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioController.class);
+
+    // Request attributes of Tomcat's sendfile support, as used by its DefaultServlet
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private SpeechService speechService;
+
+    /**
+     * Endpoint to fetch the cached audio of a static answer. Supports single
+     * byte ranges. The file is opened once for its size; its content goes
+     * from disk to the socket with Tomcat's sendfile, without passing through
+     * the JVM heap. Sendfile reopens the file by name after this returns,
+     * which {@link AudioCache} allows for by keeping evicted files on disk a
+     * while longer. Without sendfile the content is copied from the open handle.
+     * @param name The name from the answer's audioUrl
+     * @return The audio, 206 for a range, 304 if unchanged, 404 if unknown
+     */
+    @GetMapping("/{name:.+}")
+    public void getAudio(@PathVariable String name, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        CompletableFuture<Path> audio = AudioCache.isValidName(name) ? speechService.cachedAudio(name) : null;
+        if (audio == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Names are content hashes, so a name's audio never changes
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + name + "\"")) {
+            return;
+        }
+        Path file;
+        FileChannel channel;
+        try {
+            file = audio.join();
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // Evicted and deleted after the lookup; rendered again, once
+                CompletableFuture<Path> again = speechService.cachedAudio(name);
+                if (again == null) {
+                    throw e;
+                }
+                file = again.join();
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not render audio {}", name, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        try (FileChannel opened = channel) {
+            sendFile(request, response, file, opened, speechService.getContentType());
+        }
+    }
+
+    /**
+     * Endpoint to stream the audio of a dynamic answer while it is rendered.
+     * Chunks are sent as soon as each is ready.
+     * @param id The ID from the answer's audioUrl
+     * @return The audio as a chunked stream, or 404 if unknown or expired
+     */
+    @GetMapping("/stream/{id}")
+    public ResponseEntity<ResponseBodyEmitter> streamAudio(@PathVariable String id) {
+        AudioStream stream = speechService.stream(id);
+        if (stream == null) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType contentType = MediaType.parseMediaType(stream.getContentType());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        stream.subscribe(new AudioStream.Listener() {
+            @Override
+            public void chunk(byte[] chunk) throws IOException {
+                emitter.send(chunk, contentType);
+            }
+
+            @Override
+            public void end(Throwable error) {
+                if (error == null) {
+                    emitter.complete();
+                } else {
+                    emitter.completeWithError(error);
+                }
+            }
+        });
+        return ResponseEntity.ok().contentType(contentType).body(emitter);
+    }
+
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file,
+                                 FileChannel channel, String contentType) throws IOException {
+        long length = channel.size();
+        long start = 0;
+        long end = length; // exclusive
+        List<HttpRange> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+        // Multiple ranges are rare for audio; answering with the whole file is allowed
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            if (length == 0 || !satisfiable(range, length)) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length) + 1;
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file itself once the response is committed, with FileChannel.transferTo
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, out);
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String header) {
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList(); // a malformed Range header is ignored
+        }
+    }
+
+    // HttpRange clamps the end to the file but does not check the start
+    private static boolean satisfiable(HttpRange range, long length) {
+        try {
+            long start = range.getRangeStart(length);
+            return start < length && start <= range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.portersaathi.controller;
+
+import com.portersaathi.model.DriverLocation;
+import com.portersaathi.model.NearbyDriver;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.LocationIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:3000")
+public class LocationController {
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    /**
+     * Endpoint for driver location pings. Apps with an open WebSocket should
+     * send pings to /app/driver-location instead.
+     * @param id The driver ID
+     * @param location The fix; its driverId is taken from the path
+     * @return 204 once indexed, 404 if the driver is unknown, 400 for invalid coordinates
+     */
+    @PostMapping("/driver/{id}/location")
+    public ResponseEntity<Void> updateLocation(@PathVariable String id, @RequestBody DriverLocation location) {
+        if (driverStore.get(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        location.setDriverId(id);
+        try {
+            locationIndex.update(location);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Endpoint to get a driver's latest location
+     * @param id The driver ID
+     * @return The latest fix, or 404 if none was received
+     */
+    @GetMapping("/driver/{id}/location")
+    public ResponseEntity<DriverLocation> getLocation(@PathVariable String id) {
+        DriverLocation location = locationIndex.get(id);
+        if (location == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(location);
+    }
+
+    /**
+     * Endpoint to find the nearest online drivers to a pickup point
+     * @param lat Pickup latitude
+     * @param lng Pickup longitude
+     * @param k Maximum number of drivers
+     * @return Drivers nearest first, with their distance in meters, or 400 for invalid coordinates
+     */
+    @GetMapping("/drivers/nearest")
+    public ResponseEntity<List<NearbyDriver>> nearest(@RequestParam double lat,
+                                                      @RequestParam double lng,
+                                                      @RequestParam(defaultValue = "5") int k) {
+        if (!LocationIndex.isValid(lat, lng)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationIndex.nearest(lat, lng, Math.min(k, 100)));
+    }
+
+    /**
+     * Endpoint to find online and busy drivers around a point
+     * @param lat Center latitude
+     * @param lng Center longitude
+     * @param radius Radius in meters
+     * @return Drivers within the radius, nearest first, or 400 for invalid coordinates or radius
+     */
+    @GetMapping("/drivers/within")
+    public ResponseEntity<List<NearbyDriver>> within(@RequestParam double lat,
+                                                     @RequestParam double lng,
+                                                     @RequestParam(defaultValue = "2000") double radius) {
+        if (!LocationIndex.isValid(lat, lng) || Double.isNaN(radius)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationIndex.within(lat, lng, radius));
+    }
+}
@@ -0,0 +1,127 @@
+package com.portersaathi.controller;
+
+import com.portersaathi.model.Order;
+import com.portersaathi.model.OrderStatus;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.OrderBook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:3000")
+public class OrderController {
+
+    @Autowired
+    private OrderBook orderBook;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    /**
+     * Endpoint to post a new order. It is offered to nearby drivers from the
+     * next matching pass on.
+     * @param order The order; status and driver fields are ignored
+     * @return The stored order, 400 if the pickup coordinates are invalid, or 409 if the ID is already taken
+     */
+    @PostMapping("/orders")
+    public ResponseEntity<Order> postOrder(@RequestBody Order order) {
+        if (!OrderBook.hasValidPickup(order)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(orderBook.post(order));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Endpoint to list orders waiting for a driver
+     * @param limit Maximum number of orders
+     * @return Available orders, oldest first
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<List<Order>> availableOrders(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(orderBook.available(Math.min(limit, 500)));
+    }
+
+    /**
+     * Endpoint to get an order
+     * @param id The order ID
+     * @return The order, or 404 if unknown
+     */
+    @GetMapping("/orders/{id}")
+    public ResponseEntity<Order> getOrder(@PathVariable String id) {
+        Order order = orderBook.get(id);
+        if (order == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(order);
+    }
+
+    /**
+     * Endpoint for a driver to accept an order. When several drivers accept
+     * the same order at once exactly one gets it.
+     * @param id The order ID
+     * @param driverId The accepting driver
+     * @return The accepted order, 404 if the order or driver is unknown, 409
+     * if the order is taken or the driver already has an active order
+     */
+    @PostMapping("/orders/{id}/accept")
+    public ResponseEntity<Order> acceptOrder(@PathVariable String id, @RequestParam String driverId) {
+        if (driverStore.get(driverId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return respond(id, orderBook.accept(id, driverId));
+    }
+
+    /**
+     * Endpoint to move an order along its lifecycle
+     * @param id The order ID
+     * @param status The new status, e.g. picked_up or delivered
+     * @param driverId The assigned driver; omit to cancel as the customer
+     * @return The updated order, 403 if another driver holds it, 409 if the
+     * transition is not allowed from the current status
+     */
+    @PostMapping("/orders/{id}/status")
+    public ResponseEntity<Order> updateStatus(@PathVariable String id,
+                                              @RequestParam String status,
+                                              @RequestParam(required = false) String driverId) {
+        OrderStatus next;
+        try {
+            next = OrderStatus.fromJson(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return respond(id, orderBook.transition(id, driverId, next));
+    }
+
+    /**
+     * Endpoint to get the order a driver is currently working on
+     * @param id The driver ID
+     * @return The active order, or 404 if the driver has none
+     */
+    @GetMapping("/driver/{id}/active-order")
+    public ResponseEntity<Order> activeOrder(@PathVariable String id) {
+        String orderId = orderBook.activeOrderOf(id);
+        return orderId == null ? ResponseEntity.notFound().build() : getOrder(orderId);
+    }
+
+    private ResponseEntity<Order> respond(String id, OrderBook.Outcome outcome) {
+        switch (outcome) {
+            case DONE:
+                return ResponseEntity.ok(orderBook.get(id));
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            case NOT_ASSIGNED:
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            default:
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
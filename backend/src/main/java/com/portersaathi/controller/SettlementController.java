@@ -0,0 +1,60 @@
+package com.portersaathi.controller;
+
+import com.portersaathi.model.SettlementReport;
+import com.portersaathi.service.SettlementIngestor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:3000")
+public class SettlementController {
+
+    private static final Logger log = LoggerFactory.getLogger(SettlementController.class);
+
+    @Autowired
+    private SettlementIngestor settlementIngestor;
+
+    /**
+     * Endpoint to import a settlement file of per-trip rows into daily
+     * earnings. The body is read as it arrives, never buffered whole, e.g.
+     * {@code curl -T trips.csv -X POST -H 'Content-Type: text/csv' .../api/settlements}.
+     * Each row's fare, expenses and trips are added to the driver's day, so
+     * importing the same file again counts them twice.
+     * @param format csv or ndjson; defaults to the request's Content-Type
+     * @return Counts of accepted and rejected rows, 400 for an unknown format,
+     *         503 while another import is running
+     */
+    @PostMapping("/settlements")
+    public ResponseEntity<SettlementReport> importSettlements(@RequestParam(required = false) String format,
+                                                              HttpServletRequest request) {
+        SettlementIngestor.Format parsed = SettlementIngestor.Format.of(
+                format != null ? format : request.getHeader(HttpHeaders.CONTENT_TYPE));
+        if (parsed == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try (ReadableByteChannel body = Channels.newChannel(request.getInputStream())) {
+            return ResponseEntity.ok(settlementIngestor.ingest(body, parsed));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            // Usually the client went away mid-upload; rows merged until then stay merged
+            log.warn("Settlement import aborted", e);
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            log.error("Settlement import failed", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
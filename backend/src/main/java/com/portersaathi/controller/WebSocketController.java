@@ -1,36 +1,127 @@
 package com.portersaathi.controller;
 
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.DriverLocation;
+import com.portersaathi.model.EmergencyAlert;
+import com.portersaathi.model.VoiceCommand;
+import com.portersaathi.model.VoiceResponse;
+import com.portersaathi.service.DriverStore;
+import com.portersaathi.service.EmergencyDispatcher;
+import com.portersaathi.service.LocationIndex;
+import com.portersaathi.service.VoiceCommandService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Controller
 public class WebSocketController {
 
+    @Autowired
+    private VoiceCommandService voiceCommandService;
+
+    @Autowired
+    private EmergencyDispatcher emergencyDispatcher;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    // Disconnect events can repeat for one session, so sessions are tracked by ID rather than counted
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    private LongAdder sessionsOpened;
+
+    @PostConstruct
+    public void registerMetrics() {
+        sessionsOpened = metrics.counter("porter_websocket_sessions_opened_total", "STOMP sessions opened");
+        metrics.gauge("porter_websocket_sessions", "Open STOMP sessions", sessions::size);
+        metrics.gauge("porter_voice_sessions", "Sessions with an in-progress voice transcript",
+                voiceCommandService::getActiveSessions);
+    }
+
     /**
-     * WebSocket endpoint for real-time voice communication
-     * @param message The incoming message
-     * @return Processed response
+     * WebSocket endpoint for streaming voice transcripts. Interim transcripts
+     * may get an early answer; the final transcript always gets one. Answers
+     * go only to the sending session, on /user/queue/voice-response.
+     * @param command The transcript update
+     * @param sessionId The sending STOMP session
+     * @return The answer, or null if this update needs none
      */
     @MessageMapping("/voice-command")
-    @SendTo("/topic/voice-response")
-    public String handleVoiceCommand(String message) {
-        // In a real implementation, this would process voice commands
-        // For now, we'll just echo the message
-        return "Received: " + message;
+    @SendToUser(destinations = "/queue/voice-response", broadcast = false)
+    public VoiceResponse handleVoiceCommand(@Payload VoiceCommand command,
+                                            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        return voiceCommandService.handle(sessionId, command);
     }
 
     /**
-     * WebSocket endpoint for emergency alerts
+     * WebSocket endpoint for emergency alerts. The alert is fanned out to
+     * the emergency contact and the ops topic by the emergency dispatcher;
+     * the sender gets the accepted alert back on /user/queue/emergency-ack.
+     * A repeat that was not sent again is acknowledged with status
+     * "duplicate" and the ID of the alert that was.
      * @param alert The emergency alert
-     * @return Confirmation message
+     * @return The alert as accepted for dispatch, or null if the driver is unknown
      */
     @MessageMapping("/emergency-alert")
-    @SendTo("/topic/emergency-notifications")
-    public String handleEmergencyAlert(String alert) {
-        // In a real implementation, this would process emergency alerts
-        // For now, we'll just log and confirm
-        System.out.println("Emergency alert received: " + alert);
-        return "Emergency alert acknowledged: " + alert;
+    @SendToUser(destinations = "/queue/emergency-ack", broadcast = false)
+    public EmergencyAlert handleEmergencyAlert(@Payload EmergencyAlert alert) {
+        Driver driver = driverStore.get(alert.getDriverId());
+        if (driver == null) {
+            return null;
+        }
+        alert.setDriverName(driver.getName());
+        alert.setVehicleNumber(driver.getVehicle() != null ? driver.getVehicle().getNumber() : null);
+        alert.setEmergencyContact(driver.getEmergencyContact());
+        emergencyDispatcher.dispatch(alert);
+        return alert;
+    }
+
+    /**
+     * WebSocket endpoint for high-frequency location pings. Fire and forget:
+     * pings from unknown drivers or with invalid coordinates are dropped.
+     * @param location The driver's current fix
+     */
+    @MessageMapping("/driver-location")
+    public void handleLocation(@Payload DriverLocation location) {
+        if (driverStore.get(location.getDriverId()) == null) {
+            return;
+        }
+        try {
+            locationIndex.update(location);
+        } catch (IllegalArgumentException e) {
+            // A bad fix is simply skipped; the next ping will replace it
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null && sessions.add(sessionId)) {
+            sessionsOpened.increment();
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+        voiceCommandService.endSession(event.getSessionId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.portersaathi.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * In-house registry of counters, gauges and latency histograms, exported in
+ * the Prometheus text format.
+ *
+ * Metrics are registered once at startup and handed back to the caller as
+ * plain {@link LongAdder}s and {@link LatencyHistogram}s, so recording on a
+ * hot path is a striped add with no lookup, no label handling and no
+ * allocation. Values that already live elsewhere are registered as
+ * functions and read only at scrape time.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private enum Type {
+        COUNTER, GAUGE, SUMMARY
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Registers a counter.
+     * @param labels Alternating label names and values
+     * @return The adder to increment
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        LongAdder adder = new LongAdder();
+        counter(name, help, adder::sum, labels);
+        return adder;
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere.
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        add(name, help, Type.COUNTER, new Sample(labels, value::getAsLong, null));
+    }
+
+    /**
+     * Registers a gauge read at scrape time.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        add(name, help, Type.GAUGE, new Sample(labels, value, null));
+    }
+
+    /**
+     * Registers a latency histogram, exported in seconds as a summary.
+     * @return The histogram to record into
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram(name, help, histogram, labels);
+        return histogram;
+    }
+
+    /**
+     * Registers a histogram that is recorded into elsewhere.
+     */
+    public void histogram(String name, String help, LatencyHistogram histogram, String... labels) {
+        add(name, help, Type.SUMMARY, new Sample(labels, null, histogram));
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     */
+    public String scrape() {
+        List<Family> snapshot;
+        synchronized (families) {
+            snapshot = new ArrayList<>(families.values());
+        }
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : snapshot) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT))
+                    .append('\n');
+            for (Sample sample : family.samples()) {
+                if (family.type != Type.SUMMARY) {
+                    line(out, family.name, sample.labels, null, sample.value.getAsDouble());
+                    continue;
+                }
+                LatencyHistogram histogram = sample.histogram;
+                for (double quantile : QUANTILES) {
+                    line(out, family.name, sample.labels, "quantile=\"" + quantile + "\"",
+                            histogram.getPercentileMillis(quantile * 100) / 1000);
+                }
+                line(out, family.name + "_sum", sample.labels, null, histogram.getSumMillis() / 1000);
+                line(out, family.name + "_count", sample.labels, null, histogram.getCount());
+            }
+        }
+        return out.toString();
+    }
+
+    private void add(String name, String help, Type type, Sample sample) {
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+            if (family.type != type) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+            }
+            family.add(sample);
+        }
+    }
+
+    private static void line(StringBuilder out, String name, String labels, String extraLabel, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        private final List<Sample> samples = new ArrayList<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        synchronized void add(Sample sample) {
+            for (Sample existing : samples) {
+                if (existing.labels.equals(sample.labels)) {
+                    throw new IllegalArgumentException("Metric " + name + "{" + sample.labels + "} is already registered");
+                }
+            }
+            samples.add(sample);
+        }
+
+        synchronized List<Sample> samples() {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    private static final class Sample {
+        final String labels; // Rendered once, e.g. intent="earnings"
+        final DoubleSupplier value;
+        final LatencyHistogram histogram;
+
+        Sample(String[] labels, DoubleSupplier value, LatencyHistogram histogram) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name/value pairs");
+            }
+            StringBuilder rendered = new StringBuilder();
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    rendered.append(',');
+                }
+                rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            this.labels = rendered.toString();
+            this.value = value;
+            this.histogram = histogram;
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
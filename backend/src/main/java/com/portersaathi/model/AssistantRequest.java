@@ -6,5 +6,5 @@ import lombok.Data;
 public class AssistantRequest {
     private String driverId;
     private String query;
-    private String language = "hi";
+    private String language; // null: the driver's preference
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.portersaathi.model;
 
 import lombok.Data;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 
 @Data
@@ -9,5 +9,6 @@ public class AssistantResponse {
     private String response;
     private String type; // "text" or "audio"
     private String audioUrl; // URL to generated audio file if type is audio
-    private Map<String, String> suggestions = new HashMap<>(); // Suggested follow-up questions
+    private String language; // language code the answer is in
+    private Map<String, String> suggestions = Collections.emptyMap(); // Suggested follow-up questions
 }
\ No newline at end of file
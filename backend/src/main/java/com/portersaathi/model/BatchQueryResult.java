@@ -0,0 +1,11 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class BatchQueryResult {
+    private int index; // Position of the query in the submitted batch
+    private String driverId;
+    private AssistantResponse response;
+    private String error; // Set instead of response if this query failed
+}
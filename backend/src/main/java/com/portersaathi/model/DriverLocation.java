@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class DriverLocation {
+    private String driverId;
+    private double lat;
+    private double lng;
+    private String status = "online"; // "online", "busy" or "offline"
+    private long timestamp; // Epoch millis when the fix was taken; 0 means now
+}
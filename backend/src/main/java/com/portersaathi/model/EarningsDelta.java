@@ -0,0 +1,14 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+public class EarningsDelta {
+    private String driverId;
+    private Map<LocalDate, DailyEarnings> days; // Only the days changed since the previous delta
+    private RollingEarnings rolling;
+    private int updates; // Earnings updates folded into this delta
+    private long timestamp;
+}
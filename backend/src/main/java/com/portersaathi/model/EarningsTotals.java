@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class EarningsTotals {
+    private double totalEarnings;
+    private double expenses;
+    private double netEarnings;
+    private int completedTrips;
+    private int activeDays; // days in the range that have earnings data
+}
@@ -4,8 +4,13 @@ import lombok.Data;
 
 @Data
 public class EmergencyAlert {
+    private String alertId;
     private String driverId;
+    private String driverName;
+    private String vehicleNumber;
     private String location;
     private String emergencyType;
     private String timestamp;
-}
\ No newline at end of file
+    private EmergencyContact emergencyContact;
+    private String status; // "dispatching", "delivered", "failed", or "duplicate" for a repeat not sent again
+}
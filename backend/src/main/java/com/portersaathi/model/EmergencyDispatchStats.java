@@ -0,0 +1,15 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class EmergencyDispatchStats {
+    private long dispatched;
+    private long delivered;
+    private long failed;
+    private long retries;
+    private long inFlight;
+    private double p50Millis;
+    private double p99Millis;
+    private double maxMillis;
+}
@@ -0,0 +1,16 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class ExpiryReminder {
+    private String driverId;
+    private String document; // "insurance"
+    private String vehicleNumber;
+    private LocalDate expiryDate;
+    private int daysLeft; // 0 on the day it expires
+    private String text; // the reminder in the driver's language, ready to be spoken
+    private String language;
+}
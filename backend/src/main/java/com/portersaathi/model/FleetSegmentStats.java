@@ -0,0 +1,19 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class FleetSegmentStats {
+    private String vehicleType;
+    private int drivers;           // drivers with trips in the last 7 days
+    private double meanWeeklyNet;
+    private double p10WeeklyNet;
+    private double p25WeeklyNet;
+    private double medianWeeklyNet;
+    private double p75WeeklyNet;
+    private double p90WeeklyNet;
+    private double p25TripsPerDay;
+    private double medianTripsPerDay;
+    private double p75TripsPerDay;
+    private String computedAt;     // ISO-8601 instant of the refresh
+}
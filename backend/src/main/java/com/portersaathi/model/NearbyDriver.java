@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class NearbyDriver {
+    private String driverId;
+    private double lat;
+    private double lng;
+    private String status;
+    private double distanceMeters;
+}
@@ -0,0 +1,30 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class Order {
+    private String id;
+    private String customerId;
+    private String customerName;
+    private String customerPhone;
+    private String pickupAddress;
+    private String deliveryAddress;
+    private Double pickupLat; // Pickup coordinates; orders without them are never matched automatically
+    private Double pickupLng;
+    private List<OrderItem> items = new ArrayList<>();
+    private OrderStatus status = OrderStatus.AVAILABLE;
+    private String driverId; // Driver who accepted the order
+    private double paymentAmount;
+    private String pickupTime;
+    private String deliveryTime;
+    private String estimatedDeliveryTime;
+    private String distance;
+    private String notes;
+    private String createdAt;
+    private String acceptedAt;
+    private String pickedUpAt;
+    private String deliveredAt;
+}
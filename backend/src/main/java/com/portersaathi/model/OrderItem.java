@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class OrderItem {
+    private String id;
+    private String name;
+    private int quantity;
+    private double price;
+    private String notes;
+}
@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class OrderOffer {
+    private String orderId;
+    private String pickupAddress;
+    private String deliveryAddress;
+    private double paymentAmount;
+    private double distanceMeters; // From the driver to the pickup
+}
@@ -0,0 +1,54 @@
+package com.portersaathi.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * Order lifecycle, serialized in lower case as the app expects
+ * ("available", "picked_up", ...).
+ */
+public enum OrderStatus {
+    AVAILABLE,
+    ACCEPTED,
+    PICKED_UP,
+    IN_TRANSIT,
+    DELIVERED,
+    CANCELLED;
+
+    /**
+     * @return Whether an order in this status may move to the next one
+     */
+    public boolean canMoveTo(OrderStatus next) {
+        switch (this) {
+            case AVAILABLE:
+                return next == ACCEPTED || next == CANCELLED;
+            case ACCEPTED:
+                return next == PICKED_UP || next == CANCELLED;
+            case PICKED_UP:
+                return next == IN_TRANSIT || next == DELIVERED;
+            case IN_TRANSIT:
+                return next == DELIVERED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Whether the order is assigned to a driver and not yet finished
+     */
+    public boolean isActive() {
+        return this == ACCEPTED || this == PICKED_UP || this == IN_TRANSIT;
+    }
+
+    @JsonValue
+    public String toJson() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @JsonCreator
+    public static OrderStatus fromJson(String value) {
+        return valueOf(value.toUpperCase(Locale.ROOT));
+    }
+}
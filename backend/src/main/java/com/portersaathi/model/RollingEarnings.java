@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class RollingEarnings {
+    private EarningsTotals lastWeek;      // last 7 days including today
+    private EarningsTotals previousWeek;  // the 7 days before that
+    private EarningsTotals lastMonth;     // last 30 days including today
+    private EarningsTotals previousMonth; // the 30 days before that
+    private EarningsTotals lastQuarter;   // last 90 days including today
+}
@@ -0,0 +1,16 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SettlementReport {
+    private String format;
+    private long lines;       // non-empty lines read, including a CSV header
+    private long accepted;    // rows added to daily earnings; a row imported again is added again
+    private long rejected;    // malformed rows, rows for unknown drivers and dates out of range
+    private long driverDays;  // driver-day merges applied, after folding rows of the same day together
+    private long elapsedMillis;
+    private List<String> errors = new ArrayList<>(); // the first few rejections, as "line N: reason"
+}
@@ -0,0 +1,18 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class TripSettlement {
+    private String driverId;
+    private LocalDate date;
+    private String tripId;
+    private double fare;
+    private double expenses;
+    private int trips = 1; // completed trips this row settles
+    private String penaltyId;
+    private String penaltyReason;
+    private String rewardId;
+    private String rewardReason;
+}
@@ -0,0 +1,13 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class VoiceCommand {
+    private String driverId;
+    private String transcript;
+    private String language; // null: the driver's preference
+    private long utteranceId;    // increments for every new utterance on a session
+    private long sequence;       // increments for every transcript update within an utterance
+    private boolean partial;     // true while speech recognition is still streaming
+}
@@ -0,0 +1,12 @@
+package com.portersaathi.model;
+
+import lombok.Data;
+
+@Data
+public class VoiceResponse {
+    private long utteranceId;
+    private long sequence;
+    private boolean partial;     // true if answered from an interim transcript
+    private String intent;
+    private AssistantResponse answer;
+}
@@ -0,0 +1,345 @@
+package com.portersaathi.persistence;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Durable journal of driver and earnings mutations.
+ *
+ * Every mutation is appended to a write-ahead log segment and group
+ * committed before the caller returns. Every
+ * {@code porter.persistence-snapshot-records} records, and on shutdown, the
+ * whole state is compacted into a snapshot and older segments are deleted.
+ * On boot the latest snapshot is loaded and the segments written after it
+ * are replayed; a torn record at the very end of the log, left by a crash
+ * mid-write, is truncated away.
+ *
+ * Files in {@code porter.persistence-dir}: {@code wal-<n>.log} segments and
+ * {@code snapshot-<n>.bin}, where snapshot n already contains everything in
+ * segments below n.
+ */
+@Component
+public class DriverJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverJournal.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    // Mutations hold the read lock while they apply and append; a snapshot
+    // takes the write lock only to switch segments
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final ThreadLocal<BinaryWriter> encoders = ThreadLocal.withInitial(() -> new BinaryWriter(1024));
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+    private Path directory;
+    private JournaledState state;
+    private WriteAheadLog wal;
+    private ExecutorService snapshotter;
+    private volatile long segment;
+
+    public boolean isEnabled() {
+        return wal != null;
+    }
+
+    /**
+     * Restores the state from disk and starts journaling. Does nothing if
+     * persistence is disabled.
+     * @param state The state to restore into and to snapshot from
+     */
+    public synchronized void open(JournaledState state) {
+        if (!properties.isPersistenceEnabled() || wal != null) {
+            return;
+        }
+        this.state = state;
+        directory = Paths.get(properties.getPersistenceDir());
+        try {
+            Files.createDirectories(directory);
+            long start = System.nanoTime();
+            segment = recover();
+            log.info("Recovered driver state from {} in {} ms", directory.toAbsolutePath(),
+                    (System.nanoTime() - start) / 1_000_000);
+            wal = new WriteAheadLog(segmentPath(segment), properties.isPersistenceFsync());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal in " + directory.toAbsolutePath(), e);
+        }
+        snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a journaled mutation. Apply the change and call the matching
+     * record method while the write is open; closing it waits until the
+     * record is durable.
+     */
+    public Write begin() {
+        if (wal == null) {
+            return Write.DISABLED;
+        }
+        checkpointLock.readLock().lock();
+        return new Write(this);
+    }
+
+    /**
+     * Compacts the current state into a new snapshot and drops the log
+     * segments it covers. Writers are paused only while the log switches
+     * segments, not while the snapshot is written.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (wal == null) {
+            return;
+        }
+        long next;
+        checkpointLock.writeLock().lock();
+        try {
+            next = segment + 1;
+            wal.rotate(segmentPath(next));
+            segment = next;
+            recordsSinceSnapshot.set(0);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+
+        // Records in the new segment may already be in the snapshot; replaying them is harmless
+        long start = System.nanoTime();
+        long drivers = SnapshotFile.write(snapshotPath(next), state.snapshotDrivers());
+        log.info("Wrote snapshot {} with {} drivers in {} ms", next, drivers, (System.nanoTime() - start) / 1_000_000);
+
+        for (Path file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (sequenceOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX) < next) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < next) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+
+    public long getBytesWritten() {
+        return wal == null ? 0 : wal.getBytesWritten();
+    }
+
+    public long getSyncs() {
+        return wal == null ? 0 : wal.getSyncs();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (wal == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            // A fresh snapshot makes the next start a plain load with nothing to replay
+            if (recordsSinceSnapshot.get() > 0) {
+                snapshot();
+            }
+            wal.close();
+        } catch (IOException e) {
+            log.error("Could not close journal cleanly", e);
+        }
+        wal = null;
+    }
+
+    private long recover() throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long base = 0;
+        long drivers = 0;
+        if (!snapshots.isEmpty()) {
+            Path latest = snapshots.get(snapshots.size() - 1);
+            base = sequenceOf(latest, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            drivers = SnapshotFile.read(latest, state::restoreDriver);
+        }
+
+        List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long last = base;
+        long records = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path file = segments.get(i);
+            long sequence = sequenceOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            last = Math.max(last, sequence);
+            if (sequence < base) {
+                continue;
+            }
+            long[] replayed = new long[1];
+            long end = Frames.read(file, 0, payload -> {
+                replay(new BinaryReader(payload));
+                replayed[0]++;
+            });
+            records += replayed[0];
+            if (end < Files.size(file)) {
+                if (i < segments.size() - 1) {
+                    throw new IOException("Journal segment " + file + " is corrupt at offset " + end);
+                }
+                log.warn("Truncating torn record at offset {} of {}", end, file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                }
+            }
+            if (end == 0) {
+                // Nothing in it; without this every restart would leave an empty segment behind
+                Files.delete(file);
+            }
+        }
+        log.info("Loaded {} drivers from snapshot {} and replayed {} log records", drivers, base, records);
+        // Count the replayed tail, so the next snapshot spares the next start from replaying it again
+        recordsSinceSnapshot.set(records);
+
+        // Always append to a fresh segment
+        return last + 1;
+    }
+
+    private void replay(BinaryReader in) {
+        int type = in.readByte();
+        if (type == RecordCodec.DRIVER) {
+            state.restoreDriver(RecordCodec.decodeDriver(in));
+        } else if (type == RecordCodec.EARNINGS) {
+            String driverId = in.readString();
+            LocalDate date = RecordCodec.decodeDate(in);
+            state.restoreEarnings(driverId, date, RecordCodec.decodeDay(in));
+        } else {
+            throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private long append(BinaryWriter record) {
+        long seq = wal.append(record.array(), record.size());
+        recordsWritten.incrementAndGet();
+        return seq;
+    }
+
+    private void afterWrite(int records) {
+        if (recordsSinceSnapshot.addAndGet(records) >= properties.getPersistenceSnapshotRecords()
+                && snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    log.error("Snapshot failed", e);
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted((a, b) -> Long.compare(sequenceOf(a, prefix, suffix), sequenceOf(b, prefix, suffix)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    /**
+     * One journaled mutation. Record methods must be called while the
+     * mutation holds whatever lock orders it against other writers of the
+     * same driver, so the log replays in the order the state changed. A
+     * write may hold several records, which then share one wait for
+     * durability.
+     */
+    public static final class Write implements AutoCloseable {
+
+        private static final Write DISABLED = new Write(null);
+
+        private final DriverJournal journal;
+        private long seq;
+        private int records;
+
+        private Write(DriverJournal journal) {
+            this.journal = journal;
+        }
+
+        public void driver(Driver driver) {
+            if (journal == null) {
+                return;
+            }
+            BinaryWriter record = journal.encoders.get();
+            record.reset();
+            RecordCodec.encodeDriver(record, driver);
+            seq = journal.append(record);
+            records++;
+        }
+
+        public void earnings(String driverId, LocalDate date, DailyEarnings earnings) {
+            if (journal == null) {
+                return;
+            }
+            BinaryWriter record = journal.encoders.get();
+            record.reset();
+            RecordCodec.encodeEarnings(record, driverId, date, earnings);
+            seq = journal.append(record);
+            records++;
+        }
+
+        /**
+         * Waits until the recorded mutation is durable.
+         */
+        @Override
+        public void close() {
+            if (journal == null) {
+                return;
+            }
+            journal.checkpointLock.readLock().unlock();
+            if (seq > 0) {
+                journal.wal.awaitDurable(seq);
+                journal.afterWrite(records);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.portersaathi.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Framing shared by log segments and snapshots: each record is written as
+ * {@code [int length][int crc32c][payload]}, so a torn or corrupted tail is
+ * detected on read instead of being decoded as garbage.
+ */
+final class Frames {
+
+    static final int HEADER_BYTES = 8;
+    static final int MAX_PAYLOAD_BYTES = 64 << 20;
+
+    // Files are read through memory-mapped windows of this size; a window
+    // always holds at least one whole frame
+    private static final long WINDOW_BYTES = 256L << 20;
+
+    interface Visitor {
+        void visit(ByteBuffer payload);
+    }
+
+    private Frames() {
+    }
+
+    static int checksum(byte[] payload, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a frame to a buffer; the caller guarantees it has room.
+     */
+    static void put(ByteBuffer target, byte[] payload, int length, int checksum) {
+        target.putInt(length);
+        target.putInt(checksum);
+        target.put(payload, 0, length);
+    }
+
+    /**
+     * Visits every intact frame from {@code offset} on, in file order.
+     * @return Offset just past the last intact frame; smaller than the file
+     *         size if the file ends in a torn or corrupted frame
+     */
+    static long read(Path file, long offset, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = offset;
+            while (position < size) {
+                long windowBytes = Math.min(WINDOW_BYTES, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowBytes);
+                int consumed = readWindow(window, visitor);
+                if (consumed == 0) {
+                    // Not even one whole frame fits: either the tail is torn or the frame is corrupt
+                    break;
+                }
+                position += consumed;
+                if (consumed < windowBytes && windowBytes < WINDOW_BYTES) {
+                    // Last window and it ended in a bad frame
+                    break;
+                }
+            }
+            return position;
+        }
+    }
+
+    /**
+     * @return Bytes of intact frames at the start of the window
+     */
+    private static int readWindow(ByteBuffer window, Visitor visitor) {
+        int position = 0;
+        int limit = window.limit();
+        while (limit - position >= HEADER_BYTES) {
+            int length = window.getInt(position);
+            int checksum = window.getInt(position + 4);
+            if (length < 0 || length > MAX_PAYLOAD_BYTES || limit - position - HEADER_BYTES < length) {
+                break;
+            }
+            ByteBuffer payload = window.slice(position + HEADER_BYTES, length);
+            if (checksum(payload.duplicate()) != checksum) {
+                break;
+            }
+            visitor.visit(payload);
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
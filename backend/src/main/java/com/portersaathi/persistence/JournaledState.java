@@ -0,0 +1,22 @@
+package com.portersaathi.persistence;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+
+import java.time.LocalDate;
+
+/**
+ * The in-memory state a {@link DriverJournal} persists. Restore methods
+ * apply recovered records without journaling them again.
+ */
+public interface JournaledState {
+
+    void restoreDriver(Driver driver);
+
+    void restoreEarnings(String driverId, LocalDate date, DailyEarnings earnings);
+
+    /**
+     * @return Every driver with their full earnings history, for a snapshot
+     */
+    Iterable<Driver> snapshotDrivers();
+}
@@ -0,0 +1,147 @@
+package com.portersaathi.persistence;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.EmergencyContact;
+import com.portersaathi.model.Vehicle;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary layout of journal records. Every record starts with a type byte;
+ * a DRIVER record carries the full profile and earnings history, an
+ * EARNINGS record one replaced day. Both are idempotent, so replaying a
+ * record that a snapshot already contains is harmless.
+ */
+final class RecordCodec {
+
+    static final int DRIVER = 1;
+    static final int EARNINGS = 2;
+
+    private RecordCodec() {
+    }
+
+    static void encodeDriver(BinaryWriter out, Driver driver) {
+        out.writeByte(DRIVER);
+        out.writeString(driver.getId());
+        out.writeString(driver.getName());
+        out.writeString(driver.getPhone());
+        out.writeString(driver.getLanguagePreference());
+
+        Vehicle vehicle = driver.getVehicle();
+        out.writeByte(vehicle == null ? 0 : 1);
+        if (vehicle != null) {
+            out.writeString(vehicle.getType());
+            out.writeString(vehicle.getNumber());
+            out.writeString(vehicle.getInsuranceExpiry());
+            out.writeString(vehicle.getRegistrationDocId());
+        }
+
+        EmergencyContact contact = driver.getEmergencyContact();
+        out.writeByte(contact == null ? 0 : 1);
+        if (contact != null) {
+            out.writeString(contact.getName());
+            out.writeString(contact.getPhone());
+            out.writeString(contact.getRelationship());
+        }
+
+        Map<LocalDate, DailyEarnings> earnings = driver.getEarnings();
+        if (earnings == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(earnings.size());
+        for (Map.Entry<LocalDate, DailyEarnings> day : earnings.entrySet()) {
+            writeDay(out, day.getKey(), day.getValue());
+        }
+    }
+
+    static void encodeEarnings(BinaryWriter out, String driverId, LocalDate date, DailyEarnings earnings) {
+        out.writeByte(EARNINGS);
+        out.writeString(driverId);
+        writeDay(out, date, earnings);
+    }
+
+    static Driver decodeDriver(BinaryReader in) {
+        Driver driver = new Driver();
+        driver.setId(in.readString());
+        driver.setName(in.readString());
+        driver.setPhone(in.readString());
+        driver.setLanguagePreference(in.readString());
+
+        if (in.readByte() != 0) {
+            Vehicle vehicle = new Vehicle();
+            vehicle.setType(in.readString());
+            vehicle.setNumber(in.readString());
+            vehicle.setInsuranceExpiry(in.readString());
+            vehicle.setRegistrationDocId(in.readString());
+            driver.setVehicle(vehicle);
+        }
+
+        if (in.readByte() != 0) {
+            EmergencyContact contact = new EmergencyContact();
+            contact.setName(in.readString());
+            contact.setPhone(in.readString());
+            contact.setRelationship(in.readString());
+            driver.setEmergencyContact(contact);
+        }
+
+        int days = in.readVarInt();
+        Map<LocalDate, DailyEarnings> earnings = new HashMap<>(Math.max(16, days * 2));
+        for (int i = 0; i < days; i++) {
+            LocalDate date = decodeDate(in);
+            earnings.put(date, decodeDay(in));
+        }
+        driver.setEarnings(earnings);
+        return driver;
+    }
+
+    /**
+     * Reads the day of an EARNINGS record whose type and driver ID were already read.
+     */
+    static LocalDate decodeDate(BinaryReader in) {
+        return LocalDate.ofEpochDay(in.readInt());
+    }
+
+    private static void writeDay(BinaryWriter out, LocalDate date, DailyEarnings earnings) {
+        out.writeInt(Math.toIntExact(date.toEpochDay()));
+        out.writeDouble(earnings.getTotalEarnings());
+        out.writeDouble(earnings.getExpenses());
+        out.writeDouble(earnings.getNetEarnings());
+        out.writeVarInt(earnings.getCompletedTrips());
+        writeMap(out, earnings.getPenalties());
+        writeMap(out, earnings.getRewards());
+    }
+
+    static DailyEarnings decodeDay(BinaryReader in) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(in.readDouble());
+        earnings.setExpenses(in.readDouble());
+        earnings.setNetEarnings(in.readDouble());
+        earnings.setCompletedTrips(in.readVarInt());
+        readMap(in, earnings.getPenalties());
+        readMap(in, earnings.getRewards());
+        return earnings;
+    }
+
+    private static void writeMap(BinaryWriter out, Map<String, String> map) {
+        if (map == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeString(entry.getValue());
+        }
+    }
+
+    private static void readMap(BinaryReader in, Map<String, String> map) {
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            map.put(in.readString(), in.readString());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.portersaathi.persistence;
+
+import com.portersaathi.model.Driver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Compacted image of every driver: a header frame, one DRIVER frame per
+ * driver and a trailer frame with the driver count. Written to a temporary
+ * file and renamed into place, so a crash mid-write leaves the previous
+ * snapshot untouched.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x50534e50; // "PSNP"
+    private static final int VERSION = 1;
+    private static final int TRAILER = 0x7f;
+    private static final int WRITE_BUFFER_BYTES = 4 << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * @return Number of drivers written
+     */
+    static long write(Path file, Iterable<Driver> drivers) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        BinaryWriter record = new BinaryWriter(4096);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        long count = 0;
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            record.writeInt(MAGIC);
+            record.writeInt(VERSION);
+            buffer = writeFrame(channel, buffer, record);
+
+            for (Driver driver : drivers) {
+                record.reset();
+                RecordCodec.encodeDriver(record, driver);
+                buffer = writeFrame(channel, buffer, record);
+                count++;
+            }
+
+            record.reset();
+            record.writeByte(TRAILER);
+            record.writeLong(count);
+            buffer = writeFrame(channel, buffer, record);
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Streams every driver in the snapshot to the consumer.
+     * @return Number of drivers read
+     * @throws IOException if the snapshot is not a complete, intact snapshot file
+     */
+    static long read(Path file, Consumer<Driver> consumer) throws IOException {
+        long[] state = new long[3]; // frames seen, drivers read, trailer count (or -1)
+        state[2] = -1;
+        long end = Frames.read(file, 0, payload -> {
+            BinaryReader in = new BinaryReader(payload);
+            if (state[0]++ == 0) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IllegalStateException("Not a driver snapshot: " + file);
+                }
+                return;
+            }
+            int type = in.readByte();
+            if (type == TRAILER) {
+                state[2] = in.readLong();
+            } else if (type == RecordCodec.DRIVER) {
+                consumer.accept(RecordCodec.decodeDriver(in));
+                state[1]++;
+            }
+        });
+        if (end != Files.size(file) || state[2] != state[1]) {
+            throw new IOException("Snapshot " + file + " is incomplete or corrupt");
+        }
+        return state[1];
+    }
+
+    private static ByteBuffer writeFrame(FileChannel channel, ByteBuffer buffer, BinaryWriter record) throws IOException {
+        int frameBytes = Frames.HEADER_BYTES + record.size();
+        if (buffer.remaining() < frameBytes) {
+            drain(channel, buffer);
+            if (buffer.capacity() < frameBytes) {
+                buffer = ByteBuffer.allocateDirect(frameBytes);
+            }
+        }
+        Frames.put(buffer, record.array(), record.size(), Frames.checksum(record.array(), record.size()));
+        return buffer;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,209 @@
+package com.portersaathi.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log segment writer with group commit.
+ *
+ * Appenders copy their frame into a shared buffer and get a sequence
+ * number back; a single flusher thread writes whatever has accumulated
+ * with one write and one fsync, then wakes every appender the batch
+ * covered. While one fsync is in flight the next batch builds up, so the
+ * number of fsyncs stays flat as the number of writers grows.
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_BYTES = 1 << 20;
+
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Thread flusher;
+
+    // Guarded by lock
+    private FileChannel channel;
+    private ByteBuffer active = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private long appendedSeq;
+    private long durableSeq;
+    private long bytesWritten;
+    private long syncs;
+    private IOException failure;
+    private boolean closed;
+
+    WriteAheadLog(Path segment, boolean fsync) throws IOException {
+        this.fsync = fsync;
+        this.channel = open(segment);
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a record for the next group commit.
+     * @return Sequence number to pass to {@link #awaitDurable(long)}
+     */
+    long append(byte[] payload, int length) {
+        int checksum = Frames.checksum(payload, length);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            int frameBytes = Frames.HEADER_BYTES + length;
+            if (active.remaining() < frameBytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + frameBytes));
+                active.flip();
+                grown.put(active);
+                active = grown;
+            }
+            Frames.put(active, payload, length, checksum);
+            pending.signal();
+            return ++appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk.
+     */
+    void awaitDurable(long seq) {
+        lock.lock();
+        try {
+            while (durableSeq < seq && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (failure != null && durableSeq < seq) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Switches to a new segment once everything appended so far is durable.
+     * Callers must stop appenders first, or their records could land in
+     * either segment.
+     */
+    void rotate(Path segment) throws IOException {
+        FileChannel next = open(segment);
+        FileChannel previous;
+        lock.lock();
+        try {
+            while (durableSeq < appendedSeq && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            previous = channel;
+            channel = next;
+        } finally {
+            lock.unlock();
+        }
+        previous.close();
+    }
+
+    long getBytesWritten() {
+        lock.lock();
+        try {
+            return bytesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getSyncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            FileChannel target;
+            long batchSeq;
+            lock.lock();
+            try {
+                while (active.position() == 0 && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return;
+                }
+                // Swap buffers so appenders keep going while this batch is written
+                ByteBuffer batch = active;
+                active = writing;
+                writing = batch;
+                target = channel;
+                batchSeq = appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            long written = writing.position();
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    target.write(writing);
+                }
+                if (fsync) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.clear();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSeq = batchSeq;
+                    bytesWritten += written;
+                    syncs++;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private static FileChannel open(Path segment) throws IOException {
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
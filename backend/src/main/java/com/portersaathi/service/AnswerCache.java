@@ -0,0 +1,214 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.AssistantResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Recent answers that depend on a driver's data, for queries asked again
+ * before that data changes: retries, double taps and speech recognition
+ * re-emitting an utterance. An answer is keyed by intent, the day asked
+ * about and language, so different phrasings of one question share it.
+ *
+ * A driver's answers are held together under the {@link DriverStore}
+ * version and the date they were computed at. Any write to the driver
+ * bumps the version, so the next lookup finds the group stale and
+ * replaces it; {@link #invalidate} drops it right away. Identical
+ * requests that arrive while an answer is being computed wait for that
+ * computation instead of repeating it.
+ *
+ * Drivers are kept in two generations of {@code porter.answer-cache-drivers / 2}
+ * each, as in {@link QueryNormalizer}: when the young one fills up it
+ * becomes the old one and the previous old one is evicted. A size of 0
+ * turns the cache off.
+ */
+@Component
+public class AnswerCache {
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private volatile ConcurrentHashMap<String, Answers> young = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, Answers> old = new ConcurrentHashMap<>();
+    private int generationSize;
+
+    private LongAdder hits;
+    private LongAdder misses;
+    private LongAdder collapsed;
+    private LongAdder invalidations;
+    private LongAdder evictions;
+
+    /**
+     * What an answer depends on besides the driver's data and the date.
+     */
+    public static final class Key {
+        private final Intent intent;
+        private final int daysAgo;
+        private final String language;
+
+        public Key(Intent intent, int daysAgo, String language) {
+            this.intent = intent;
+            this.daysAgo = daysAgo;
+            this.language = language;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return intent == key.intent && daysAgo == key.daysAgo && Objects.equals(language, key.language);
+        }
+
+        @Override
+        public int hashCode() {
+            return (intent.ordinal() * 31 + daysAgo) * 31 + Objects.hashCode(language);
+        }
+    }
+
+    // One driver's answers at one data version and date
+    private static final class Answers {
+        final long version;
+        final long day;
+        final ConcurrentHashMap<Key, CompletableFuture<AssistantResponse>> byKey = new ConcurrentHashMap<>(4);
+
+        Answers(long version, long day) {
+            this.version = version;
+            this.day = day;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        generationSize = properties.getAnswerCacheDrivers() / 2;
+        hits = metrics.counter("porter_answer_cache_hits_total", "Answers served from the cache");
+        misses = metrics.counter("porter_answer_cache_misses_total", "Answers computed because none was cached");
+        collapsed = metrics.counter("porter_answer_cache_collapsed_total",
+                "Requests that waited for an identical answer already being computed");
+        invalidations = metrics.counter("porter_answer_cache_invalidations_total",
+                "Drivers whose cached answers were dropped because their data changed");
+        evictions = metrics.counter("porter_answer_cache_evictions_total", "Drivers evicted to stay within the size limit");
+        metrics.gauge("porter_answer_cache_drivers", "Drivers with cached answers", () -> young.size() + old.size());
+    }
+
+    /**
+     * Returns the cached answer, or computes and caches it.
+     * @param version The driver's version from {@link DriverStore#getVersion}, read before any of their data
+     * @param today The date the answer treats as today
+     * @param compute Works out the answer; not called if it is cached or being computed
+     * @return A copy of the answer, which the caller may change
+     */
+    public AssistantResponse get(String driverId, long version, LocalDate today, Key key,
+                                 Supplier<AssistantResponse> compute) {
+        Answers answers = generationSize <= 0 ? null : answers(driverId, version, today.toEpochDay());
+        if (answers == null) {
+            misses.increment();
+            return compute.get();
+        }
+
+        CompletableFuture<AssistantResponse> computing = null;
+        CompletableFuture<AssistantResponse> existing = answers.byKey.get(key);
+        if (existing == null) {
+            computing = new CompletableFuture<>();
+            existing = answers.byKey.putIfAbsent(key, computing);
+        }
+        if (existing != null) {
+            (existing.isDone() ? hits : collapsed).increment();
+            try {
+                return copy(existing.join());
+            } catch (CompletionException e) {
+                // The computation it waited for failed; this request tries on its own
+                return compute.get();
+            }
+        }
+
+        misses.increment();
+        AssistantResponse response;
+        try {
+            response = compute.get();
+        } catch (RuntimeException | Error e) {
+            answers.byKey.remove(key, computing);
+            computing.completeExceptionally(e);
+            throw e;
+        }
+        computing.complete(response);
+        return copy(response);
+    }
+
+    /**
+     * Drops a driver's cached answers, for a write that just bumped their version.
+     */
+    public void invalidate(String driverId) {
+        if (young.remove(driverId) != null | old.remove(driverId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * @return The driver's answers at this version and date, or null if a
+     *         newer version is already cached and the caller's data may be older
+     */
+    private Answers answers(String driverId, long version, long day) {
+        ConcurrentHashMap<String, Answers> current = young;
+        Answers answers = current.get(driverId);
+        if (answers == null) {
+            answers = old.remove(driverId);
+            if (answers != null) {
+                current.put(driverId, answers);
+            }
+        }
+        if (answers != null && answers.version == version && answers.day == day) {
+            return answers;
+        }
+        if (answers != null && (answers.version > version || answers.day > day)) {
+            return null;
+        }
+
+        Answers fresh = new Answers(version, day);
+        Answers stored = current.merge(driverId, fresh, (previous, next) ->
+                previous.version == next.version && previous.day == next.day ? previous
+                        : previous.version > next.version || previous.day > next.day ? previous : next);
+        if (answers != null && stored == fresh) {
+            invalidations.increment();
+        }
+        if (current.size() > generationSize) {
+            rotate(current);
+        }
+        return stored.version == version && stored.day == day ? stored : null;
+    }
+
+    private void rotate(ConcurrentHashMap<String, Answers> current) {
+        synchronized (this) {
+            if (young == current) {
+                evictions.add(old.size());
+                old = current;
+                young = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    private static AssistantResponse copy(AssistantResponse response) {
+        AssistantResponse copy = new AssistantResponse();
+        copy.setResponse(response.getResponse());
+        copy.setType(response.getType());
+        copy.setAudioUrl(response.getAudioUrl());
+        copy.setLanguage(response.getLanguage());
+        copy.setSuggestions(response.getSuggestions());
+        return copy;
+    }
+}
@@ -1,29 +1,113 @@
 package com.portersaathi.service;
 
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
 import com.portersaathi.model.*;
+import com.portersaathi.speech.SpeechService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class AssistantService {
 
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private EmergencyDispatcher emergencyDispatcher;
+
+    @Autowired
+    private EarningsPublisher earningsPublisher;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private SpeechService speechService;
+
+    @Autowired
+    private WireCodec wireCodec;
+
+    @Autowired
+    private ExpiryReminders expiryReminders;
+
+    @Autowired
+    private QueryNormalizer queryNormalizer;
+
+    @Autowired
+    private FleetAnalytics fleetAnalytics;
+
+    @Autowired
+    private ConversationStore conversations;
+
+    @Autowired
+    private AnswerCache answerCache;
+
     // In-memory data storage (instead of database)
-    private Map<String, Driver> drivers = new HashMap<>();
     private Map<String, List<String>> processGuides = new HashMap<>();
-    private Map<String, String> commonQueries = new HashMap<>();
+    private ResponseCatalog responses;
+    private Map<Intent, List<String>> intentKeywords = new EnumMap<>(Intent.class);
+    private IntentMatcher intentMatcher;
+    private final Map<String, Integer> daysAgoByWord = new HashMap<>();
+
+    // Indexed by Intent ordinal, so recording needs no lookup
+    private final LongAdder[] intentHits = new LongAdder[Intent.values().length];
+    private final LatencyHistogram[] handlerLatency = new LatencyHistogram[Intent.values().length];
+    private LongAdder unknownDriver;
+    private LongAdder queuedEmergencies;
 
     @PostConstruct
     public void initData() {
-        // Initialize with sample driver data
-        initializeSampleDrivers();
+        // Seed sample driver data on first start; later starts recover it from the journal
+        if (driverStore.size() == 0) {
+            initializeSampleDrivers();
+        }
 
         // Initialize process guides
         initializeProcessGuides();
 
-        // Initialize common queries and responses
+        // Pre-render common responses, guides and text templates
+        responses = new ResponseCatalog(properties.getDefaultLanguage());
         initializeCommonQueries();
+        speechService.registerPhrases(responses);
+        wireCodec.registerStaticTexts(responses);
+        expiryReminders.registerTemplates(responses);
+
+        // Compile intent keywords, normalized like queries, into a single-pass matcher
+        initializeIntentKeywords();
+        Map<Intent, List<String>> normalizedKeywords = new EnumMap<>(Intent.class);
+        intentKeywords.forEach((intent, keywords) -> {
+            List<String> normalized = new ArrayList<>();
+            for (String keyword : keywords) {
+                normalized.add(QueryNormalizer.normalizeText(keyword));
+            }
+            normalizedKeywords.put(intent, normalized);
+        });
+        intentMatcher = IntentMatcher.compile(normalizedKeywords);
+        initializeDayWords();
+
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        for (Intent intent : Intent.values()) {
+            String label = intent.name().toLowerCase(Locale.ROOT);
+            intentHits[intent.ordinal()] = metrics.counter("porter_assistant_queries_total",
+                    "Queries answered, by routed intent; intent=\"unknown\" counts unmatched queries", "intent", label);
+            handlerLatency[intent.ordinal()] = metrics.histogram("porter_assistant_handler_seconds",
+                    "Time to route and answer a query, excluding driver lookup and serialization", "intent", label);
+        }
+        unknownDriver = metrics.counter("porter_assistant_unknown_driver_total", "Queries for drivers that do not exist");
+        queuedEmergencies = metrics.counter("porter_assistant_queued_emergencies_total",
+                "Emergencies synced from an offline app, answered without an alert");
     }
 
     private void initializeSampleDrivers() {
@@ -74,7 +158,7 @@ public class AssistantService {
         lastWeekEarnings.setCompletedTrips(6);
         driver.getEarnings().put(lastWeek, lastWeekEarnings);
 
-        drivers.put(driver.getId(), driver);
+        addDriver(driver);
 
         // Add another sample driver
         Driver driver2 = new Driver();
@@ -95,7 +179,7 @@ public class AssistantService {
         contact2.setRelationship("Brother");
         driver2.setEmergencyContact(contact2);
 
-        drivers.put(driver2.getId(), driver2);
+        addDriver(driver2);
     }
 
     private void initializeProcessGuides() {
@@ -130,245 +214,635 @@ public class AssistantService {
     }
 
     private void initializeCommonQueries() {
-        commonQueries.put("greeting", "Namaste! Main aapka Porter Saathi hoon. Aaj main aapki kya madad kar sakta hoon?");
-        commonQueries.put("thanks", "Aapka swagat hai! Kya aapko koi aur madad chahiye?");
-        commonQueries.put("help", "Main aapki madad earnings, penalties, challan, documents, aur emergency situations ke liye kar sakta hoon.");
+        Map<String, String> helpSuggestions = new LinkedHashMap<>();
+        helpSuggestions.put("earnings", "Aaj maine kitna kamaya?");
+        helpSuggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
+        helpSuggestions.put("challan", "Challan kaise contest karein?");
+        helpSuggestions.put("emergency", "Sahayata chahiye");
+
+        Map<String, String> unknownSuggestions = new LinkedHashMap<>();
+        unknownSuggestions.put("earnings", "Aaj maine kitna kamaya?");
+        unknownSuggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
+        unknownSuggestions.put("emergency", "Sahayata chahiye");
+
+        Map<String, String> earningsSuggestions = new LinkedHashMap<>();
+        earningsSuggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
+        earningsSuggestions.put("comparison", "Pichle hafte ke mukable aaj ka performance kaisa raha?");
+        earningsSuggestions.put("peers", "Kya main dusre drivers se zyada kamata hoon?");
+
+        Map<String, String> helpSuggestionsEn = new LinkedHashMap<>();
+        helpSuggestionsEn.put("earnings", "How much did I earn today?");
+        helpSuggestionsEn.put("penalties", "Do I have any penalties?");
+        helpSuggestionsEn.put("challan", "How do I contest a challan?");
+        helpSuggestionsEn.put("emergency", "I need help");
+
+        Map<String, String> unknownSuggestionsEn = new LinkedHashMap<>();
+        unknownSuggestionsEn.put("earnings", "How much did I earn today?");
+        unknownSuggestionsEn.put("penalties", "Do I have any penalties?");
+        unknownSuggestionsEn.put("emergency", "I need help");
+
+        Map<String, String> earningsSuggestionsEn = new LinkedHashMap<>();
+        earningsSuggestionsEn.put("penalties", "Do I have any penalties?");
+        earningsSuggestionsEn.put("comparison", "How did I do compared with last week?");
+        earningsSuggestionsEn.put("peers", "Am I earning more than drivers like me?");
+
+        responses.register("greeting", "hi", "Namaste! Main aapka Porter Saathi hoon. Aaj main aapki kya madad kar sakta hoon?");
+        responses.register("thanks", "hi", "Aapka swagat hai! Kya aapko koi aur madad chahiye?");
+        responses.register("help", "hi", "Main aapki madad earnings, penalties, challan, documents, aur emergency situations ke liye kar sakta hoon.", helpSuggestions);
+        responses.register("unknown", "hi", "Maaf kijiye, main samajh nahi paaya. Aap mujhse apni kamai, penalty ya kisi aur madad ke baare mein pooch sakte hain.", unknownSuggestions);
+        responses.register("driver_not_found", "hi", "Aapki driver profile nahi mili. Kripya thodi der baad phir koshish karein.");
+
+        responses.register("earnings", "hi", "Aaj ke liye koi earning data uplabdh nahi hai.", earningsSuggestions);
+        responses.registerTemplate("earnings", "hi", "Aaj aapne {} trip complete kiye aur ₹{} kamaye. " +
+                "Aapka kharcha ₹{} tha, isliye aapki net kamai hai ₹{}.");
+
+        responses.register("penalty_none", "hi", "Aapko aaj koi penalty nahi lagi hai. Badhai ho!");
+        responses.registerTemplate("penalty", "hi", "Aapko aaj {} penalty laga hai: ");
+
+        responses.register("business", "hi", "Main business comparison ke liye paryaapt data nahi dhundh paaya.");
+        responses.registerTemplate("business_week", "hi", "Is hafte aapka business pichle hafte ke mukable {} percent {} raha. " +
+                "Is hafte aapne {} trip mein ₹{} kamaye jabki pichle hafte {} trip mein ₹{} kamaye the.{}{}");
+        responses.registerTemplate("business_month", "hi", " Pichle mahine ke mukable aapka business {} percent {} hai.");
+        responses.registerTemplate("business_margin", "hi", " Is hafte aapka net margin {} percent raha.");
+        responses.register("growth_up", "hi", "behtar");
+        responses.register("growth_down", "hi", "kam");
+
+        responses.register("day_1", "hi", "Kal");
+        responses.register("day_2", "hi", "Parso");
+        responses.registerTemplate("earnings_day", "hi", "{} aapne {} trip complete kiye aur ₹{} kamaye. " +
+                "Aapka kharcha ₹{} tha, isliye aapki net kamai thi ₹{}.");
+        responses.registerTemplate("earnings_day_none", "hi", "{} ke liye koi earning data uplabdh nahi hai.");
+        responses.registerTemplate("penalty_day", "hi", "{} aapko {} penalty laga tha: ");
+        responses.registerTemplate("penalty_day_none", "hi", "{} aapko koi penalty nahi lagi thi.");
+        responses.register("guide_done", "hi", "Yeh aakhri step tha. Kya aapko koi aur madad chahiye?");
+
+        responses.register("peer", "hi", "Aapki gaadi wale drivers ka abhi paryaapt data nahi hai, isliye tulna nahi ho saki.");
+        responses.register("peer_inactive", "hi", "Is hafte aapki koi kamai record nahi hui, isliye tulna nahi ho saki.");
+        responses.registerTemplate("peer", "hi", "{} chalane wale {} drivers mein is hafte aapki net kamai ₹{} rahi, " +
+                "jo {} percent drivers se zyada hai. Beech ke driver ne ₹{} kamaye aur sabse upar ke 10 percent ne ₹{} se zyada. " +
+                "Aap din mein {} trip karte hain, jabki beech ka driver {} trip karta hai.");
+        responses.registerTemplate("reminder_insurance", "hi", "Aapki gaadi {} ka insurance {} din mein, {} ko khatam ho raha hai. " +
+                "Samay par renew karwa lijiye.");
+        responses.registerTemplate("reminder_insurance_today", "hi", "Aapki gaadi {} ka insurance aaj khatam ho raha hai. " +
+                "Bina insurance gaadi na chalayein, aaj hi renew karwa lijiye.");
+
+        responses.register("emergency", "hi", "Emergency alert bhej diya gaya hai. " +
+                "Aapki location aur details emergency contacts ko bhej di gayi hain. " +
+                "Kripya shant rahein aur madad ka intezar karein. " +
+                "Aapki safety hamari priority hai.");
+        responses.register("emergency_queued", "hi", "Aapka emergency message offline record hua tha, " +
+                "isliye ab alert nahi bheja gaya. Agar aapko abhi bhi madad chahiye to turant 112 par call karein " +
+                "ya 'Sahayata chahiye' bolein.");
+
+        // Step-by-step guides become static responses with the steps as suggestions
+        responses.registerGuide("challan", "hi", "Main aapko challan contest karne mein madad kar sakta hun. " +
+                "Yeh ek step-by-step process hai:", processGuides.get("contest_challan"));
+        responses.registerGuide("digilocker", "hi", "Main aapko DigiLocker par documents upload karne mein madad kar sakta hun. " +
+                "Yeh process kuch steps mein puri hogi:", processGuides.get("digilocker_upload"));
+        responses.registerGuide("insurance", "hi", "Main aapko vehicle insurance ke liye apply karne mein madad kar sakta hun. " +
+                "Yeh process kuch steps mein puri hogi:", processGuides.get("apply_insurance"));
+
+        // English; templates keep the placeholder order of the Hindi ones
+        responses.register("greeting", "en", "Hello! I am your Porter Saathi. How can I help you today?");
+        responses.register("thanks", "en", "You're welcome! Is there anything else I can help with?");
+        responses.register("help", "en", "I can help you with earnings, penalties, challans, documents and emergencies.", helpSuggestionsEn);
+        responses.register("unknown", "en", "I'm not sure how to help with that. You can ask me about your earnings, penalties, or other assistance.", unknownSuggestionsEn);
+        responses.register("driver_not_found", "en", "I couldn't find your driver profile. Please try again later.");
+
+        responses.register("earnings", "en", "No earnings data is available for today yet.", earningsSuggestionsEn);
+        responses.registerTemplate("earnings", "en", "Today you completed {} trips and earned ₹{}. " +
+                "Your expenses were ₹{}, so your net earnings are ₹{}.");
+
+        responses.register("penalty_none", "en", "You have no penalties today. Well done!");
+        responses.registerTemplate("penalty", "en", "You have {} penalties today: ");
+
+        responses.register("business", "en", "I couldn't find enough data to compare your business.");
+        responses.registerTemplate("business_week", "en", "This week your business is {} percent {} than last week. " +
+                "This week you made {} trips and earned ₹{}, against {} trips and ₹{} last week.{}{}");
+        responses.registerTemplate("business_month", "en", " Compared with last month, your business is {} percent {}.");
+        responses.registerTemplate("business_margin", "en", " Your net margin this week was {} percent.");
+        responses.register("growth_up", "en", "better");
+        responses.register("growth_down", "en", "lower");
+
+        responses.register("day_1", "en", "Yesterday");
+        responses.register("day_2", "en", "The day before yesterday");
+        responses.registerTemplate("earnings_day", "en", "{} you completed {} trips and earned ₹{}. " +
+                "Your expenses were ₹{}, so your net earnings were ₹{}.");
+        responses.registerTemplate("earnings_day_none", "en", "{} has no earnings data.");
+        responses.registerTemplate("penalty_day", "en", "{} you had {} penalties: ");
+        responses.registerTemplate("penalty_day_none", "en", "{} you had no penalties.");
+        responses.register("guide_done", "en", "That was the last step. Is there anything else I can help with?");
+
+        responses.register("peer", "en", "There isn't enough data on drivers with your vehicle yet, so I can't compare.");
+        responses.register("peer_inactive", "en", "You have no earnings recorded this week, so I can't compare you yet.");
+        responses.registerTemplate("peer", "en", "Compared with {} drivers ({} active this week), your net earnings this week were ₹{}, " +
+                "more than {} percent of them. The median driver earned ₹{} and the top 10 percent more than ₹{}. " +
+                "You make {} trips a day, against {} for the median driver.");
+        responses.registerTemplate("reminder_insurance", "en", "The insurance for your vehicle {} expires in {} days, on {}. " +
+                "Please renew it in time.");
+        responses.registerTemplate("reminder_insurance_today", "en", "The insurance for your vehicle {} expires today. " +
+                "Please renew it before you drive again.");
+
+        responses.register("emergency", "en", "An emergency alert has been sent. " +
+                "Your location and details have been shared with your emergency contacts. " +
+                "Please stay calm and wait for help. " +
+                "Your safety is our priority.");
+        responses.register("emergency_queued", "en", "Your emergency message was recorded offline, " +
+                "so no alert was sent now. If you still need help, call 112 right away or say 'I need help'.");
+
+        responses.registerGuide("challan", "en", "I can help you contest a challan. " +
+                "It is a step-by-step process:", processGuides.get("contest_challan"));
+        responses.registerGuide("digilocker", "en", "I can help you upload documents to DigiLocker. " +
+                "It takes a few steps:", processGuides.get("digilocker_upload"));
+        responses.registerGuide("insurance", "en", "I can help you apply for vehicle insurance. " +
+                "It takes a few steps:", processGuides.get("apply_insurance"));
     }
 
-    public AssistantResponse processQuery(AssistantRequest request) {
-        String query = request.getQuery().toLowerCase();
-        Driver driver = drivers.get(request.getDriverId());
-        AssistantResponse response = new AssistantResponse();
+    private void initializeIntentKeywords() {
+        // Keywords match whole tokens; a trailing '*' also matches longer words. Spelling
+        // variants fold together, and Devanagari keywords romanize the way queries do
+        intentKeywords.put(Intent.EMERGENCY, Arrays.asList("emergency", "sahayata", "bachao", "accident",
+                "सहायता", "बचाओ", "दुर्घटना"));
+        intentKeywords.put(Intent.PEER_COMPARISON, Arrays.asList("peer*", "drivers like me", "other drivers",
+                "dusre driver*", "baaki driver*", "dusron se", "auron se",
+                "दूसरे ड्राइवर*", "दूसरे ड्राइवरों", "बाकी ड्राइवर*", "बाकी ड्राइवरों", "दूसरों से", "औरों से"));
+        intentKeywords.put(Intent.EARNINGS, Arrays.asList("kamaya", "kamaye", "kamai", "earn*", "income",
+                "कमाया", "कमाए", "कमाई", "कमाये", "आमदनी"));
+        intentKeywords.put(Intent.PENALTY, Arrays.asList("penalt*", "fine", "dand", "jurmana",
+                "पेनल्टी", "जुर्माना", "दंड"));
+        intentKeywords.put(Intent.CHALLAN, Arrays.asList("challan", "ticket", "चालान"));
+        intentKeywords.put(Intent.DIGILOCKER, Arrays.asList("digilocker", "document*", "डिजिलॉकर", "दस्तावेज़"));
+        intentKeywords.put(Intent.BUSINESS, Arrays.asList("business", "vyapar", "बिज़नेस", "व्यापार", "धंधा"));
+        intentKeywords.put(Intent.INSURANCE, Arrays.asList("insurance", "bima", "बीमा", "इंश्योरेंस"));
+        intentKeywords.put(Intent.HELP, Arrays.asList("help", "madad", "मदद"));
+        intentKeywords.put(Intent.THANKS, Arrays.asList("thank*", "dhanyavad", "shukriya", "धन्यवाद", "शुक्रिया"));
+        intentKeywords.put(Intent.GREETING, Arrays.asList("namaste", "namaskar", "hello", "hi", "hey",
+                "नमस्ते", "नमस्कार"));
+        intentKeywords.put(Intent.FOLLOW_UP, Arrays.asList("next*", "agla", "agle", "aage", "phir kya", "uske baad",
+                "aaj", "today", "kal", "yesterday", "parso*",
+                "अगला", "अगले", "आगे", "उसके बाद", "आज", "कल", "परसों"));
+    }
+
+    private void initializeDayWords() {
+        // Normalized like queries, so "aaj" and "आज" are both found as "aj"
+        String[][] words = {
+                {"aaj", "today", "आज"},
+                {"kal", "yesterday", "कल"},
+                {"parso", "parson", "परसों"}
+        };
+        for (int daysAgo = 0; daysAgo < words.length; daysAgo++) {
+            for (String word : words[daysAgo]) {
+                daysAgoByWord.put(QueryNormalizer.normalizeText(word), daysAgo);
+            }
+        }
+    }
 
+    /**
+     * Raises an emergency for a driver directly, bypassing intent routing.
+     * @param driverId The driver ID
+     * @param location Last known location, if the client has one
+     * @param language Response language
+     * @return Confirmation to read back to the driver
+     */
+    public AssistantResponse triggerEmergency(String driverId, String location, String language) {
+        Driver driver = driverStore.get(driverId);
+        language = resolveLanguage(language, false, driver);
         if (driver == null) {
-            response.setResponse("I couldn't find your driver profile. Please try again later.");
-            response.setType("text");
-            return response;
-        }
-
-        // Check for common queries first
-        if (query.contains("namaste") || query.contains("hello") || query.contains("hi")) {
-            response.setResponse(commonQueries.get("greeting"));
-            response.setType("text");
-            return response;
-        }
-
-        if (query.contains("thank") || query.contains("dhanyavad")) {
-            response.setResponse(commonQueries.get("thanks"));
-            response.setType("text");
-            return response;
-        }
-
-        if (query.contains("help") || query.contains("madad")) {
-            response.setResponse(commonQueries.get("help"));
-
-            // Add suggestions for follow-up questions
-            Map<String, String> suggestions = new HashMap<>();
-            suggestions.put("earnings", "Aaj maine kitna kamaya?");
-            suggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
-            suggestions.put("challan", "Challan kaise contest karein?");
-            suggestions.put("emergency", "Sahayata chahiye");
-
-            response.setSuggestions(suggestions);
-            response.setType("text");
-            return response;
-        }
-
-        // Handle different types of queries
-        if (query.contains("kamaya") || query.contains("earn") || query.contains("earning")) {
-            return handleEarningsQuery(driver, query);
-        } else if (query.contains("penalty") || query.contains("fine") || query.contains("dand")) {
-            return handlePenaltyQuery(driver, query);
-        } else if (query.contains("challan") || query.contains("ticket")) {
-            return handleChallanQuery();
-        } else if (query.contains("digilocker") || query.contains("document")) {
-            return handleDigilockerQuery();
-        } else if (query.contains("business") || query.contains("vyapar")) {
-            return handleBusinessQuery(driver, query);
-        } else if (query.contains("emergency") || query.contains("sahayata") || query.contains("help")) {
-            return handleEmergencyQuery(driver);
-        } else if (query.contains("insurance") || query.contains("bima")) {
-            return handleInsuranceQuery();
-        } else {
-            response.setResponse("I'm not sure how to help with that. You can ask me about your earnings, penalties, or other assistance.");
-
-            // Add suggestions for follow-up questions
-            Map<String, String> suggestions = new HashMap<>();
-            suggestions.put("earnings", "Aaj maine kitna kamaya?");
-            suggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
-            suggestions.put("emergency", "Sahayata chahiye");
-
-            response.setSuggestions(suggestions);
-            response.setType("text");
+            return respond("driver_not_found", language);
         }
+        emergencyDispatcher.dispatch(driver, location, "sos");
+        return respond("emergency", language);
+    }
 
-        return response;
+    /**
+     * Routes a query to an intent without answering it.
+     */
+    public Intent detectIntent(String query) {
+        return intentMatcher.match(queryNormalizer.normalize(query).getText());
     }
 
-    private AssistantResponse handleEarningsQuery(Driver driver, String query) {
-        AssistantResponse response = new AssistantResponse();
-        LocalDate today = LocalDate.now();
-        DailyEarnings earnings = driver.getEarnings().get(today);
+    public AssistantResponse processQuery(AssistantRequest request) {
+        return processQuery(request, snapshot(request.getDriverId()));
+    }
 
-        if (earnings != null) {
-            String responseText = String.format("Aaj aapne %d trip complete kiye aur ₹%.2f kamaye. " +
-                            "Aapka kharcha ₹%.2f tha, isliye aapki net kamai hai ₹%.2f.",
-                    earnings.getCompletedTrips(), earnings.getTotalEarnings(),
-                    earnings.getExpenses(), earnings.getNetEarnings());
+    /**
+     * Resolves a driver once so several of their queries can share the lookup.
+     * @param driverId The driver ID
+     * @return Snapshot to pass to {@link #processQuery(AssistantRequest, DriverSnapshot)}
+     */
+    public DriverSnapshot snapshot(String driverId) {
+        return new DriverSnapshot(driverStore, driverId);
+    }
 
-            response.setResponse(responseText);
-        } else {
-            response.setResponse("Aaj ke liye koi earning data uplabdh nahi hai.");
-        }
+    /**
+     * Answers a query from an already resolved driver snapshot.
+     * @param request The query; its driverId is ignored in favour of the snapshot
+     * @param snapshot The driver the query belongs to
+     * @return The assistant's answer
+     */
+    public AssistantResponse processQuery(AssistantRequest request, DriverSnapshot snapshot) {
+        return processQuery(request, snapshot, detectIntent(request.getQuery()));
+    }
 
-        // Add suggestions for follow-up questions
-        Map<String, String> suggestions = new HashMap<>();
-        suggestions.put("penalties", "Kya mujhe koi penalty lagi hai?");
-        suggestions.put("comparison", "Pichle hafte ke mukable aaj ka performance kaisa raha?");
+    /**
+     * Answers a query whose intent the caller already detected.
+     * @param intent The query's intent, from {@link #detectIntent(String)}
+     */
+    public AssistantResponse processQuery(AssistantRequest request, DriverSnapshot snapshot, Intent intent) {
+        return process(request, snapshot, intent, true);
+    }
 
-        response.setSuggestions(suggestions);
-        response.setType("text");
-        return response;
+    /**
+     * Answers a query an offline app recorded earlier and synced now. An
+     * emergency among them is stale by the time it arrives and has no
+     * location, so it is answered with the helpline instead of raising an alert.
+     */
+    public AssistantResponse processQueued(AssistantRequest request, DriverSnapshot snapshot) {
+        Intent intent = detectIntent(request.getQuery());
+        if (intent != Intent.EMERGENCY) {
+            return processQuery(request, snapshot, intent);
+        }
+        queuedEmergencies.increment();
+        boolean devanagari = queryNormalizer.normalize(request.getQuery()).isDevanagari();
+        return respond("emergency_queued", resolveLanguage(request.getLanguage(), devanagari, snapshot.getDriver()));
     }
 
-    private AssistantResponse handlePenaltyQuery(Driver driver, String query) {
-        AssistantResponse response = new AssistantResponse();
-        LocalDate today = LocalDate.now();
-        DailyEarnings earnings = driver.getEarnings().get(today);
+    /**
+     * Answers a query that may still change, such as an interim voice
+     * transcript. Unlike {@link #processQuery(AssistantRequest)} it leaves the
+     * driver's conversation context and pending reminders alone.
+     */
+    public AssistantResponse previewQuery(AssistantRequest request) {
+        DriverSnapshot snapshot = snapshot(request.getDriverId());
+        return process(request, snapshot, detectIntent(request.getQuery()), false);
+    }
+
+    private AssistantResponse process(AssistantRequest request, DriverSnapshot snapshot, Intent intent,
+                                      boolean settled) {
+        // Cached since intent detection normalized the same text
+        QueryNormalizer.Normalized query = queryNormalizer.normalize(request.getQuery());
+        String language = resolveLanguage(request.getLanguage(), query.isDevanagari(), snapshot.getDriver());
 
-        if (earnings != null && !earnings.getPenalties().isEmpty()) {
-            StringBuilder penaltyText = new StringBuilder("Aapko aaj " +
-                    earnings.getPenalties().size() + " penalty laga hai: ");
+        if (snapshot.getDriver() == null) {
+            unknownDriver.increment();
+            return respond("driver_not_found", language);
+        }
 
-            for (String reason : earnings.getPenalties().values()) {
-                penaltyText.append(reason).append(". ");
+        long start = System.nanoTime();
+        AssistantResponse response = answer(intent, snapshot, language, query.getText());
+        if (settled) {
+            rememberContext(intent, snapshot.getDriver(), query.getText());
+            if (intent != Intent.EMERGENCY) {
+                attachReminder(response, snapshot.getDriver(), language);
             }
+        }
+        response.setLanguage(language);
+        handlerLatency[intent.ordinal()].recordNanos(System.nanoTime() - start);
+        intentHits[intent.ordinal()].increment();
+        return response;
+    }
 
-            response.setResponse(penaltyText.toString());
-        } else {
-            response.setResponse("Aapko aaj koi penalty nahi lagi hai. Badhai ho!");
+    /**
+     * Picks the answer language: the one the request asked for, else Hindi
+     * for a query written in Devanagari, else the driver's preference, else
+     * porter.default-language. Languages without responses are skipped.
+     */
+    private String resolveLanguage(String requested, boolean devanagari, Driver driver) {
+        String language = responses.supportedLanguage(requested);
+        if (language == null && devanagari) {
+            language = responses.supportedLanguage("hi");
+        }
+        if (language == null && driver != null) {
+            language = responses.supportedLanguage(driver.getLanguagePreference());
         }
+        return language != null ? language : properties.getDefaultLanguage();
+    }
 
-        response.setType("text");
+    private AssistantResponse respond(String key, String language) {
+        AssistantResponse response = responses.respond(key, language);
+        response.setLanguage(language);
         return response;
     }
 
-    private AssistantResponse handleChallanQuery() {
-        AssistantResponse response = new AssistantResponse();
-        response.setResponse("Main aapko challan contest karne mein madad kar sakta hun. " +
-                "Yeh ek step-by-step process hai:");
-
-        // Add process steps as suggestions
-        Map<String, String> suggestions = new HashMap<>();
-        List<String> steps = processGuides.get("contest_challan");
+    // A reminder the driver was sent rides along with their next answer, once
+    private void attachReminder(AssistantResponse response, Driver driver, String language) {
+        ExpiryReminder reminder = expiryReminders.take(driver, language);
+        if (reminder == null) {
+            return;
+        }
+        Map<String, String> suggestions = new LinkedHashMap<>(response.getSuggestions());
+        suggestions.put("reminder_" + reminder.getDocument(), reminder.getText());
+        response.setSuggestions(suggestions);
+    }
 
-        for (int i = 0; i < steps.size(); i++) {
-            suggestions.put("step_" + (i+1), "Step " + (i+1) + ": " + steps.get(i));
+    // Only answers a follow-up can refer to replace the context, so "thanks" in between keeps it
+    private void rememberContext(Intent intent, Driver driver, String text) {
+        if (intent == Intent.EARNINGS || intent == Intent.PENALTY) {
+            conversations.remember(driver.getId(), intent, LocalDate.now().minusDays(Math.max(0, daysAgo(text))), 0);
+        } else if (guideKey(intent) != null) {
+            conversations.remember(driver.getId(), intent, LocalDate.now(), 0);
         }
+    }
 
-        response.setSuggestions(suggestions);
-        response.setType("text");
-        return response;
+    // Answers read from the driver's data are memoized per data version; the rest are cheap or have side effects
+    private AssistantResponse answer(Intent intent, DriverSnapshot snapshot, String language, String text) {
+        switch (intent) {
+            case EARNINGS:
+            case PENALTY:
+            case BUSINESS:
+                int daysAgo = intent == Intent.BUSINESS ? 0 : Math.max(0, daysAgo(text));
+                return answerCache.get(snapshot.getDriver().getId(), snapshot.getVersion(), snapshot.getToday(),
+                        new AnswerCache.Key(intent, daysAgo, language),
+                        () -> compute(intent, snapshot, language, daysAgo));
+            case FOLLOW_UP:
+                return handleFollowUp(text, snapshot, language);
+            default:
+                return compute(intent, snapshot, language, 0);
+        }
     }
 
-    private AssistantResponse handleDigilockerQuery() {
-        AssistantResponse response = new AssistantResponse();
-        response.setResponse("Main aapko DigiLocker par documents upload karne mein madad kar sakta hun. " +
-                "Yeh process kuch steps mein puri hogi:");
+    private AssistantResponse compute(Intent intent, DriverSnapshot snapshot, String language, int daysAgo) {
+        switch (intent) {
+            case EMERGENCY:
+                return handleEmergencyQuery(snapshot.getDriver(), language);
+            case PEER_COMPARISON:
+                return handlePeerQuery(snapshot, language);
+            case EARNINGS:
+                return handleEarningsQuery(snapshot, daysAgo, language);
+            case PENALTY:
+                return handlePenaltyQuery(snapshot, daysAgo, language);
+            case CHALLAN:
+                return responses.respond("challan", language);
+            case DIGILOCKER:
+                return responses.respond("digilocker", language);
+            case BUSINESS:
+                return handleBusinessQuery(snapshot, language);
+            case INSURANCE:
+                return responses.respond("insurance", language);
+            case HELP:
+                return responses.respond("help", language);
+            case THANKS:
+                return responses.respond("thanks", language);
+            case GREETING:
+                return responses.respond("greeting", language);
+            default:
+                return responses.respond("unknown", language);
+        }
+    }
 
-        // Add process steps as suggestions
-        Map<String, String> suggestions = new HashMap<>();
-        List<String> steps = processGuides.get("digilocker_upload");
+    private AssistantResponse handleEarningsQuery(DriverSnapshot snapshot, String language) {
+        DailyEarnings earnings = snapshot.getTodayEarnings();
 
-        for (int i = 0; i < steps.size(); i++) {
-            suggestions.put("step_" + (i+1), "Step " + (i+1) + ": " + steps.get(i));
+        if (earnings == null) {
+            return responses.respond("earnings", language);
         }
 
-        response.setSuggestions(suggestions);
-        response.setType("text");
-        return response;
+        String responseText = responses.template("earnings", language).writer()
+                .integer(earnings.getCompletedTrips())
+                .money(earnings.getTotalEarnings())
+                .money(earnings.getExpenses())
+                .money(earnings.getNetEarnings())
+                .toString();
+        return responses.respond("earnings", language, responseText);
     }
 
-    private AssistantResponse handleBusinessQuery(Driver driver, String query) {
-        AssistantResponse response = new AssistantResponse();
-        LocalDate today = LocalDate.now();
-        LocalDate weekAgo = today.minusDays(7);
+    private AssistantResponse handlePenaltyQuery(DriverSnapshot snapshot, String language) {
+        DailyEarnings earnings = snapshot.getTodayEarnings();
 
-        // Simple comparison logic
-        DailyEarnings todayEarnings = driver.getEarnings().get(today);
-        DailyEarnings weekAgoEarnings = driver.getEarnings().get(weekAgo);
+        if (earnings == null || earnings.getPenalties().isEmpty()) {
+            return responses.respond("penalty_none", language);
+        }
 
-        if (todayEarnings != null && weekAgoEarnings != null) {
-            double growthPercent = ((todayEarnings.getNetEarnings() - weekAgoEarnings.getNetEarnings()) /
-                    weekAgoEarnings.getNetEarnings()) * 100;
+        TextTemplate.Writer penaltyText = responses.template("penalty", language).writer()
+                .integer(earnings.getPenalties().size());
+        StringBuilder reasons = new StringBuilder();
+        for (String reason : earnings.getPenalties().values()) {
+            reasons.append(reason).append(". ");
+        }
+        return responses.respond("penalty", language, penaltyText.toString() + reasons);
+    }
 
-            String growthText = growthPercent >= 0 ?
-                    String.format("%.2f percent behtar", growthPercent) :
-                    String.format("%.2f percent kam", -growthPercent);
+    private AssistantResponse handleFollowUp(String text, DriverSnapshot snapshot, String language) {
+        String driverId = snapshot.getDriver().getId();
+        ConversationStore.Conversation last = conversations.get(driverId);
+        if (last == null) {
+            return responses.respond("unknown", language);
+        }
 
-            response.setResponse(String.format("Aaj aapka business pichle hafte ke mukable %s raha. " +
-                            "Aaj aapne ₹%.2f kamaye jabki pichle hafte us din ₹%.2f kamaye the.",
-                    growthText, todayEarnings.getNetEarnings(), weekAgoEarnings.getNetEarnings()));
-        } else {
-            response.setResponse("Main business comparison ke liye paryaapt data nahi dhundh paaya.");
+        // "aur kal?" after an earnings or penalty answer asks the same about another day
+        int daysAgo = daysAgo(text);
+        if (daysAgo >= 0) {
+            Intent intent = last.getIntent();
+            if (intent != Intent.EARNINGS && intent != Intent.PENALTY) {
+                return responses.respond("unknown", language);
+            }
+            conversations.remember(driverId, intent, LocalDate.now().minusDays(daysAgo), 0);
+            return intent == Intent.EARNINGS
+                    ? handleEarningsQuery(snapshot, daysAgo, language)
+                    : handlePenaltyQuery(snapshot, daysAgo, language);
         }
 
-        response.setType("text");
-        return response;
+        // Anything else continues a guide one step at a time
+        String guide = guideKey(last.getIntent());
+        ConversationStore.Conversation next = guide == null ? null : conversations.nextStep(driverId);
+        if (next == null) {
+            return responses.respond("unknown", language);
+        }
+        String step = responses.guideStep(guide, language, next.getStep());
+        return step == null ? responses.respond("guide_done", language) : responses.respond(guide, language, step);
     }
 
-    private AssistantResponse handleEmergencyQuery(Driver driver) {
-        AssistantResponse response = new AssistantResponse();
-        String emergencyText = "Emergency alert bhej diya gaya hai. " +
-                "Aapki location aur details emergency contacts ko bhej di gayi hain. " +
-                "Kripya shant rahein aur madad ka intezar karein. " +
-                "Aapki safety hamari priority hai.";
+    // The first day word in the normalized query, as days before today, or -1
+    private int daysAgo(String text) {
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !Character.isLetter(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && Character.isLetter(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                Integer daysAgo = daysAgoByWord.get(text.substring(start, end));
+                if (daysAgo != null) {
+                    return daysAgo;
+                }
+            }
+            start = end;
+        }
+        return -1;
+    }
 
-        response.setResponse(emergencyText);
-        response.setType("text");
+    private static String guideKey(Intent intent) {
+        switch (intent) {
+            case CHALLAN:
+                return "challan";
+            case DIGILOCKER:
+                return "digilocker";
+            case INSURANCE:
+                return "insurance";
+            default:
+                return null;
+        }
+    }
 
-        // In a real implementation, we would trigger actual emergency protocols here
-        System.out.println("EMERGENCY ALERT FOR DRIVER: " + driver.getName());
-        if (driver.getEmergencyContact() != null) {
-            System.out.println("CONTACTING: " + driver.getEmergencyContact().getName() +
-                    " at " + driver.getEmergencyContact().getPhone());
+    // Today's answers come from the snapshot; "kal" and "parso" read that day from the store
+    private AssistantResponse handleEarningsQuery(DriverSnapshot snapshot, int daysAgo, String language) {
+        if (daysAgo <= 0) {
+            return handleEarningsQuery(snapshot, language);
         }
+        DailyEarnings earnings = driverStore.getEarnings(snapshot.getDriver().getId(), LocalDate.now().minusDays(daysAgo));
+        return earningsOn(responses.text("day_" + daysAgo, language), earnings, language);
+    }
 
-        return response;
+    private AssistantResponse handlePenaltyQuery(DriverSnapshot snapshot, int daysAgo, String language) {
+        if (daysAgo <= 0) {
+            return handlePenaltyQuery(snapshot, language);
+        }
+        DailyEarnings earnings = driverStore.getEarnings(snapshot.getDriver().getId(), LocalDate.now().minusDays(daysAgo));
+        return penaltiesOn(responses.text("day_" + daysAgo, language), earnings, language);
     }
 
-    private AssistantResponse handleInsuranceQuery() {
-        AssistantResponse response = new AssistantResponse();
-        response.setResponse("Main aapko vehicle insurance ke liye apply karne mein madad kar sakta hun. " +
-                "Yeh process kuch steps mein puri hogi:");
+    private AssistantResponse earningsOn(String day, DailyEarnings earnings, String language) {
+        if (earnings == null) {
+            return responses.respond("earnings", language,
+                    responses.template("earnings_day_none", language).writer().text(day).toString());
+        }
+        String responseText = responses.template("earnings_day", language).writer()
+                .text(day)
+                .integer(earnings.getCompletedTrips())
+                .money(earnings.getTotalEarnings())
+                .money(earnings.getExpenses())
+                .money(earnings.getNetEarnings())
+                .toString();
+        return responses.respond("earnings", language, responseText);
+    }
 
-        // Add process steps as suggestions
-        Map<String, String> suggestions = new HashMap<>();
-        List<String> steps = processGuides.get("apply_insurance");
+    private AssistantResponse penaltiesOn(String day, DailyEarnings earnings, String language) {
+        if (earnings == null || earnings.getPenalties().isEmpty()) {
+            return responses.respond("penalty", language,
+                    responses.template("penalty_day_none", language).writer().text(day).toString());
+        }
+        StringBuilder penaltyText = new StringBuilder(responses.template("penalty_day", language).writer()
+                .text(day)
+                .integer(earnings.getPenalties().size())
+                .toString());
+        for (String reason : earnings.getPenalties().values()) {
+            penaltyText.append(reason).append(". ");
+        }
+        return responses.respond("penalty", language, penaltyText.toString());
+    }
+
+    private AssistantResponse handleBusinessQuery(DriverSnapshot snapshot, String language) {
+        // Week and month totals are maintained incrementally, so this is constant time
+        RollingEarnings rolling = snapshot.getRollingEarnings();
+        EarningsTotals thisWeek = rolling.getLastWeek();
+        EarningsTotals lastWeek = rolling.getPreviousWeek();
 
-        for (int i = 0; i < steps.size(); i++) {
-            suggestions.put("step_" + (i+1), "Step " + (i+1) + ": " + steps.get(i));
+        if (thisWeek.getActiveDays() == 0 || lastWeek.getActiveDays() == 0 || lastWeek.getNetEarnings() == 0) {
+            return responses.respond("business", language);
         }
 
-        response.setSuggestions(suggestions);
-        response.setType("text");
-        return response;
+        String monthText = "";
+        EarningsTotals thisMonth = rolling.getLastMonth();
+        EarningsTotals lastMonth = rolling.getPreviousMonth();
+        if (lastMonth.getActiveDays() > 0 && lastMonth.getNetEarnings() != 0) {
+            double growth = growthPercent(thisMonth.getNetEarnings(), lastMonth.getNetEarnings());
+            monthText = responses.template("business_month", language).writer()
+                    .percent(Math.abs(growth))
+                    .text(growthWord(growth, language))
+                    .toString();
+        }
+
+        String marginText = "";
+        if (thisWeek.getTotalEarnings() > 0) {
+            marginText = responses.template("business_margin", language).writer()
+                    .percent(thisWeek.getNetEarnings() / thisWeek.getTotalEarnings() * 100)
+                    .toString();
+        }
+
+        double growth = growthPercent(thisWeek.getNetEarnings(), lastWeek.getNetEarnings());
+        String responseText = responses.template("business_week", language).writer()
+                .percent(Math.abs(growth))
+                .text(growthWord(growth, language))
+                .integer(thisWeek.getCompletedTrips())
+                .money(thisWeek.getNetEarnings())
+                .integer(lastWeek.getCompletedTrips())
+                .money(lastWeek.getNetEarnings())
+                .text(monthText)
+                .text(marginText)
+                .toString();
+        return responses.respond("business", language, responseText);
+    }
+
+    private AssistantResponse handlePeerQuery(DriverSnapshot snapshot, String language) {
+        // Peers come from the precomputed fleet snapshot, the driver's own week is live
+        Vehicle vehicle = snapshot.getDriver().getVehicle();
+        FleetSegment peers = fleetAnalytics.segment(vehicle == null ? null : vehicle.getType());
+        if (peers == null || peers.size() < properties.getFleetAnalyticsMinPeers()) {
+            return responses.respond("peer", language);
+        }
+
+        EarningsTotals week = snapshot.getRollingEarnings().getLastWeek();
+        if (week.getActiveDays() == 0) {
+            return responses.respond("peer_inactive", language);
+        }
+
+        String responseText = responses.template("peer", language).writer()
+                .text(peers.getVehicleType())
+                .integer(peers.size())
+                .money(week.getNetEarnings())
+                .percent(peers.weeklyNetRank(week.getNetEarnings()))
+                .money(peers.weeklyNetPercentile(50))
+                .money(peers.weeklyNetPercentile(90))
+                .decimal((double) week.getCompletedTrips() / week.getActiveDays())
+                .decimal(peers.tripsPerDayPercentile(50))
+                .toString();
+        return responses.respond("peer", language, responseText);
+    }
+
+    private static double growthPercent(double current, double previous) {
+        return (current - previous) / Math.abs(previous) * 100;
+    }
+
+    private String growthWord(double growthPercent, String language) {
+        return responses.text(growthPercent >= 0 ? "growth_up" : "growth_down", language);
+    }
+
+    private AssistantResponse handleEmergencyQuery(Driver driver, String language) {
+        // Delivery runs on the emergency pool; the driver gets the confirmation right away
+        emergencyDispatcher.dispatch(driver, null, "voice");
+        return responses.respond("emergency", language);
+    }
+
+    /**
+     * @return The intent keyword table the matcher was compiled from
+     */
+    public Map<Intent, List<String>> getIntentKeywords() {
+        return Collections.unmodifiableMap(intentKeywords);
     }
 
     public Driver getDriver(String driverId) {
-        return drivers.get(driverId);
+        return driverStore.getWithEarnings(driverId);
     }
 
-    // Additional method to add a new driver (for testing purposes)
+    // Additional method to add a new driver (for testing purposes); indexes its expiry reminders
     public void addDriver(Driver driver) {
-        drivers.put(driver.getId(), driver);
+        Driver previous = driverStore.get(driver.getId());
+        driverStore.put(driver);
+        answerCache.invalidate(driver.getId());
+        expiryReminders.reschedule(previous, driver.getId());
     }
 
-    // Method to update driver earnings (for testing purposes)
-    public void updateDriverEarnings(String driverId, LocalDate date, DailyEarnings earnings) {
-        Driver driver = drivers.get(driverId);
-        if (driver != null) {
-            driver.getEarnings().put(date, earnings);
+    // Method to update driver earnings and push the change to open dashboards; returns false if the driver is unknown
+    public boolean updateDriverEarnings(String driverId, LocalDate date, DailyEarnings earnings) {
+        if (!driverStore.updateEarnings(driverId, date, earnings)) {
+            return false;
         }
+        answerCache.invalidate(driverId);
+        earningsPublisher.earningsChanged(driverId, date);
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.model.BatchQueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+
+/**
+ * Answers a batch of queries synced by an offline driver app.
+ *
+ * Queries are grouped by driver so each driver is resolved into a single
+ * {@link DriverSnapshot}. Groups run in parallel on a pool with one thread
+ * per core; within a group queries are answered in submission order. Every
+ * answer is handed to the sink as soon as it is ready, tagged with its
+ * position in the batch, so a slow group never holds back the others.
+ * Emergencies in a batch were asked while offline and are not dispatched;
+ * see {@link AssistantService#processQueued}.
+ */
+@Service
+public class BatchQueryService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchQueryService.class);
+
+    @Autowired
+    private AssistantService assistantService;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("query-batch-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdown();
+    }
+
+    public int getMaxQueries() {
+        return properties.getBatchMaxQueries();
+    }
+
+    /**
+     * Starts answering a batch. Returns immediately.
+     * @param requests Queries in the order the app recorded them
+     * @param sink Receives one result per query, from several threads but never concurrently for one driver
+     * @return Completes once every result was handed to the sink, or with the sink's error if it failed
+     */
+    public CompletableFuture<Void> process(List<AssistantRequest> requests, Consumer<BatchQueryResult> sink) {
+        // Positions of each driver's queries, in submission order
+        Map<String, List<Integer>> byDriver = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            byDriver.computeIfAbsent(requests.get(i).getDriverId(), driverId -> new ArrayList<>()).add(i);
+        }
+
+        CompletableFuture<?>[] groups = new CompletableFuture<?>[byDriver.size()];
+        int g = 0;
+        for (Map.Entry<String, List<Integer>> group : byDriver.entrySet()) {
+            groups[g++] = CompletableFuture.runAsync(
+                    () -> processGroup(group.getKey(), group.getValue(), requests, sink), pool);
+        }
+        return CompletableFuture.allOf(groups);
+    }
+
+    private void processGroup(String driverId, List<Integer> positions, List<AssistantRequest> requests,
+                              Consumer<BatchQueryResult> sink) {
+        DriverSnapshot snapshot = assistantService.snapshot(driverId);
+        for (int index : positions) {
+            BatchQueryResult result = new BatchQueryResult();
+            result.setIndex(index);
+            result.setDriverId(driverId);
+            try {
+                AssistantResponse response = assistantService.processQueued(requests.get(index), snapshot);
+                result.setResponse(response);
+            } catch (RuntimeException e) {
+                // One bad query should not fail the rest of the batch
+                log.warn("Batch query {} for driver {} failed", index, driverId, e);
+                result.setError("Sorry, I'm having trouble processing your request. Please try again.");
+            }
+            sink.accept(result);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.EmergencyAlert;
+import com.portersaathi.model.EmergencyContact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local stand-in for the SMS gateway: logs the message the driver's
+ * emergency contact would receive.
+ */
+@Component
+public class ContactSmsNotifier implements EmergencyNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ContactSmsNotifier.class);
+
+    @Override
+    public String getChannel() {
+        return "contact-sms";
+    }
+
+    @Override
+    public void send(EmergencyAlert alert) {
+        EmergencyContact contact = alert.getEmergencyContact();
+        if (contact == null) {
+            log.warn("Emergency {} for driver {} has no emergency contact", alert.getAlertId(), alert.getDriverId());
+            return;
+        }
+        log.warn("SMS to {} ({}) at {}: {} needs help, location {}", contact.getName(), contact.getRelationship(),
+                contact.getPhone(), alert.getDriverName(), alert.getLocation());
+    }
+}
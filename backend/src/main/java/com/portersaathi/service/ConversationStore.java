@@ -0,0 +1,202 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What each driver last asked about, so "agla step" or "aur kal?" can be
+ * answered against it.
+ *
+ * Conversations are keyed by driver, not by connection, so REST queries and
+ * voice transcripts from the same driver share one. Each is a small
+ * immutable object that is replaced on every answer; updates that depend on
+ * the previous state go through {@link ConcurrentHashMap#compute}, so
+ * concurrent requests from one driver never lose a step.
+ *
+ * A conversation expires {@code porter.conversation-ttl-seconds} after its
+ * last use. Expired conversations are ignored on read and removed by a
+ * periodic sweep. At most {@code porter.conversation-max-sessions} are kept:
+ * over that, the sweep drops the longest idle ones first and new drivers
+ * are answered without context until there is room again.
+ */
+@Component
+public class ConversationStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationStore.class);
+
+    private static final long SWEEP_SECONDS = 10;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final ConcurrentHashMap<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    // Last-use times are whole seconds since this instant, so they fit in an int
+    private final long baseNanos = System.nanoTime();
+    private int ttlSeconds = Integer.MAX_VALUE;
+    private int maxSessions = Integer.MAX_VALUE;
+
+    private ScheduledExecutorService timer;
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * The context of one driver's conversation. Immutable.
+     */
+    public static final class Conversation {
+        private final Intent intent;
+        private final int epochDay;
+        private final int step;
+        private final int lastUsed;
+
+        Conversation(Intent intent, int epochDay, int step, int lastUsed) {
+            this.intent = intent;
+            this.epochDay = epochDay;
+            this.step = step;
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * @return The intent of the last answer
+         */
+        public Intent getIntent() {
+            return intent;
+        }
+
+        /**
+         * @return The day the last answer was about
+         */
+        public LocalDate getDay() {
+            return LocalDate.ofEpochDay(epochDay);
+        }
+
+        /**
+         * @return The guide step last read out, 0 if only the overview was given
+         */
+        public int getStep() {
+            return step;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ttlSeconds = Math.max(1, properties.getConversationTtlSeconds());
+        maxSessions = Math.max(1, properties.getConversationMaxSessions());
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::safeSweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+
+        metrics.gauge("porter_conversations", "Drivers with a conversation context", conversations::size);
+        metrics.counter("porter_conversations_expired_total", "Conversations removed after their TTL", expired::sum);
+        metrics.counter("porter_conversations_evicted_total", "Conversations dropped early to stay under the session limit", evicted::sum);
+        metrics.counter("porter_conversations_dropped_total", "Answers not remembered because the session limit was reached", dropped::sum);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The driver's conversation, or null if there is none or it expired
+     */
+    public Conversation get(String driverId) {
+        Conversation conversation = conversations.get(driverId);
+        return conversation == null || isExpired(conversation, now()) ? null : conversation;
+    }
+
+    /**
+     * Records the answer a driver was just given, replacing their context.
+     * Pass the driver's stored ID rather than one from a request, so the key
+     * is a String the store already holds.
+     */
+    public void remember(String driverId, Intent intent, LocalDate day, int step) {
+        Conversation conversation = new Conversation(intent, (int) day.toEpochDay(), step, now());
+        // Size is approximate under concurrent inserts, which is fine for a soft limit
+        if (conversations.size() >= maxSessions && !conversations.containsKey(driverId)) {
+            dropped.increment();
+            return;
+        }
+        conversations.put(driverId, conversation);
+    }
+
+    /**
+     * Moves the driver's guide on by one step, atomically with any concurrent
+     * update from the same driver.
+     * @return The conversation at the new step, or null if there is none
+     */
+    public Conversation nextStep(String driverId) {
+        int now = now();
+        return conversations.computeIfPresent(driverId, (id, conversation) -> isExpired(conversation, now)
+                ? null
+                : new Conversation(conversation.intent, conversation.epochDay, conversation.step + 1, now));
+    }
+
+    public void forget(String driverId) {
+        conversations.remove(driverId);
+    }
+
+    public int size() {
+        return conversations.size();
+    }
+
+    /**
+     * Removes expired conversations, then the longest idle ones while more
+     * than the session limit remain.
+     */
+    public void sweep() {
+        int now = now();
+        int before = conversations.size();
+        conversations.values().removeIf(conversation -> isExpired(conversation, now));
+        expired.add(before - conversations.size());
+
+        // Halve the idle cutoff until back under the limit; cheaper than keeping an LRU order
+        int idle = ttlSeconds / 2;
+        while (conversations.size() > maxSessions && idle > 0) {
+            int cutoff = now - idle;
+            before = conversations.size();
+            conversations.values().removeIf(conversation -> conversation.lastUsed <= cutoff);
+            evicted.add(before - conversations.size());
+            idle /= 2;
+        }
+    }
+
+    private void safeSweep() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Conversation sweep failed", e);
+        }
+    }
+
+    private boolean isExpired(Conversation conversation, int now) {
+        return now - conversation.lastUsed >= ttlSeconds;
+    }
+
+    private int now() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - baseNanos);
+    }
+}
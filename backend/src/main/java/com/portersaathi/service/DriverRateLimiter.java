@@ -0,0 +1,157 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-driver token buckets for the query endpoints: a driver gets
+ * {@code porter.rate-limit-burst} queries at once and then
+ * {@code porter.rate-limit-per-second}.
+ *
+ * Each bucket is a single {@link AtomicLong} holding the time at which it
+ * will be full again (the generic cell rate algorithm), so taking a token
+ * is one map lookup and one CAS, with no lock and no refill timer. A full
+ * bucket carries no information, so a sweep drops every bucket that has
+ * refilled, and only drivers that queried recently take memory. Buckets
+ * are only created for known drivers; unknown IDs cannot grow the map.
+ *
+ * A request that stands for several queries, such as a synced offline
+ * batch, takes one token per query, but never more than a full bucket, so
+ * a large batch goes through once the bucket is full and then has to wait
+ * for it to refill. Tokens taken for a request that is then refused can
+ * be refunded.
+ */
+@Component
+public class DriverRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverRateLimiter.class);
+
+    private static final long SWEEP_SECONDS = 30;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private long intervalNanos; // 0 when limiting is off
+    private long toleranceNanos; // how far ahead of now a bucket may run before it is empty
+    private int burst;
+    private LongAdder limited;
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        double rate = properties.getRateLimitPerSecond();
+        intervalNanos = rate > 0 ? Math.max(1, (long) (1e9 / rate)) : 0;
+        burst = Math.max(1, properties.getRateLimitBurst());
+        toleranceNanos = intervalNanos * (burst - 1);
+        limited = metrics.counter("porter_rate_limited_total", "Queries refused by a driver's rate limit");
+        metrics.gauge("porter_rate_limit_buckets", "Drivers with a partly used rate limit bucket", buckets::size);
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::safeSweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Takes one token from the driver's bucket.
+     * @return 0 if the query may go ahead, otherwise the nanoseconds until the next token
+     */
+    public long tryAcquire(String driverId) {
+        return tryAcquire(driverId, 1);
+    }
+
+    /**
+     * Takes tokens for several queries from the driver's bucket: all of them or none.
+     * @param queries Queries the request stands for; more than the burst count as the burst
+     * @return 0 if the request may go ahead, otherwise the nanoseconds until enough tokens are back
+     */
+    public long tryAcquire(String driverId, int queries) {
+        if (intervalNanos == 0 || driverId == null || queries <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(driverId);
+        if (bucket == null) {
+            if (driverStore.get(driverId) == null) {
+                return 0;
+            }
+            bucket = buckets.computeIfAbsent(driverId, id -> new AtomicLong(now));
+        }
+        long cost = intervalNanos * Math.min(queries, burst);
+        while (true) {
+            long fullAt = bucket.get();
+            long start = fullAt - now > 0 ? fullAt : now;
+            long wait = start + cost - intervalNanos - toleranceNanos - now;
+            if (wait > 0) {
+                limited.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, start + cost)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back tokens taken with {@link #tryAcquire(String, int)} for a
+     * request that was refused after all, e.g. because another driver in
+     * the same batch was over their limit.
+     */
+    public void refund(String driverId, int queries) {
+        if (intervalNanos == 0 || driverId == null || queries <= 0) {
+            return;
+        }
+        AtomicLong bucket = buckets.get(driverId);
+        if (bucket != null) {
+            // A bucket swept in between was full already; one that goes below now is simply full
+            bucket.addAndGet(-intervalNanos * Math.min(queries, burst));
+        }
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    private void safeSweep() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Rate limit sweep failed", e);
+        }
+    }
+
+    // A query racing the removal may have its token forgiven; the bucket was full anyway
+    private void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
@@ -0,0 +1,74 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.RollingEarnings;
+
+import java.time.LocalDate;
+
+/**
+ * A driver's profile together with the earnings the assistant answers from,
+ * resolved at most once. Answering several queries for the same driver
+ * against one snapshot costs a single profile lookup and a single read of
+ * each earnings figure.
+ *
+ * Not thread-safe: a snapshot belongs to the thread answering its queries.
+ */
+public final class DriverSnapshot {
+
+    private final DriverStore store;
+    private final long version;
+    private final Driver driver;
+    private final LocalDate today;
+
+    private boolean todayLoaded;
+    private DailyEarnings todayEarnings;
+    private RollingEarnings rolling;
+
+    DriverSnapshot(DriverStore store, String driverId) {
+        this.store = store;
+        // Read first, so everything the snapshot reads is at least this new
+        this.version = store.getVersion(driverId);
+        this.driver = store.get(driverId);
+        this.today = LocalDate.now();
+    }
+
+    /**
+     * @return The driver's profile, or null if the driver is unknown
+     */
+    public Driver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return The driver's data version when the snapshot was taken, from {@link DriverStore#getVersion}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The date the snapshot treats as today
+     */
+    public LocalDate getToday() {
+        return today;
+    }
+
+    /**
+     * @return Today's earnings, or null if none are recorded
+     */
+    public DailyEarnings getTodayEarnings() {
+        if (!todayLoaded) {
+            todayEarnings = store.getEarnings(driver.getId(), today);
+            todayLoaded = true;
+        }
+        return todayEarnings;
+    }
+
+    public RollingEarnings getRollingEarnings() {
+        if (rolling == null) {
+            rolling = store.getRollingEarnings(driver.getId());
+        }
+        return rolling;
+    }
+}
@@ -0,0 +1,291 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.EarningsTotals;
+import com.portersaathi.model.RollingEarnings;
+import com.portersaathi.persistence.DriverJournal;
+import com.portersaathi.persistence.JournaledState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of drivers and their daily earnings.
+ *
+ * Driver profiles live in a {@link ConcurrentHashMap}, whose reads never
+ * block and whose writes lock a single hash bin, so unrelated drivers never
+ * contend. Earnings are kept out of the profile, in the columnar
+ * {@link EarningsStore}; stored profiles always have an empty earnings map
+ * and {@link #getWithEarnings(String)} assembles the full aggregate on demand.
+ *
+ * Every mutation is recorded in the {@link DriverJournal} before it returns,
+ * and the store is rebuilt from the journal on startup.
+ */
+@Component
+public class DriverStore {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final ConcurrentHashMap<String, Driver> drivers =
+            new ConcurrentHashMap<>(INITIAL_CAPACITY, 0.75f, Runtime.getRuntime().availableProcessors());
+
+    // Bumped after every change to a driver, for conditional reads
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private EarningsStore earningsStore;
+
+    @Autowired
+    private DriverJournal journal;
+
+    @PostConstruct
+    public void recover() {
+        journal.open(new JournaledState() {
+            @Override
+            public void restoreDriver(Driver driver) {
+                drivers.put(driver.getId(), load(driver));
+            }
+
+            @Override
+            public void restoreEarnings(String driverId, LocalDate date, DailyEarnings earnings) {
+                if (drivers.containsKey(driverId)) {
+                    earningsStore.put(driverId, date, earnings);
+                }
+            }
+
+            @Override
+            public Iterable<Driver> snapshotDrivers() {
+                return () -> drivers.keySet().stream()
+                        .map(DriverStore.this::getWithEarnings)
+                        .filter(Objects::nonNull)
+                        .iterator();
+            }
+        });
+    }
+
+    /**
+     * @return The driver's profile without earnings, or null if unknown
+     */
+    public Driver get(String driverId) {
+        return driverId == null ? null : drivers.get(driverId);
+    }
+
+    /**
+     * @return A detached copy of the driver including the full earnings history
+     */
+    public Driver getWithEarnings(String driverId) {
+        Driver profile = get(driverId);
+        if (profile == null) {
+            return null;
+        }
+        Driver driver = copyProfile(profile);
+        driver.setEarnings(earningsStore.all(driverId));
+        return driver;
+    }
+
+    public Collection<Driver> all() {
+        return Collections.unmodifiableCollection(drivers.values());
+    }
+
+    public int size() {
+        return drivers.size();
+    }
+
+    /**
+     * Registers or replaces a driver. Earnings on the passed-in driver are
+     * copied into the earnings store, so later changes to it are not seen.
+     * @param driver The driver to store
+     * @throws IllegalArgumentException If a day of its earnings is not {@link EarningsStore#isRecordable}
+     */
+    public void put(Driver driver) {
+        if (driver.getEarnings() != null) {
+            driver.getEarnings().keySet().forEach(DriverStore::checkRecordable);
+        }
+        try (DriverJournal.Write write = journal.begin()) {
+            // Holding the bin lock keeps a concurrent updateEarnings from interleaving with the reload
+            drivers.compute(driver.getId(), (id, previous) -> {
+                Driver profile = load(driver);
+                write.driver(driver);
+                return profile;
+            });
+        }
+        bumpVersion(driver.getId());
+    }
+
+    /**
+     * Atomically replaces one day of a driver's earnings.
+     * @param driverId The driver ID
+     * @param date The day being updated
+     * @param earnings The new totals for that day
+     * @return true if the driver exists
+     * @throws IllegalArgumentException If the day is not {@link EarningsStore#isRecordable}
+     */
+    public boolean updateEarnings(String driverId, LocalDate date, DailyEarnings earnings) {
+        checkRecordable(date);
+        boolean updated;
+        try (DriverJournal.Write write = journal.begin()) {
+            updated = drivers.computeIfPresent(driverId, (id, driver) -> {
+                earningsStore.put(id, date, earnings);
+                write.earnings(id, date, earnings);
+                return driver;
+            }) != null;
+        }
+        if (updated) {
+            bumpVersion(driverId);
+        }
+        return updated;
+    }
+
+    /**
+     * Adds a batch of per-day deltas to the drivers' recorded days, as one
+     * journal write that is durable once this returns. Each driver's days
+     * are merged under that driver's lock, so a concurrent update or reload
+     * of the same driver sees either none or all of them.
+     * @param deltas Amounts to add, by driver and day; penalties and rewards are added by ID
+     * @return The drivers that exist and were updated
+     * @throws IllegalArgumentException If a day is not {@link EarningsStore#isRecordable}; nothing is merged then
+     */
+    public List<String> mergeEarnings(Map<String, Map<LocalDate, DailyEarnings>> deltas) {
+        deltas.values().forEach(days -> days.keySet().forEach(DriverStore::checkRecordable));
+        List<String> updated = new ArrayList<>(deltas.size());
+        try (DriverJournal.Write write = journal.begin()) {
+            deltas.forEach((driverId, days) -> {
+                Driver profile = drivers.computeIfPresent(driverId, (id, driver) -> {
+                    days.forEach((date, delta) -> {
+                        DailyEarnings merged = add(earningsStore.get(id, date), delta);
+                        earningsStore.put(id, date, merged);
+                        write.earnings(id, date, merged);
+                    });
+                    return driver;
+                });
+                if (profile != null) {
+                    updated.add(profile.getId());
+                }
+            });
+        }
+        for (String driverId : updated) {
+            bumpVersion(driverId);
+        }
+        return updated;
+    }
+
+    /**
+     * A counter that grows with every change to the driver's profile or
+     * earnings. Read it before reading the data: the data is then at least
+     * as new as the version. Counters restart from zero with the process.
+     * @return The version, or -1 if the driver is unknown
+     */
+    public long getVersion(String driverId) {
+        if (get(driverId) == null) {
+            return -1;
+        }
+        AtomicLong version = versions.get(driverId);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Visits a driver's recorded days in a date range without copying them;
+     * see {@link EarningsStore#forEachDay}.
+     */
+    public void forEachEarningsDay(String driverId, LocalDate from, LocalDate to,
+                                   EarningsStore.DayVisitor visitor) throws IOException {
+        earningsStore.forEachDay(driverId, from, to, visitor);
+    }
+
+    /**
+     * Reads one day of a driver's earnings.
+     * @return The day's earnings, or null if the driver or day is unknown
+     */
+    public DailyEarnings getEarnings(String driverId, LocalDate date) {
+        return earningsStore.get(driverId, date);
+    }
+
+    /**
+     * Returns a consistent copy of a driver's earnings over a date range.
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     */
+    public NavigableMap<LocalDate, DailyEarnings> getEarnings(String driverId, LocalDate from, LocalDate to) {
+        return earningsStore.range(driverId, from, to);
+    }
+
+    /**
+     * Sums a driver's earnings over a date range without materializing the days.
+     */
+    public EarningsTotals sumEarnings(String driverId, LocalDate from, LocalDate to) {
+        return earningsStore.sum(driverId, from, to);
+    }
+
+    /**
+     * Rolling week/month/quarter totals, maintained incrementally on every update.
+     */
+    public RollingEarnings getRollingEarnings(String driverId) {
+        return earningsStore.rolling(driverId);
+    }
+
+    // Builds a new day: maps on days read from the earnings store may be shared or immutable
+    private static DailyEarnings add(DailyEarnings day, DailyEarnings delta) {
+        DailyEarnings merged = new DailyEarnings();
+        if (day != null) {
+            merged.setTotalEarnings(day.getTotalEarnings());
+            merged.setExpenses(day.getExpenses());
+            merged.setNetEarnings(day.getNetEarnings());
+            merged.setCompletedTrips(day.getCompletedTrips());
+            merged.getPenalties().putAll(day.getPenalties());
+            merged.getRewards().putAll(day.getRewards());
+        }
+        merged.setTotalEarnings(merged.getTotalEarnings() + delta.getTotalEarnings());
+        merged.setExpenses(merged.getExpenses() + delta.getExpenses());
+        merged.setNetEarnings(merged.getNetEarnings() + delta.getNetEarnings());
+        merged.setCompletedTrips(merged.getCompletedTrips() + delta.getCompletedTrips());
+        merged.getPenalties().putAll(delta.getPenalties());
+        merged.getRewards().putAll(delta.getRewards());
+        return merged;
+    }
+
+    // Checked before the journal write starts, so a refused day leaves no trace
+    private static void checkRecordable(LocalDate date) {
+        if (!EarningsStore.isRecordable(date)) {
+            throw new IllegalArgumentException("Earnings date out of range: " + date);
+        }
+    }
+
+    // Called after the change is applied, so a reader that sees the new version also sees the change
+    private void bumpVersion(String driverId) {
+        versions.computeIfAbsent(driverId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    // Reloads the driver's earnings into the earnings store and returns the profile to keep
+    private Driver load(Driver driver) {
+        earningsStore.remove(driver.getId());
+        if (driver.getEarnings() != null) {
+            earningsStore.putAll(driver.getId(), driver.getEarnings());
+        }
+        return copyProfile(driver);
+    }
+
+    private static Driver copyProfile(Driver source) {
+        Driver copy = new Driver();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setPhone(source.getPhone());
+        copy.setLanguagePreference(source.getLanguagePreference());
+        copy.setVehicle(source.getVehicle());
+        copy.setEmergencyContact(source.getEmergencyContact());
+        copy.setEarnings(Collections.emptyMap());
+        return copy;
+    }
+}
@@ -0,0 +1,219 @@
+package com.portersaathi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders projected views of a driver for GET /api/driver/{id}.
+ *
+ * The JSON is written field by field with a {@link JsonGenerator}, and
+ * earnings days go from the store's columns straight into the generator,
+ * so no Driver copy, map or per-day object is built. The output is
+ * buffered rather than written to the response under the store's lock.
+ *
+ * Fields: the profile fields of {@link Driver}, plus {@code today} (today's
+ * earnings) and {@code rolling} (rolling week/month/quarter totals). The
+ * default view has the same shape as a serialized Driver.
+ */
+@Component
+public class DriverViewWriter {
+
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "id", "name", "phone", "languagePreference", "earnings", "vehicle", "emergencyContact",
+            "today", "rolling")));
+
+    public static final Set<String> DEFAULT_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "id", "name", "phone", "languagePreference", "earnings", "vehicle", "emergencyContact")));
+
+    private static final SerializedString TOTAL_EARNINGS = new SerializedString("totalEarnings");
+    private static final SerializedString EXPENSES = new SerializedString("expenses");
+    private static final SerializedString NET_EARNINGS = new SerializedString("netEarnings");
+    private static final SerializedString COMPLETED_TRIPS = new SerializedString("completedTrips");
+    private static final SerializedString PENALTIES = new SerializedString("penalties");
+    private static final SerializedString REWARDS = new SerializedString("rewards");
+
+    // Changes on every start, so tags from before a restart never match
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private WireCodec wireCodec;
+
+    /**
+     * Parses a comma-separated field list.
+     * @return The fields in output order, or the default view for null
+     * @throws IllegalArgumentException for unknown fields
+     */
+    public Set<String> parseFields(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return DEFAULT_FIELDS;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            if (!FIELDS.contains(name.trim())) {
+                throw new IllegalArgumentException("Unknown field " + name.trim());
+            }
+            requested.add(name.trim());
+        }
+        Set<String> result = new LinkedHashSet<>(FIELDS);
+        result.retainAll(requested);
+        return result;
+    }
+
+    /**
+     * Entity tag for the driver's current state. Today's date is part of it
+     * because today's earnings and rolling totals move at midnight without
+     * a write. Each format has its own, so a cache holding the JSON is not
+     * told the CBOR is the same.
+     * @return The tag, or null if the driver is unknown
+     */
+    public String etag(String driverId, WireFormat format) {
+        long version = driverStore.getVersion(driverId);
+        if (version < 0) {
+            return null;
+        }
+        String suffix = format == WireFormat.JSON ? "" : "-" + format.name().toLowerCase(Locale.ROOT);
+        return "W/\"" + epoch + "-" + version + "-" + LocalDate.now().toEpochDay() + suffix + "\"";
+    }
+
+    /**
+     * @param from First earnings day, inclusive; null for no limit
+     * @param to Last earnings day, inclusive; null for no limit
+     * @return The JSON view, or null if the driver is unknown
+     */
+    public byte[] write(String driverId, Set<String> fields, LocalDate from, LocalDate to) throws IOException {
+        return write(driverId, fields, from, to, WireFormat.JSON);
+    }
+
+    /**
+     * Renders the view in the given format, written directly rather than
+     * converted from JSON.
+     * @return The encoded view, or null if the driver is unknown
+     */
+    public byte[] write(String driverId, Set<String> fields, LocalDate from, LocalDate to, WireFormat format)
+            throws IOException {
+        Driver profile = driverStore.get(driverId);
+        if (profile == null) {
+            return null;
+        }
+        ByteArrayBuilder buffer = new ByteArrayBuilder(512);
+        try (JsonGenerator json = wireCodec.mapper(format).getFactory().createGenerator(buffer)) {
+            json.writeStartObject();
+            for (String field : fields) {
+                switch (field) {
+                    case "id":
+                        json.writeStringField("id", profile.getId());
+                        break;
+                    case "name":
+                        json.writeStringField("name", profile.getName());
+                        break;
+                    case "phone":
+                        json.writeStringField("phone", profile.getPhone());
+                        break;
+                    case "languagePreference":
+                        json.writeStringField("languagePreference", profile.getLanguagePreference());
+                        break;
+                    case "earnings":
+                        json.writeObjectFieldStart("earnings");
+                        driverStore.forEachEarningsDay(driverId, from == null ? LocalDate.MIN : from,
+                                to == null ? LocalDate.MAX : to,
+                                (day, total, expenses, net, trips, penalties, rewards) -> {
+                                    json.writeFieldName(LocalDate.ofEpochDay(day).toString());
+                                    writeDay(json, total, expenses, net, trips, penalties, rewards);
+                                });
+                        json.writeEndObject();
+                        break;
+                    case "vehicle":
+                        json.writeObjectField("vehicle", profile.getVehicle());
+                        break;
+                    case "emergencyContact":
+                        json.writeObjectField("emergencyContact", profile.getEmergencyContact());
+                        break;
+                    case "today":
+                        DailyEarnings today = driverStore.getEarnings(driverId, LocalDate.now());
+                        json.writeFieldName("today");
+                        if (today == null) {
+                            json.writeNull();
+                        } else {
+                            writeDay(json, today.getTotalEarnings(), today.getExpenses(), today.getNetEarnings(),
+                                    today.getCompletedTrips(), today.getPenalties(), today.getRewards());
+                        }
+                        break;
+                    case "rolling":
+                        json.writeObjectField("rolling", driverStore.getRollingEarnings(driverId));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown field " + field);
+                }
+            }
+            json.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    // Same shape as a serialized DailyEarnings
+    private static void writeDay(JsonGenerator json, double total, double expenses, double net, int trips,
+                                 Map<String, String> penalties, Map<String, String> rewards) throws IOException {
+        json.writeStartObject();
+        json.writeFieldName(TOTAL_EARNINGS);
+        writeAmount(json, total);
+        json.writeFieldName(EXPENSES);
+        writeAmount(json, expenses);
+        json.writeFieldName(NET_EARNINGS);
+        writeAmount(json, net);
+        json.writeFieldName(COMPLETED_TRIPS);
+        json.writeNumber(trips);
+        writeNotes(json, PENALTIES, penalties);
+        writeNotes(json, REWARDS, rewards);
+        json.writeEndObject();
+    }
+
+    // Whole-rupee amounts are the common case; formatting them directly skips the slow
+    // Double.toString, with the same "2500.0" output it would give below 10^7. Binary
+    // formats write the double itself.
+    private static void writeAmount(JsonGenerator json, double amount) throws IOException {
+        if (!json.canWriteFormattedNumbers() || amount != Math.rint(amount) || Math.abs(amount) >= 1e7 || (amount == 0 && 1 / amount < 0)) {
+            json.writeNumber(amount);
+            return;
+        }
+        char[] digits = new char[12];
+        int end = digits.length;
+        digits[--end] = '0';
+        digits[--end] = '.';
+        long value = Math.abs((long) amount);
+        do {
+            digits[--end] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (amount < 0) {
+            digits[--end] = '-';
+        }
+        json.writeNumber(digits, end, digits.length - end);
+    }
+
+    private static void writeNotes(JsonGenerator json, SerializedString name, Map<String, String> notes)
+            throws IOException {
+        json.writeFieldName(name);
+        json.writeStartObject();
+        for (Map.Entry<String, String> note : notes.entrySet()) {
+            json.writeStringField(note.getKey(), note.getValue());
+        }
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,211 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.EarningsDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes earnings changes to open dashboards on
+ * {@code /topic/driver/{id}/earnings}, so they need not poll the full
+ * driver payload.
+ *
+ * An update only marks the changed day as pending; every
+ * {@code porter.earnings-push-millis} the pending days of each driver are
+ * read back and sent as one {@link EarningsDelta} with fresh rolling
+ * totals. A burst of updates to the same driver therefore costs one
+ * message, and it always carries the latest values. Subscriptions are
+ * counted from the broker's session events, and updates for drivers with
+ * no subscriber are dropped before any work is done.
+ */
+@Service
+public class EarningsPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(EarningsPublisher.class);
+
+    private static final String PREFIX = "/topic/driver/";
+    private static final String SUFFIX = "/earnings";
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    // Changed days per driver, only touched inside compute or once removed for sending
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    // STOMP session -> subscription ID -> driver, to undo counts on unsubscribe and disconnect
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> subscriptions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> watchers = new ConcurrentHashMap<>();
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deltasSent = new LongAdder();
+
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "earnings-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long window = properties.getEarningsPushMillis();
+        timer.scheduleWithFixedDelay(this::safeFlush, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Notes that one day of a driver's earnings changed. Cheap enough to
+     * call on every update.
+     */
+    public void earningsChanged(String driverId, LocalDate date) {
+        if (!watchers.containsKey(driverId)) {
+            return;
+        }
+        updates.increment();
+        pending.compute(driverId, (id, days) -> {
+            Pending next = days == null ? new Pending() : days;
+            next.dates.add(date);
+            next.updates++;
+            return next;
+        });
+    }
+
+    /**
+     * Builds the delta pushed for the given changed days.
+     * @return The delta, or null if the driver is unknown
+     */
+    public EarningsDelta buildDelta(String driverId, Collection<LocalDate> dates) {
+        if (driverStore.get(driverId) == null) {
+            return null;
+        }
+        Map<LocalDate, DailyEarnings> days = new TreeMap<>();
+        for (LocalDate date : dates) {
+            days.put(date, driverStore.getEarnings(driverId, date));
+        }
+        EarningsDelta delta = new EarningsDelta();
+        delta.setDriverId(driverId);
+        delta.setDays(days);
+        delta.setRolling(driverStore.getRollingEarnings(driverId));
+        delta.setTimestamp(System.currentTimeMillis());
+        return delta;
+    }
+
+    public boolean hasWatchers(String driverId) {
+        return watchers.containsKey(driverId);
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getDeltasSent() {
+        return deltasSent.sum();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String driverId = driverOf(headers.getDestination());
+        if (driverId == null || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        subscriptions.computeIfAbsent(headers.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(headers.getSubscriptionId(), driverId);
+        watchers.merge(driverId, 1, Integer::sum);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> session = headers.getSessionId() == null ? null : subscriptions.get(headers.getSessionId());
+        if (session == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        String driverId = session.remove(headers.getSubscriptionId());
+        if (driverId != null) {
+            unwatch(driverId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> session = subscriptions.remove(event.getSessionId());
+        if (session != null) {
+            session.values().forEach(this::unwatch);
+        }
+    }
+
+    private void unwatch(String driverId) {
+        watchers.computeIfPresent(driverId, (id, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void safeFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next window
+            log.error("Earnings push failed", e);
+        }
+    }
+
+    private void flush() {
+        for (String driverId : pending.keySet()) {
+            Pending days = pending.remove(driverId);
+            if (days == null || !watchers.containsKey(driverId)) {
+                continue;
+            }
+            EarningsDelta delta = buildDelta(driverId, days.dates);
+            if (delta == null) {
+                continue;
+            }
+            delta.setUpdates(days.updates);
+            messagingTemplate.convertAndSend(PREFIX + driverId + SUFFIX, delta);
+            deltasSent.increment();
+        }
+    }
+
+    private static String driverOf(String destination) {
+        if (destination == null || !destination.startsWith(PREFIX) || !destination.endsWith(SUFFIX)) {
+            return null;
+        }
+        String driverId = destination.substring(PREFIX.length(), destination.length() - SUFFIX.length());
+        return driverId.isEmpty() || driverId.contains("/") ? null : driverId;
+    }
+
+    private static final class Pending {
+        final Set<LocalDate> dates = new TreeSet<>();
+        int updates;
+    }
+}
@@ -0,0 +1,417 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.EarningsTotals;
+import com.portersaathi.model.RollingEarnings;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * One driver's earnings history stored column-wise in primitive arrays.
+ *
+ * Slot i holds the day {@code baseDay + i} (epoch days), so a day lookup is
+ * an index computation and a range sum is a linear scan over contiguous
+ * doubles. Penalties and rewards are rare and are kept in a sparse side map.
+ * Writers take the lock exclusively; single-day reads are optimistic.
+ *
+ * The series also maintains rolling 7/30/90-day sums anchored at today.
+ * Writing a day applies the difference to every window containing it, and
+ * moving the anchor forward by one day adds the day entering each window and
+ * subtracts the one leaving it, so both are O(1) regardless of history length.
+ *
+ * Since the columns cover every day between the oldest and newest recorded
+ * ones, a day far from the rest would allocate the whole gap. Days more than
+ * {@link EarningsStore#MAX_YEARS_FROM_TODAY} years ahead of today are
+ * refused, and so is any day that would stretch the columns past
+ * {@link #MAX_SPAN_DAYS}. The past is bounded by span rather than by today,
+ * so history written years ago still loads from the journal.
+ */
+final class EarningsSeries {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // About 30 years; each slot costs 28 bytes across the columns
+    static final int MAX_SPAN_DAYS = 30 * 366;
+
+    // Rolling windows as day offsets back from the anchor day, both inclusive
+    private static final int LAST_WEEK = 0;
+    private static final int PREVIOUS_WEEK = 1;
+    private static final int LAST_MONTH = 2;
+    private static final int PREVIOUS_MONTH = 3;
+    private static final int LAST_QUARTER = 4;
+    private static final int[] WINDOW_NEWEST = {0, 7, 0, 30, 0};
+    private static final int[] WINDOW_OLDEST = {6, 13, 29, 59, 89};
+    private static final int WINDOW_SPAN = 90;
+
+    // Metrics summed per window
+    private static final int TOTAL = 0;
+    private static final int EXPENSES = 1;
+    private static final int NET = 2;
+    private static final int TRIPS = 3;
+    private static final int DAYS = 4;
+    private static final int METRICS = 5;
+
+    private static final int NO_ANCHOR = Integer.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+
+    private int baseDay;
+    private int capacity;
+    private double[] totals = new double[0];
+    private double[] expenses = new double[0];
+    private double[] net = new double[0];
+    private int[] trips = new int[0];
+    private long[] present = new long[0];
+    private Map<Integer, DayNotes> notes; // epoch day -> penalties/rewards, created on first use
+
+    private int anchorDay = NO_ANCHOR;
+    private final double[] windowSums = new double[WINDOW_NEWEST.length * METRICS];
+
+    /**
+     * @throws IllegalArgumentException If the day is too far in the future or from the recorded days
+     */
+    void put(LocalDate date, DailyEarnings earnings, LocalDate today) {
+        if (date.isAfter(today.plusYears(EarningsStore.MAX_YEARS_FROM_TODAY))) {
+            throw new IllegalArgumentException("Earnings date too far in the future: " + date);
+        }
+        int day = (int) date.toEpochDay();
+        long stamp = lock.writeLock();
+        try {
+            if (capacity > 0 && Math.max(day, baseDay + capacity - 1) - Math.min(day, baseDay) >= MAX_SPAN_DAYS) {
+                throw new IllegalArgumentException("Earnings date too far from the recorded days: " + date);
+            }
+            advanceTo((int) today.toEpochDay());
+            addToWindows(day, -1);
+
+            int slot = ensureSlot(day);
+            totals[slot] = earnings.getTotalEarnings();
+            expenses[slot] = earnings.getExpenses();
+            net[slot] = earnings.getNetEarnings();
+            trips[slot] = earnings.getCompletedTrips();
+            present[slot >>> 6] |= 1L << slot;
+            addToWindows(day, 1);
+
+            DayNotes dayNotes = DayNotes.of(earnings.getPenalties(), earnings.getRewards());
+            if (dayNotes != null) {
+                if (notes == null) {
+                    notes = new HashMap<>();
+                }
+                notes.put(day, dayNotes);
+            } else if (notes != null) {
+                notes.remove(day);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return A detached copy of the day, or null if there is no data for it
+     */
+    DailyEarnings get(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        long stamp = lock.tryOptimisticRead();
+        DailyEarnings earnings = stamp == 0 ? null : readDay(day);
+        if (stamp == 0 || !lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                earnings = readDay(day);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return earnings;
+    }
+
+    /**
+     * Sums every recorded day between from and to, both inclusive.
+     */
+    EarningsTotals sum(LocalDate from, LocalDate to) {
+        EarningsTotals sum = new EarningsTotals();
+        long stamp = lock.readLock();
+        try {
+            int first = firstSlot(from);
+            int last = lastSlot(to);
+            double total = 0, expense = 0, netTotal = 0;
+            int tripCount = 0, days = 0;
+            for (int slot = first; slot <= last; slot++) {
+                if ((present[slot >>> 6] & (1L << slot)) != 0) {
+                    total += totals[slot];
+                    expense += expenses[slot];
+                    netTotal += net[slot];
+                    tripCount += trips[slot];
+                    days++;
+                }
+            }
+            sum.setTotalEarnings(total);
+            sum.setExpenses(expense);
+            sum.setNetEarnings(netTotal);
+            sum.setCompletedTrips(tripCount);
+            sum.setActiveDays(days);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the rolling window totals as of today in constant time.
+     */
+    RollingEarnings rolling(LocalDate today) {
+        int todayDay = (int) today.toEpochDay();
+        long stamp = lock.readLock();
+        try {
+            if (anchorDay != todayDay) {
+                // First read after midnight slides the windows forward
+                long writeStamp = lock.tryConvertToWriteLock(stamp);
+                if (writeStamp == 0) {
+                    lock.unlockRead(stamp);
+                    writeStamp = lock.writeLock();
+                }
+                stamp = writeStamp;
+                advanceTo(todayDay);
+            }
+            RollingEarnings rolling = new RollingEarnings();
+            rolling.setLastWeek(windowTotals(LAST_WEEK));
+            rolling.setPreviousWeek(windowTotals(PREVIOUS_WEEK));
+            rolling.setLastMonth(windowTotals(LAST_MONTH));
+            rolling.setPreviousMonth(windowTotals(PREVIOUS_MONTH));
+            rolling.setLastQuarter(windowTotals(LAST_QUARTER));
+            return rolling;
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Materializes the days between from and to as day objects, oldest first.
+     */
+    NavigableMap<LocalDate, DailyEarnings> toMap(LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, DailyEarnings> days = new TreeMap<>();
+        long stamp = lock.readLock();
+        try {
+            int first = firstSlot(from);
+            int last = lastSlot(to);
+            for (int slot = first; slot <= last; slot++) {
+                if ((present[slot >>> 6] & (1L << slot)) != 0) {
+                    days.put(LocalDate.ofEpochDay(baseDay + slot), readSlot(slot));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return days;
+    }
+
+    /**
+     * Hands the recorded days between from and to to the visitor, oldest
+     * first, straight from the columns. The read lock is held throughout, so
+     * the visitor must not block.
+     */
+    void forEach(LocalDate from, LocalDate to, EarningsStore.DayVisitor visitor) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            int first = firstSlot(from);
+            int last = lastSlot(to);
+            for (int slot = first; slot <= last; slot++) {
+                if ((present[slot >>> 6] & (1L << slot)) != 0) {
+                    DayNotes dayNotes = notes == null ? null : notes.get(baseDay + slot);
+                    visitor.day(baseDay + slot, totals[slot], expenses[slot], net[slot], trips[slot],
+                            dayNotes == null ? Collections.emptyMap() : dayNotes.penalties,
+                            dayNotes == null ? Collections.emptyMap() : dayNotes.rewards);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    NavigableMap<LocalDate, DailyEarnings> toMap() {
+        return toMap(LocalDate.MIN, LocalDate.MAX);
+    }
+
+    // Moves the window anchor to the given day; caller holds the write lock
+    private void advanceTo(int today) {
+        if (anchorDay == today) {
+            return;
+        }
+        if (anchorDay == NO_ANCHOR || today < anchorDay || today - anchorDay > WINDOW_SPAN) {
+            // Clock moved backwards or a long gap: cheaper to rebuild from the columns
+            anchorDay = today;
+            recomputeWindows();
+            return;
+        }
+        while (anchorDay < today) {
+            for (int window = 0; window < WINDOW_NEWEST.length; window++) {
+                addDay(window, anchorDay + 1 - WINDOW_NEWEST[window], 1);
+                addDay(window, anchorDay - WINDOW_OLDEST[window], -1);
+            }
+            anchorDay++;
+        }
+    }
+
+    private void recomputeWindows() {
+        Arrays.fill(windowSums, 0);
+        for (int window = 0; window < WINDOW_NEWEST.length; window++) {
+            for (int offset = WINDOW_NEWEST[window]; offset <= WINDOW_OLDEST[window]; offset++) {
+                addDay(window, anchorDay - offset, 1);
+            }
+        }
+    }
+
+    // Adds (sign 1) or removes (sign -1) a stored day in every window that covers it
+    private void addToWindows(int day, int sign) {
+        int offset = anchorDay - day;
+        for (int window = 0; window < WINDOW_NEWEST.length; window++) {
+            if (offset >= WINDOW_NEWEST[window] && offset <= WINDOW_OLDEST[window]) {
+                addDay(window, day, sign);
+            }
+        }
+    }
+
+    private void addDay(int window, int day, int sign) {
+        int slot = day - baseDay;
+        if (slot < 0 || slot >= capacity || (present[slot >>> 6] & (1L << slot)) == 0) {
+            return;
+        }
+        int base = window * METRICS;
+        windowSums[base + TOTAL] += sign * totals[slot];
+        windowSums[base + EXPENSES] += sign * expenses[slot];
+        windowSums[base + NET] += sign * net[slot];
+        windowSums[base + TRIPS] += sign * trips[slot];
+        windowSums[base + DAYS] += sign;
+    }
+
+    private EarningsTotals windowTotals(int window) {
+        int base = window * METRICS;
+        EarningsTotals totals = new EarningsTotals();
+        totals.setTotalEarnings(windowSums[base + TOTAL]);
+        totals.setExpenses(windowSums[base + EXPENSES]);
+        totals.setNetEarnings(windowSums[base + NET]);
+        totals.setCompletedTrips((int) windowSums[base + TRIPS]);
+        totals.setActiveDays((int) windowSums[base + DAYS]);
+        return totals;
+    }
+
+    private int firstSlot(LocalDate from) {
+        return (int) Math.max(0, from.toEpochDay() - baseDay);
+    }
+
+    private int lastSlot(LocalDate to) {
+        return (int) Math.min(capacity - 1, to.toEpochDay() - baseDay);
+    }
+
+    // Caller must hold the lock or validate an optimistic stamp afterwards
+    private DailyEarnings readDay(int day) {
+        int slot = day - baseDay;
+        long[] bits = present;
+        if (slot < 0 || slot >= capacity || (slot >>> 6) >= bits.length
+                || (bits[slot >>> 6] & (1L << slot)) == 0) {
+            return null;
+        }
+        try {
+            return readSlot(slot);
+        } catch (RuntimeException e) {
+            // Only possible while a writer is resizing; the stamp check will retry under the lock
+            return null;
+        }
+    }
+
+    private DailyEarnings readSlot(int slot) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(totals[slot]);
+        earnings.setExpenses(expenses[slot]);
+        earnings.setNetEarnings(net[slot]);
+        earnings.setCompletedTrips(trips[slot]);
+
+        DayNotes dayNotes = notes == null ? null : notes.get(baseDay + slot);
+        earnings.setPenalties(dayNotes == null ? Collections.emptyMap() : dayNotes.penalties);
+        earnings.setRewards(dayNotes == null ? Collections.emptyMap() : dayNotes.rewards);
+        return earnings;
+    }
+
+    // Grows the arrays so that the day has a slot; caller holds the write lock
+    private int ensureSlot(int day) {
+        if (capacity == 0) {
+            baseDay = day;
+            resize(0, INITIAL_CAPACITY);
+        }
+        if (day < baseDay) {
+            // Leave headroom below the new day too, since history is often loaded newest first
+            int shift = Math.max(baseDay - day, capacity);
+            resize(shift, capacity + shift);
+            baseDay -= shift;
+        } else if (day - baseDay >= capacity) {
+            resize(0, Math.max(capacity * 2, day - baseDay + 1));
+        }
+        return day - baseDay;
+    }
+
+    private void resize(int shift, int newCapacity) {
+        totals = copy(totals, shift, newCapacity);
+        expenses = copy(expenses, shift, newCapacity);
+        net = copy(net, shift, newCapacity);
+
+        int[] newTrips = new int[newCapacity];
+        System.arraycopy(trips, 0, newTrips, shift, Math.min(trips.length, capacity));
+        trips = newTrips;
+
+        long[] newPresent = new long[(newCapacity + 63) >>> 6];
+        for (int slot = 0; slot < capacity; slot++) {
+            if ((present[slot >>> 6] & (1L << slot)) != 0) {
+                int moved = slot + shift;
+                newPresent[moved >>> 6] |= 1L << moved;
+            }
+        }
+        present = newPresent;
+        capacity = newCapacity;
+    }
+
+    private double[] copy(double[] source, int shift, int newCapacity) {
+        double[] target = new double[newCapacity];
+        System.arraycopy(source, 0, target, shift, Math.min(source.length, capacity));
+        return target;
+    }
+
+    /**
+     * Approximate heap bytes held by the primitive columns.
+     */
+    long columnBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) capacity * (3 * Double.BYTES + Integer.BYTES) + (long) present.length * Long.BYTES;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static final class DayNotes {
+        final Map<String, String> penalties;
+        final Map<String, String> rewards;
+
+        private DayNotes(Map<String, String> penalties, Map<String, String> rewards) {
+            this.penalties = penalties;
+            this.rewards = rewards;
+        }
+
+        static DayNotes of(Map<String, String> penalties, Map<String, String> rewards) {
+            boolean hasPenalties = penalties != null && !penalties.isEmpty();
+            boolean hasRewards = rewards != null && !rewards.isEmpty();
+            if (!hasPenalties && !hasRewards) {
+                return null;
+            }
+            return new DayNotes(
+                    hasPenalties ? Collections.unmodifiableMap(new LinkedHashMap<>(penalties)) : Collections.emptyMap(),
+                    hasRewards ? Collections.unmodifiableMap(new LinkedHashMap<>(rewards)) : Collections.emptyMap());
+        }
+    }
+}
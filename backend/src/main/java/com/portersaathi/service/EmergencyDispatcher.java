@@ -0,0 +1,309 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.EmergencyAlert;
+import com.portersaathi.model.EmergencyDispatchStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans emergency alerts out to every {@link EmergencyNotifier}.
+ *
+ * Alerts never touch the request thread pools: deliveries run on a
+ * dedicated pool of max-priority threads and timeouts and retry backoff on a
+ * separate scheduler, so a saturated query path cannot delay them. Each
+ * notifier gets up to {@code porter.emergency-max-attempts} attempts, each
+ * bounded to a share of {@code porter.emergency-response-timeout}; a hung
+ * attempt is interrupted and retried with exponential backoff until the
+ * overall deadline passes.
+ *
+ * Repeats are not fanned out again while they add nothing: an alert from a
+ * driver whose previous alert is still being delivered, or a client retry
+ * carrying the alert ID of one delivered within
+ * {@code porter.emergency-cooldown-seconds}, gets the earlier alert instead
+ * of sending every contact another message. An alert is always sent again
+ * after the previous one failed or timed out, and when it carries a
+ * location the previous one did not.
+ */
+@Service
+public class EmergencyDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmergencyDispatcher.class);
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private List<EmergencyNotifier> notifiers;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private ExecutorService deliveryPool;
+    private ScheduledExecutorService timer;
+
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder repeats = new LongAdder();
+
+    // Driver -> their last fanned-out alert, kept while in flight and for the cooldown after
+    private final ConcurrentHashMap<String, Recent> recent = new ConcurrentHashMap<>();
+    private long cooldownNanos;
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, properties.getEmergencyDispatchThreads());
+        deliveryPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory("emergency-dispatch-"));
+        timer = Executors.newSingleThreadScheduledExecutor(threadFactory("emergency-timer-"));
+        cooldownNanos = TimeUnit.SECONDS.toNanos(Math.max(0, properties.getEmergencyCooldownSeconds()));
+        long sweepNanos = Math.max(cooldownNanos, TimeUnit.SECONDS.toNanos(properties.getEmergencyResponseTimeout()));
+        timer.scheduleWithFixedDelay(this::forgetExpired, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+
+        metrics.counter("porter_emergency_dispatched_total", "Emergency alerts dispatched", dispatched::sum);
+        metrics.counter("porter_emergency_delivered_total", "Emergency alerts delivered on every channel", delivered::sum);
+        metrics.counter("porter_emergency_failed_total", "Emergency alerts not delivered on some channel", failed::sum);
+        metrics.counter("porter_emergency_retries_total", "Emergency delivery attempts retried", retries::sum);
+        metrics.counter("porter_emergency_repeats_total",
+                "Repeated emergencies answered with the driver's alert already sent", repeats::sum);
+        metrics.histogram("porter_emergency_dispatch_seconds", "Time from dispatch until every channel finished",
+                dispatchLatency);
+    }
+
+    @PreDestroy
+    public void stop() {
+        deliveryPool.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Builds an alert for the driver and starts delivering it. Returns
+     * immediately; the future completes once every channel has delivered or
+     * the response timeout has passed.
+     * @param driver The driver in trouble
+     * @param location Last known location, if any
+     * @param emergencyType Free-form type ("sos", "accident", ...)
+     */
+    public CompletableFuture<EmergencyAlert> dispatch(Driver driver, String location, String emergencyType) {
+        EmergencyAlert alert = new EmergencyAlert();
+        alert.setDriverId(driver.getId());
+        alert.setDriverName(driver.getName());
+        alert.setVehicleNumber(driver.getVehicle() != null ? driver.getVehicle().getNumber() : null);
+        alert.setEmergencyContact(driver.getEmergencyContact());
+        alert.setLocation(location);
+        alert.setEmergencyType(emergencyType);
+        return dispatch(alert);
+    }
+
+    /**
+     * Starts delivering a prepared alert, filling in its ID and timestamp if
+     * missing. A repeat of an alert in flight or just delivered is not sent:
+     * it takes that alert's ID and timestamp, its status becomes
+     * "duplicate", and the result is the one of the alert already sent.
+     */
+    public CompletableFuture<EmergencyAlert> dispatch(EmergencyAlert alert) {
+        long startNanos = System.nanoTime();
+        Recent fresh = alert.getDriverId() != null ? new Recent(startNanos, alert) : null;
+        if (fresh != null) {
+            Recent current = recent.compute(alert.getDriverId(),
+                    (id, previous) -> previous != null && previous.covers(alert, startNanos, cooldownNanos) ? previous : fresh);
+            if (current != fresh) {
+                repeats.increment();
+                log.warn("Repeated emergency for driver {} answered with alert {}; not sent again",
+                        alert.getDriverId(), current.alert.getAlertId());
+                alert.setAlertId(current.alert.getAlertId());
+                alert.setTimestamp(current.alert.getTimestamp());
+                alert.setStatus("duplicate");
+                return current.result;
+            }
+        }
+        long deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(properties.getEmergencyResponseTimeout());
+        if (alert.getAlertId() == null) {
+            alert.setAlertId(UUID.randomUUID().toString());
+        }
+        if (alert.getTimestamp() == null) {
+            alert.setTimestamp(Instant.now().toString());
+        }
+        alert.setStatus("dispatching");
+        dispatched.increment();
+        log.warn("Emergency {} for driver {} ({}), type {}", alert.getAlertId(), alert.getDriverId(),
+                alert.getDriverName(), alert.getEmergencyType());
+
+        CompletableFuture<?>[] deliveries = new CompletableFuture<?>[notifiers.size()];
+        for (int i = 0; i < deliveries.length; i++) {
+            deliveries[i] = deliver(notifiers.get(i), alert, 1, deadlineNanos);
+        }
+
+        CompletableFuture<EmergencyAlert> result = CompletableFuture.allOf(deliveries).handle((ignored, error) -> {
+            dispatchLatency.recordNanos(System.nanoTime() - startNanos);
+            if (error == null) {
+                delivered.increment();
+                alert.setStatus("delivered");
+            } else {
+                failed.increment();
+                alert.setStatus("failed");
+                log.error("Emergency {} for driver {} was not fully delivered", alert.getAlertId(), alert.getDriverId(), error);
+            }
+            return alert;
+        });
+        if (fresh != null) {
+            result.whenComplete((done, error) -> fresh.result.complete(alert));
+            return fresh.result;
+        }
+        return result;
+    }
+
+    public EmergencyDispatchStats getStats() {
+        EmergencyDispatchStats stats = new EmergencyDispatchStats();
+        stats.setDispatched(dispatched.sum());
+        stats.setDelivered(delivered.sum());
+        stats.setFailed(failed.sum());
+        stats.setRetries(retries.sum());
+        stats.setInFlight(stats.getDispatched() - stats.getDelivered() - stats.getFailed());
+        stats.setP50Millis(dispatchLatency.getPercentileMillis(50));
+        stats.setP99Millis(dispatchLatency.getPercentileMillis(99));
+        stats.setMaxMillis(dispatchLatency.getMaxMillis());
+        return stats;
+    }
+
+    public LatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    private CompletableFuture<Void> deliver(EmergencyNotifier notifier, EmergencyAlert alert, int attempt, long deadlineNanos) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            CompletableFuture<Void> expired = new CompletableFuture<>();
+            expired.completeExceptionally(new TimeoutException(notifier.getChannel() + " missed the emergency deadline"));
+            return expired;
+        }
+
+        // Split what is left of the deadline over the remaining attempts
+        int attemptsLeft = Math.max(1, properties.getEmergencyMaxAttempts() - attempt + 1);
+        long attemptTimeoutNanos = remainingNanos / attemptsLeft;
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Future<?> task = deliveryPool.submit(() -> {
+            try {
+                notifier.send(alert);
+                result.complete(null);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        timer.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException(notifier.getChannel() + " attempt " + attempt + " timed out"))) {
+                task.cancel(true);
+            }
+        }, attemptTimeoutNanos, TimeUnit.NANOSECONDS);
+
+        return result.handle((ok, error) -> {
+            if (error == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (attempt >= properties.getEmergencyMaxAttempts()) {
+                CompletableFuture<Void> exhausted = new CompletableFuture<>();
+                exhausted.completeExceptionally(error);
+                return exhausted;
+            }
+            retries.increment();
+            log.warn("Emergency {} via {} failed on attempt {}: {}", alert.getAlertId(), notifier.getChannel(), attempt, error.toString());
+            return retryLater(notifier, alert, attempt + 1, deadlineNanos);
+        }).thenCompose(next -> next);
+    }
+
+    private CompletableFuture<Void> retryLater(EmergencyNotifier notifier, EmergencyAlert alert, int attempt, long deadlineNanos) {
+        long backoffNanos = TimeUnit.MILLISECONDS.toNanos(INITIAL_BACKOFF_MILLIS << Math.min(attempt - 2, 10));
+        backoffNanos = Math.min(backoffNanos, Math.max(0, (deadlineNanos - System.nanoTime()) / 2));
+
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+        timer.schedule(() -> {
+            deliver(notifier, alert, attempt, deadlineNanos).whenComplete((ok, error) -> {
+                if (error == null) {
+                    retried.complete(null);
+                } else {
+                    retried.completeExceptionally(error);
+                }
+            });
+        }, backoffNanos, TimeUnit.NANOSECONDS);
+        return retried;
+    }
+
+    private void forgetExpired() {
+        try {
+            long now = System.nanoTime();
+            recent.values().removeIf(entry -> entry.result.isDone() && now - entry.atNanos >= cooldownNanos);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Emergency cooldown sweep failed", e);
+        }
+    }
+
+    private static final class Recent {
+        final long atNanos;
+        final EmergencyAlert alert;
+        final String location;
+        final CompletableFuture<EmergencyAlert> result = new CompletableFuture<>();
+
+        Recent(long atNanos, EmergencyAlert alert) {
+            this.atNanos = atNanos;
+            this.alert = alert;
+            this.location = alert.getLocation();
+        }
+
+        // Whether sending the next alert would only repeat this one
+        boolean covers(EmergencyAlert next, long nowNanos, long cooldownNanos) {
+            if (result.isDone() && "failed".equals(alert.getStatus())) {
+                return false;
+            }
+            if (next.getLocation() != null && !next.getLocation().equals(location)) {
+                return false;
+            }
+            if (!result.isDone()) {
+                return true;
+            }
+            // A client retrying with the ID it was acknowledged with
+            return next.getAlertId() != null && next.getAlertId().equals(alert.getAlertId())
+                    && nowNanos - atNanos < cooldownNanos;
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        };
+    }
+}
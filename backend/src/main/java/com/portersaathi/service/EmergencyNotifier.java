@@ -0,0 +1,22 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.EmergencyAlert;
+
+/**
+ * One delivery channel for emergency alerts (SMS to the emergency contact,
+ * the ops dashboard, a call centre, ...). Every notifier bean receives every
+ * alert. Implementations may block; they run on the emergency dispatch pool
+ * and are interrupted when an attempt times out.
+ */
+public interface EmergencyNotifier {
+
+    /**
+     * @return Short channel name used in logs
+     */
+    String getChannel();
+
+    /**
+     * Delivers the alert, throwing if delivery failed and should be retried.
+     */
+    void send(EmergencyAlert alert) throws Exception;
+}
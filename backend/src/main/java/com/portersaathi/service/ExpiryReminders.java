@@ -0,0 +1,325 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.ExpiryReminder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reminds drivers that their vehicle insurance is about to expire, the
+ * configured number of days before it does ({@code porter.expiry-reminder-days}).
+ *
+ * Reminders are indexed by the day they fall due: a sorted map from day to
+ * a bucket of driver IDs, where each entry is one reference to the ID the
+ * driver store already holds. Checking for due reminders takes the buckets
+ * up to today off the map, so it costs nothing on most checks and time in
+ * proportion to the reminders due otherwise; no driver is scanned.
+ *
+ * Entries are not removed when a driver's expiry date changes. A due entry
+ * is checked against the driver's current date instead, and dropped unless
+ * that date is within the reminder window. A fired reminder is pushed to
+ * {@code /topic/driver/{id}/reminders} and held until the driver's next
+ * query, whose answer carries it as a suggestion.
+ */
+@Service
+public class ExpiryReminders {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryReminders.class);
+
+    public static final String INSURANCE = "insurance";
+
+    private static final String PREFIX = "/topic/driver/";
+    private static final String SUFFIX = "/reminders";
+
+    // Insurance dates are free text; these are the forms seen in practice
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("d-M-uuuu"),
+            DateTimeFormatter.ofPattern("d/M/uuuu"),
+            DateTimeFormatter.ofPattern("d.M.uuuu")};
+    private static final DateTimeFormatter SPOKEN_DATE = DateTimeFormatter.ofPattern("d MMMM uuuu", Locale.ENGLISH);
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    // Due epoch day -> drivers to remind that day; both guarded by the map's monitor
+    private final TreeMap<Integer, Bucket> buckets = new TreeMap<>();
+    private long entries;
+
+    // Fired reminders not yet given with an answer: driver -> expiry epoch day
+    private final ConcurrentHashMap<String, Integer> pending = new ConcurrentHashMap<>();
+
+    private int[] leadDays;
+    private int window;
+    private volatile ResponseCatalog catalog;
+    private ScheduledExecutorService timer;
+
+    private LongAdder fired;
+    private LongAdder stale;
+    private LongAdder attached;
+
+    @PostConstruct
+    public void start() {
+        leadDays = Arrays.stream(properties.getExpiryReminderDays()).filter(days -> days >= 0).distinct().sorted().toArray();
+        window = leadDays.length == 0 ? -1 : leadDays[leadDays.length - 1];
+
+        fired = metrics.counter("porter_reminders_fired_total", "Expiry reminders sent");
+        stale = metrics.counter("porter_reminders_stale_total", "Due entries dropped because the expiry date had changed");
+        attached = metrics.counter("porter_reminders_attached_total", "Expiry reminders added to an answer");
+        metrics.gauge("porter_reminders_scheduled", "Reminder entries waiting for their day", this::getScheduled);
+        metrics.gauge("porter_reminders_pending", "Sent reminders not yet given with an answer", pending::size);
+
+        for (Driver driver : driverStore.all()) {
+            schedule(driver.getId());
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, properties.getExpiryCheckSeconds());
+        timer.scheduleWithFixedDelay(this::safeDrain, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Uses the catalog's "reminder_insurance" and "reminder_insurance_today"
+     * templates to word reminders.
+     */
+    public void registerTemplates(ResponseCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Indexes the reminders for a stored driver's insurance expiry. A date
+     * whose first reminders are already past gets one today.
+     */
+    public void schedule(String driverId) {
+        Driver driver = driverStore.get(driverId);
+        LocalDate expiry = insuranceExpiry(driver);
+        if (expiry == null || window < 0) {
+            return;
+        }
+        int today = (int) LocalDate.now().toEpochDay();
+        int expiryDay = (int) expiry.toEpochDay();
+        if (expiryDay < today) {
+            return;
+        }
+        synchronized (buckets) {
+            int previous = Integer.MIN_VALUE;
+            for (int i = leadDays.length - 1; i >= 0; i--) {
+                int due = Math.max(today, expiryDay - leadDays[i]);
+                if (due != previous) {
+                    // The stored profile's own ID, so the entry adds no String
+                    buckets.computeIfAbsent(due, day -> new Bucket()).add(driver.getId());
+                    entries++;
+                    previous = due;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes a driver that was just stored, unless the insurance date is
+     * the same as before.
+     * @param previous The driver's profile before it was stored, or null
+     */
+    public void reschedule(Driver previous, String driverId) {
+        Driver current = driverStore.get(driverId);
+        if (previous == null || current == null
+                || !Objects.equals(expiryText(previous), expiryText(current))) {
+            schedule(driverId);
+        }
+    }
+
+    /**
+     * Sends every reminder due on or before the given day.
+     * @return The number of reminders sent
+     */
+    public int drain(LocalDate today) {
+        int day = (int) today.toEpochDay();
+        List<Bucket> due;
+        synchronized (buckets) {
+            NavigableMap<Integer, Bucket> head = buckets.headMap(day, true);
+            if (head.isEmpty()) {
+                return 0;
+            }
+            due = new ArrayList<>(head.values());
+            for (Bucket bucket : due) {
+                entries -= bucket.size;
+            }
+            head.clear();
+        }
+
+        pending.values().removeIf(expiryDay -> expiryDay < day);
+        // A changed date can leave a driver in several of the buckets
+        Set<String> seen = new HashSet<>();
+        int sent = 0;
+        for (Bucket bucket : due) {
+            for (int i = 0; i < bucket.size; i++) {
+                String driverId = bucket.ids[i];
+                if (seen.add(driverId) && fire(driverId, day)) {
+                    sent++;
+                }
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Takes the reminder a driver was sent and has not yet been given with
+     * an answer.
+     * @return The reminder worded in the given language, or null if there is none
+     */
+    public ExpiryReminder take(Driver driver, String language) {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Integer expiryDay = pending.remove(driver.getId());
+        int today = (int) LocalDate.now().toEpochDay();
+        if (expiryDay == null || expiryDay < today) {
+            return null;
+        }
+        attached.increment();
+        return reminder(driver, LocalDate.ofEpochDay(expiryDay), today, language);
+    }
+
+    public long getScheduled() {
+        synchronized (buckets) {
+            return entries;
+        }
+    }
+
+    /**
+     * @return The driver's insurance expiry, or null if there is none or it
+     *         is not a date in a known form
+     */
+    public static LocalDate insuranceExpiry(Driver driver) {
+        String text = expiryText(driver);
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(text.trim(), format);
+            } catch (DateTimeParseException e) {
+                // try the next form
+            }
+        }
+        return null;
+    }
+
+    private boolean fire(String driverId, int today) {
+        Driver driver = driverStore.get(driverId);
+        LocalDate expiry = insuranceExpiry(driver);
+        // Within the window rather than exactly on a lead day, so reminders
+        // indexed late or missed while the server was down still go out
+        int daysLeft = expiry == null ? -1 : (int) (expiry.toEpochDay() - today);
+        if (daysLeft < 0 || daysLeft > window) {
+            stale.increment();
+            return false;
+        }
+        pending.put(driver.getId(), (int) expiry.toEpochDay());
+        String language = catalog == null ? properties.getDefaultLanguage() : language(driver);
+        messagingTemplate.convertAndSend(PREFIX + driverId + SUFFIX, reminder(driver, expiry, today, language));
+        fired.increment();
+        return true;
+    }
+
+    private ExpiryReminder reminder(Driver driver, LocalDate expiry, int today, String language) {
+        int daysLeft = (int) (expiry.toEpochDay() - today);
+        String vehicle = Objects.toString(driver.getVehicle().getNumber(), "");
+        ExpiryReminder reminder = new ExpiryReminder();
+        reminder.setDriverId(driver.getId());
+        reminder.setDocument(INSURANCE);
+        reminder.setVehicleNumber(driver.getVehicle().getNumber());
+        reminder.setExpiryDate(expiry);
+        reminder.setDaysLeft(daysLeft);
+        reminder.setLanguage(language);
+        if (catalog != null) {
+            reminder.setText(daysLeft == 0
+                    ? catalog.template("reminder_insurance_today", language).writer().text(vehicle).toString()
+                    : catalog.template("reminder_insurance", language).writer()
+                            .text(vehicle)
+                            .integer(daysLeft)
+                            .text(expiry.format(SPOKEN_DATE))
+                            .toString());
+        }
+        return reminder;
+    }
+
+    private String language(Driver driver) {
+        String language = catalog.supportedLanguage(driver.getLanguagePreference());
+        return language != null ? language : properties.getDefaultLanguage();
+    }
+
+    private static String expiryText(Driver driver) {
+        return driver == null || driver.getVehicle() == null ? null : driver.getVehicle().getInsuranceExpiry();
+    }
+
+    private void safeDrain() {
+        try {
+            int sent = drain(LocalDate.now());
+            if (sent > 0) {
+                log.info("Sent {} insurance expiry reminders", sent);
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Expiry reminder check failed", e);
+        }
+    }
+
+    // Driver IDs due on one day, in a plain array: one reference per entry
+    private static final class Bucket {
+        String[] ids = new String[4];
+        int size;
+
+        void add(String driverId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = driverId;
+        }
+    }
+}
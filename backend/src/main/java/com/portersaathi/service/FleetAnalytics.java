@@ -0,0 +1,243 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.EarningsTotals;
+import com.portersaathi.model.FleetSegmentStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Compares drivers with their peers: drivers of the same vehicle type who
+ * had trips in the last 7 days.
+ *
+ * Every {@code porter.fleet-analytics-refresh-seconds} the whole driver
+ * store is scanned with parallel streams on a dedicated fork/join pool.
+ * Each driver's weekly figures are kept with the store version they were
+ * read at, so a refresh only re-reads the earnings of drivers that changed
+ * since; all of them are re-read once the date changes and the 7-day
+ * window moves. The figures are then grouped by vehicle type and sorted
+ * into an immutable snapshot, which queries read without locking.
+ */
+@Service
+public class FleetAnalytics {
+
+    private static final Logger log = LoggerFactory.getLogger(FleetAnalytics.class);
+
+    private static final int WINDOW_DAYS = 7;
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    // The weekly figures each driver was last seen with
+    private final ConcurrentHashMap<String, Sample> samples = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private LocalDate windowEnd;
+
+    private ForkJoinPool pool;
+    private ScheduledExecutorService timer;
+    private LatencyHistogram refreshLatency;
+    private LongAdder recomputed;
+
+    @PostConstruct
+    public void start() {
+        int threads = properties.getFleetAnalyticsThreads() > 0
+                ? properties.getFleetAnalyticsThreads() : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, properties.getFleetAnalyticsRefreshSeconds());
+        timer.scheduleWithFixedDelay(this::safeRefresh, 0, period, TimeUnit.SECONDS);
+
+        refreshLatency = metrics.histogram("porter_fleet_analytics_refresh_seconds", "Time to refresh the fleet analytics snapshot");
+        recomputed = metrics.counter("porter_fleet_analytics_recomputed_total", "Drivers whose weekly figures were re-read");
+        metrics.gauge("porter_fleet_analytics_drivers", "Active drivers in the fleet analytics snapshot",
+                () -> snapshot.fleet.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return The peers of a vehicle type, or null if no active driver has one
+     */
+    public FleetSegment segment(String vehicleType) {
+        return vehicleType == null ? null : snapshot.segments.get(segmentKey(vehicleType));
+    }
+
+    /**
+     * @return Every active driver, whatever their vehicle
+     */
+    public FleetSegment fleet() {
+        return snapshot.fleet;
+    }
+
+    /**
+     * @return Statistics of the whole fleet, with no vehicle type, followed by
+     *         each vehicle type from the most drivers to the fewest
+     */
+    public List<FleetSegmentStats> getStats() {
+        Snapshot current = snapshot;
+        List<FleetSegmentStats> stats = new ArrayList<>(current.segments.size() + 1);
+        stats.add(current.fleet.toStats(current.computedAt));
+        current.segments.values().stream()
+                .sorted(Comparator.comparingInt(FleetSegment::size).reversed())
+                .forEach(segment -> stats.add(segment.toStats(current.computedAt)));
+        return stats;
+    }
+
+    /**
+     * Brings the snapshot up to date.
+     * @param full Re-read every driver's earnings rather than only those that changed
+     */
+    public synchronized void refresh(boolean full) {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        boolean everyone = full || !today.equals(windowEnd);
+        LocalDate from = today.minusDays(WINDOW_DAYS - 1);
+
+        // Store versions are read before the earnings, so a change racing with the read is picked up next time
+        long changed = pool.submit(() -> driverStore.all().parallelStream()
+                .filter(driver -> update(driver, everyone, from, today))
+                .count()).join();
+        windowEnd = today;
+        recomputed.add(changed);
+
+        if (changed > 0 || snapshot == Snapshot.EMPTY) {
+            snapshot = pool.submit(this::buildSnapshot).join();
+        }
+        long elapsed = System.nanoTime() - start;
+        refreshLatency.recordNanos(elapsed);
+        log.debug("Fleet analytics refreshed: {} drivers re-read, {} active, {} ms",
+                changed, snapshot.fleet.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void safeRefresh() {
+        try {
+            refresh(false);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Fleet analytics refresh failed", e);
+        }
+    }
+
+    // Returns whether the driver's figures were re-read
+    private boolean update(Driver driver, boolean everyone, LocalDate from, LocalDate to) {
+        String id = driver.getId();
+        long version = driverStore.getVersion(id);
+        Sample previous = samples.get(id);
+        if (!everyone && previous != null && previous.version == version) {
+            return false;
+        }
+        String vehicleType = driver.getVehicle() == null ? null : driver.getVehicle().getType();
+        EarningsTotals week = driverStore.sumEarnings(id, from, to);
+        samples.put(id, new Sample(version, vehicleType, week));
+        return true;
+    }
+
+    // Runs on the fork/join pool, so the nested parallel streams and sorts use it too
+    private Snapshot buildSnapshot() {
+        List<Sample> active = samples.values().parallelStream()
+                .filter(sample -> sample.activeDays > 0)
+                .collect(Collectors.toList());
+        Map<String, List<Sample>> byType = active.parallelStream()
+                .filter(sample -> sample.segmentKey != null)
+                .collect(Collectors.groupingByConcurrent(sample -> sample.segmentKey));
+
+        Map<String, FleetSegment> segments = byType.entrySet().parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> segment(entry.getValue().get(0).vehicleType, entry.getValue())));
+        return new Snapshot(new HashMap<>(segments), segment(null, active), Instant.now().toString());
+    }
+
+    private static FleetSegment segment(String vehicleType, List<Sample> members) {
+        int size = members.size();
+        double[] weeklyNet = new double[size];
+        double[] tripsPerDay = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            Sample sample = members.get(i);
+            weeklyNet[i] = sample.weeklyNet;
+            tripsPerDay[i] = sample.tripsPerDay;
+            total += sample.weeklyNet;
+        }
+        Arrays.parallelSort(weeklyNet);
+        Arrays.parallelSort(tripsPerDay);
+        return new FleetSegment(vehicleType, weeklyNet, tripsPerDay, size == 0 ? 0 : total / size);
+    }
+
+    // "Tata Ace", "tata ace " and "TATA ACE" are one segment
+    private static String segmentKey(String vehicleType) {
+        String key = vehicleType.trim();
+        return key.isEmpty() ? null : key.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Sample {
+        final long version;
+        final String vehicleType;
+        final String segmentKey;
+        final double weeklyNet;
+        final double tripsPerDay;
+        final int activeDays;
+
+        Sample(long version, String vehicleType, EarningsTotals week) {
+            this.version = version;
+            this.vehicleType = vehicleType == null ? null : vehicleType.trim();
+            this.segmentKey = vehicleType == null ? null : segmentKey(vehicleType);
+            this.weeklyNet = week.getNetEarnings();
+            this.activeDays = week.getActiveDays();
+            this.tripsPerDay = activeDays == 0 ? 0 : (double) week.getCompletedTrips() / activeDays;
+        }
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(),
+                new FleetSegment(null, new double[0], new double[0], 0), Instant.EPOCH.toString());
+
+        final Map<String, FleetSegment> segments;
+        final FleetSegment fleet;
+        final String computedAt;
+
+        Snapshot(Map<String, FleetSegment> segments, FleetSegment fleet, String computedAt) {
+            this.segments = segments;
+            this.fleet = fleet;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.FleetSegmentStats;
+
+/**
+ * Weekly figures of every active driver of one vehicle type, sorted once
+ * when the fleet snapshot is built. Percentiles are an index into the
+ * sorted arrays and a driver's rank is a binary search, so comparing a
+ * driver with their peers takes microseconds however large the segment.
+ *
+ * Immutable and safe to share between threads.
+ */
+public final class FleetSegment {
+
+    private final String vehicleType;
+    private final double[] weeklyNet;    // sorted ascending
+    private final double[] tripsPerDay;  // sorted ascending
+    private final double meanWeeklyNet;
+
+    FleetSegment(String vehicleType, double[] weeklyNet, double[] tripsPerDay, double meanWeeklyNet) {
+        this.vehicleType = vehicleType;
+        this.weeklyNet = weeklyNet;
+        this.tripsPerDay = tripsPerDay;
+        this.meanWeeklyNet = meanWeeklyNet;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * @return Drivers of this vehicle type with trips in the last 7 days
+     */
+    public int size() {
+        return weeklyNet.length;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return Net earnings over the last 7 days at that percentile
+     */
+    public double weeklyNetPercentile(double percentile) {
+        return percentile(weeklyNet, percentile);
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return Trips per active day at that percentile
+     */
+    public double tripsPerDayPercentile(double percentile) {
+        return percentile(tripsPerDay, percentile);
+    }
+
+    /**
+     * @return Share of the segment, 0 to 100, that earned less than this
+     */
+    public double weeklyNetRank(double value) {
+        return rank(weeklyNet, value);
+    }
+
+    /**
+     * @return Share of the segment, 0 to 100, that made fewer trips per day than this
+     */
+    public double tripsPerDayRank(double value) {
+        return rank(tripsPerDay, value);
+    }
+
+    public FleetSegmentStats toStats(String computedAt) {
+        FleetSegmentStats stats = new FleetSegmentStats();
+        stats.setVehicleType(vehicleType);
+        stats.setDrivers(size());
+        stats.setMeanWeeklyNet(meanWeeklyNet);
+        stats.setP10WeeklyNet(weeklyNetPercentile(10));
+        stats.setP25WeeklyNet(weeklyNetPercentile(25));
+        stats.setMedianWeeklyNet(weeklyNetPercentile(50));
+        stats.setP75WeeklyNet(weeklyNetPercentile(75));
+        stats.setP90WeeklyNet(weeklyNetPercentile(90));
+        stats.setP25TripsPerDay(tripsPerDayPercentile(25));
+        stats.setMedianTripsPerDay(tripsPerDayPercentile(50));
+        stats.setP75TripsPerDay(tripsPerDayPercentile(75));
+        stats.setComputedAt(computedAt);
+        return stats;
+    }
+
+    // Linear interpolation between the two closest ranks
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        double position = Math.max(0, Math.min(100, percentile)) / 100 * (sorted.length - 1);
+        int lower = (int) position;
+        if (lower == sorted.length - 1) {
+            return sorted[lower];
+        }
+        return sorted[lower] + (sorted[lower + 1] - sorted[lower]) * (position - lower);
+    }
+
+    private static double rank(double[] sorted, double value) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        // First index holding a value >= the given one; Arrays.binarySearch picks any of equal values
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low * 100.0 / sorted.length;
+    }
+}
@@ -0,0 +1,30 @@
+package com.portersaathi.service;
+
+/**
+ * Intents the assistant can route a query to.
+ * Declaration order is the priority order: when a query contains keywords of
+ * several intents, the one declared first wins.
+ */
+public enum Intent {
+    EMERGENCY,
+    PEER_COMPARISON, // ahead of EARNINGS: "am I earning more than other drivers"
+    EARNINGS,
+    PENALTY,
+    CHALLAN,
+    DIGILOCKER,
+    BUSINESS,
+    INSURANCE,
+    HELP,
+    THANKS,
+    GREETING,
+    FOLLOW_UP, // "agla step", "aur kal?": resolved against the driver's last answer
+    UNKNOWN;
+
+    /**
+     * Whether queries with this intent can be refused first under load;
+     * nothing the driver needs to work or stay safe depends on them.
+     */
+    public boolean isSheddable() {
+        return this == HELP || this == THANKS || this == GREETING || this == UNKNOWN;
+    }
+}
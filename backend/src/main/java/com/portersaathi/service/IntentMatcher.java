@@ -0,0 +1,228 @@
+package com.portersaathi.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass keyword matcher that routes a query to an {@link Intent}.
+ *
+ * All keywords are compiled into one Aho-Corasick automaton, so matching a
+ * query costs one table lookup per character no matter how many keywords are
+ * registered. Keywords only match whole tokens ("hi" does not match inside
+ * "nahi"); a keyword ending in '*' matches any token starting with it
+ * ("earn*" matches "earnings"). Multi-word keywords ("kitna kamaya") are
+ * supported. When several intents match, the one with the highest priority
+ * (lowest {@link Intent} ordinal) wins.
+ *
+ * Instances are immutable and safe to share between threads. Matching does
+ * not allocate.
+ */
+public final class IntentMatcher {
+
+    private static final char PREFIX_WILDCARD = '*';
+
+    // Character classes: every non-word character folds into SEPARATOR, word
+    // characters that appear in no keyword fold into OTHER
+    private static final int SEPARATOR = 0;
+    private static final int OTHER = 1;
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    private static final Intent[] INTENTS = Intent.values();
+
+    private final short[] charClasses;
+    private final int alphabetSize;
+    private final int[] transitions; // state * alphabetSize + class -> next state
+    private final int[] outputs;     // state -> best intent ordinal, or NO_MATCH
+    private final int keywordCount;
+
+    private IntentMatcher(short[] charClasses, int alphabetSize, int[] transitions, int[] outputs, int keywordCount) {
+        this.charClasses = charClasses;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.keywordCount = keywordCount;
+    }
+
+    /**
+     * Compiles a matcher from an intent to keyword table.
+     * @param keywords Keywords per intent, case-insensitive
+     * @return Compiled matcher
+     */
+    public static IntentMatcher compile(Map<Intent, ? extends Collection<String>> keywords) {
+        // Assign a compact class to every character used by a keyword
+        short[] charClasses = new short[Character.MAX_VALUE + 1];
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            charClasses[ch] = (short) (isWordChar((char) ch) ? OTHER : SEPARATOR);
+        }
+        int alphabetSize = 2;
+
+        List<int[]> patterns = new ArrayList<>();
+        List<Intent> patternIntents = new ArrayList<>();
+        for (Map.Entry<Intent, ? extends Collection<String>> entry : keywords.entrySet()) {
+            for (String keyword : entry.getValue()) {
+                String normalized = normalize(keyword);
+                boolean prefix = normalized.endsWith(String.valueOf(PREFIX_WILDCARD));
+                if (prefix) {
+                    normalized = normalized.substring(0, normalized.length() - 1);
+                }
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+
+                // Separators around the keyword make the automaton match whole tokens only
+                int[] pattern = new int[normalized.length() + (prefix ? 1 : 2)];
+                pattern[0] = SEPARATOR;
+                for (int i = 0; i < normalized.length(); i++) {
+                    char ch = normalized.charAt(i);
+                    if (charClasses[ch] == OTHER) {
+                        charClasses[ch] = (short) alphabetSize++;
+                    }
+                    pattern[i + 1] = charClasses[ch];
+                }
+                if (!prefix) {
+                    pattern[pattern.length - 1] = SEPARATOR;
+                }
+                patterns.add(pattern);
+                patternIntents.add(entry.getKey());
+            }
+        }
+
+        // Build the keyword trie
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<Integer> trieOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        trieOutputs.add(NO_MATCH);
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = 0;
+            for (int cls : patterns.get(p)) {
+                Integer next = children.get(state).get(cls);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    trieOutputs.add(NO_MATCH);
+                    children.get(state).put(cls, next);
+                }
+                state = next;
+            }
+            trieOutputs.set(state, Math.min(trieOutputs.get(state), patternIntents.get(p).ordinal()));
+        }
+
+        // Resolve failure links breadth-first into a complete transition table
+        int stateCount = children.size();
+        int[] transitions = new int[stateCount * alphabetSize];
+        int[] outputs = new int[stateCount];
+        int[] failure = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            outputs[s] = trieOutputs.get(s);
+        }
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            Integer child = children.get(0).get(cls);
+            if (child != null) {
+                transitions[cls] = child;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = Math.min(outputs[state], outputs[failure[state]]);
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                Integer child = children.get(state).get(cls);
+                int fallback = transitions[failure[state] * alphabetSize + cls];
+                if (child != null) {
+                    failure[child] = fallback;
+                    transitions[state * alphabetSize + cls] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * alphabetSize + cls] = fallback;
+                }
+            }
+        }
+
+        return new IntentMatcher(charClasses, alphabetSize, transitions, outputs, patterns.size());
+    }
+
+    /**
+     * Finds the highest-priority intent mentioned in the text.
+     * @param text Raw query text, any case
+     * @return Matched intent, or {@link Intent#UNKNOWN} if no keyword matches
+     */
+    public Intent match(CharSequence text) {
+        // A virtual separator before the first character anchors tokens at the start
+        int state = transitions[SEPARATOR];
+        int best = outputs[state];
+        boolean afterSeparator = true;
+
+        for (int i = 0, length = text.length(); i < length && best != 0; i++) {
+            int cls = charClasses[Character.toLowerCase(text.charAt(i))];
+            if (cls == SEPARATOR) {
+                // Runs of spaces and punctuation count as a single separator
+                if (afterSeparator) {
+                    continue;
+                }
+                afterSeparator = true;
+            } else {
+                afterSeparator = false;
+            }
+            state = transitions[state * alphabetSize + cls];
+            best = Math.min(best, outputs[state]);
+        }
+
+        // Likewise a virtual separator after the last character closes the final token
+        if (!afterSeparator) {
+            state = transitions[state * alphabetSize + SEPARATOR];
+            best = Math.min(best, outputs[state]);
+        }
+
+        return best == NO_MATCH ? Intent.UNKNOWN : INTENTS[best];
+    }
+
+    public int getKeywordCount() {
+        return keywordCount;
+    }
+
+    public int getStateCount() {
+        return outputs.length;
+    }
+
+    private static String normalize(String keyword) {
+        StringBuilder normalized = new StringBuilder(keyword.length());
+        boolean afterSeparator = true;
+        for (int i = 0; i < keyword.length(); i++) {
+            char ch = Character.toLowerCase(keyword.charAt(i));
+            if (ch == PREFIX_WILDCARD || isWordChar(ch)) {
+                normalized.append(ch);
+                afterSeparator = false;
+            } else if (!afterSeparator) {
+                normalized.append(' ');
+                afterSeparator = true;
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == ' ') {
+            end--;
+        }
+        normalized.setLength(end);
+        return normalized.toString();
+    }
+
+    private static boolean isWordChar(char ch) {
+        if (Character.isLetterOrDigit(ch)) {
+            return true;
+        }
+        // Devanagari vowel signs and nasalisation marks are combining marks, not letters
+        int type = Character.getType(ch);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    @Override
+    public String toString() {
+        return "IntentMatcher{keywords=" + keywordCount + ", states=" + outputs.length
+                + ", alphabet=" + alphabetSize + "}";
+    }
+}
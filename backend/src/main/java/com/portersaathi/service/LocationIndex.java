@@ -0,0 +1,332 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.DriverLocation;
+import com.portersaathi.model.NearbyDriver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory spatial index of live driver locations.
+ *
+ * Space is cut into a fixed grid of {@code porter.location-cell-degrees}
+ * cells, the same idea as a geohash prefix but keyed by a plain long. Each
+ * driver's latest fix is an immutable {@link Position} behind an
+ * {@link AtomicReference} and is replaced with a compare-and-set, and cells
+ * are concurrent key sets, so pings never take a lock shared with other
+ * drivers and queries never block.
+ *
+ * Cell membership is allowed to lag: a cell may briefly list a driver who
+ * has already moved on, so queries check every candidate against its
+ * current position. A missing membership is never allowed: whoever removes
+ * a driver from a cell checks again afterwards and puts them back if they
+ * have moved back in the meantime.
+ *
+ * Distances use an equirectangular approximation scaled at the query's
+ * latitude: within 0.5% of the great-circle distance out to the 50 km
+ * search limit at Indian latitudes, and far cheaper than haversine on the
+ * hot path. Longitude wrap-around at the antimeridian is not handled.
+ */
+@Component
+public class LocationIndex {
+
+    private static final double METERS_PER_DEGREE = 6_371_008.8 * Math.PI / 180;
+    private static final long NOT_INDEXED = Long.MIN_VALUE;
+
+    private static final Comparator<NearbyDriver> BY_DISTANCE = Comparator.comparingDouble(NearbyDriver::getDistanceMeters);
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    private final ConcurrentHashMap<String, AtomicReference<Position>> positions = new ConcurrentHashMap<>();
+    // Cell members map to the same references as positions, so a scan needs no second lookup
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, AtomicReference<Position>>> cells =
+            new ConcurrentHashMap<>();
+
+    private double cellDegrees;
+    private long ttlMillis;
+    private double maxRadiusMeters;
+
+    @PostConstruct
+    public void start() {
+        cellDegrees = properties.getLocationCellDegrees();
+        ttlMillis = properties.getLocationTtlSeconds() * 1000L;
+        maxRadiusMeters = properties.getLocationMaxRadiusMeters();
+    }
+
+    /**
+     * Records a location ping. Pings older than the driver's latest are ignored.
+     * @param location The fix; a zero timestamp means now
+     * @return false if the ping was older than the one already recorded
+     * @throws IllegalArgumentException if the coordinates are out of range
+     */
+    public boolean update(DriverLocation location) {
+        double lat = location.getLat();
+        double lng = location.getLng();
+        checkCoordinates(lat, lng);
+        String driverId = location.getDriverId();
+        String status = location.getStatus() == null ? "online" : location.getStatus().toLowerCase(Locale.ROOT);
+        long timestamp = location.getTimestamp() > 0 ? location.getTimestamp() : System.currentTimeMillis();
+        long cell = status.equals("offline") ? NOT_INDEXED : cellOf(lat, lng);
+        Position next = new Position(lat, lng, status, timestamp, cell);
+
+        AtomicReference<Position> current = positions.computeIfAbsent(driverId, id -> new AtomicReference<>());
+        Position previous;
+        do {
+            previous = current.get();
+            if (previous != null && previous.timestamp > timestamp) {
+                return false;
+            }
+        } while (!current.compareAndSet(previous, next));
+
+        long previousCell = previous == null ? NOT_INDEXED : previous.cell;
+        if (cell != previousCell) {
+            if (cell != NOT_INDEXED) {
+                cells.computeIfAbsent(cell, key -> new ConcurrentHashMap<>()).put(driverId, current);
+            }
+            if (previousCell != NOT_INDEXED) {
+                unlink(previousCell, driverId, current);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The driver's latest fix, or null if none was received
+     */
+    public DriverLocation get(String driverId) {
+        AtomicReference<Position> current = driverId == null ? null : positions.get(driverId);
+        Position position = current == null ? null : current.get();
+        if (position == null) {
+            return null;
+        }
+        DriverLocation location = new DriverLocation();
+        location.setDriverId(driverId);
+        location.setLat(position.lat);
+        location.setLng(position.lng);
+        location.setStatus(position.status);
+        location.setTimestamp(position.timestamp);
+        return location;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Finds the k nearest online drivers with a fresh fix, searching rings
+     * of cells outward until no unvisited cell can hold anyone closer.
+     * @param lat Pickup latitude
+     * @param lng Pickup longitude
+     * @param k Maximum number of drivers to return
+     * @return Up to k drivers within the maximum search radius, nearest first
+     * @throws IllegalArgumentException if the coordinates are out of range
+     */
+    public List<NearbyDriver> nearest(double lat, double lng, int k) {
+        checkCoordinates(lat, lng);
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Scan scan = new Scan(lat, lng, maxRadiusMeters, true);
+        int centerRow = row(lat);
+        int centerColumn = column(lng);
+        // Cells are narrower east-west away from the equator; use the narrowest side for the bound
+        double cellMeters = cellDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(Math.min(89, Math.abs(lat) + cellDegrees)));
+        int maxRing = (int) Math.ceil(maxRadiusMeters / cellMeters) + 1;
+
+        // Max-heap on squared distance holding the best k so far
+        PriorityQueue<NearbyDriver> best = new PriorityQueue<>(k + 1, BY_DISTANCE.reversed());
+        CandidateSink keepBest = (driverId, position, squared) -> {
+            if (best.size() < k) {
+                best.add(nearby(driverId, position, squared));
+            } else if (squared < best.peek().getDistanceMeters()) {
+                best.poll();
+                best.add(nearby(driverId, position, squared));
+            }
+        };
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                // Inner rows of a ring only have its leftmost and rightmost cell
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = centerColumn - ring; c <= centerColumn + ring; c += step) {
+                    scan.collect(key(r, c), keepBest);
+                }
+            }
+            // Every cell beyond this ring is at least ring * cellMeters away
+            double bound = ring * cellMeters;
+            if (best.size() == k && best.peek().getDistanceMeters() <= bound * bound) {
+                break;
+            }
+        }
+        return finish(new ArrayList<>(best));
+    }
+
+    /**
+     * Finds every online or busy driver with a fresh fix within a radius.
+     * @param radiusMeters Search radius, capped at the configured maximum
+     * @return Matching drivers, nearest first
+     * @throws IllegalArgumentException if the coordinates are out of range or the radius is not a number
+     */
+    public List<NearbyDriver> within(double lat, double lng, double radiusMeters) {
+        checkCoordinates(lat, lng);
+        if (Double.isNaN(radiusMeters)) {
+            throw new IllegalArgumentException("Invalid radius " + radiusMeters);
+        }
+        double radius = Math.min(radiusMeters, maxRadiusMeters);
+        Scan scan = new Scan(lat, lng, radius, false);
+        double latSpan = radius / METERS_PER_DEGREE;
+        double widestLat = Math.min(89, Math.abs(lat) + latSpan);
+        double lngSpan = radius / (METERS_PER_DEGREE * Math.cos(Math.toRadians(widestLat)));
+
+        List<NearbyDriver> result = new ArrayList<>();
+        CandidateSink addAll = (driverId, position, squared) -> result.add(nearby(driverId, position, squared));
+        for (int r = row(lat - latSpan); r <= row(lat + latSpan); r++) {
+            for (int c = column(lng - lngSpan); c <= column(lng + lngSpan); c++) {
+                scan.collect(key(r, c), addAll);
+            }
+        }
+        return finish(result);
+    }
+
+    /**
+     * Whether a point is a real latitude and longitude, so the cell rows and
+     * columns derived from it stay small.
+     */
+    public static boolean isValid(double lat, double lng) {
+        // Written so NaN fails every comparison
+        return lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180;
+    }
+
+    // Outside this range row() and column() saturate at the int limits and the scan loops overflow
+    private static void checkCoordinates(double lat, double lng) {
+        if (!isValid(lat, lng)) {
+            throw new IllegalArgumentException("Invalid coordinates " + lat + "," + lng);
+        }
+    }
+
+    private interface CandidateSink {
+        void accept(String driverId, Position position, double squaredMeters);
+    }
+
+    /**
+     * One query's parameters, with the per-query trigonometry done up front.
+     */
+    private final class Scan {
+        final double lat;
+        final double lng;
+        final double metersPerDegreeLng;
+        final double radiusSquared;
+        final boolean onlineOnly;
+        final long oldest;
+
+        Scan(double lat, double lng, double radius, boolean onlineOnly) {
+            this.lat = lat;
+            this.lng = lng;
+            this.metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+            this.radiusSquared = radius * radius;
+            this.onlineOnly = onlineOnly;
+            this.oldest = System.currentTimeMillis() - ttlMillis;
+        }
+
+        void collect(long cell, CandidateSink sink) {
+            ConcurrentHashMap<String, AtomicReference<Position>> members = cells.get(cell);
+            if (members == null) {
+                return;
+            }
+            for (Map.Entry<String, AtomicReference<Position>> member : members.entrySet()) {
+                Position position = member.getValue().get();
+                if (position.cell != cell) {
+                    // Stale membership left by a concurrent move; tidy it up
+                    unlink(cell, member.getKey(), member.getValue());
+                    continue;
+                }
+                if (position.timestamp < oldest || (onlineOnly && !position.online)) {
+                    continue;
+                }
+                double y = (position.lat - lat) * METERS_PER_DEGREE;
+                double x = (position.lng - lng) * metersPerDegreeLng;
+                double squared = x * x + y * y;
+                if (squared <= radiusSquared) {
+                    sink.accept(member.getKey(), position, squared);
+                }
+            }
+        }
+    }
+
+    // Candidates carry squared distances until the final list is built
+    private static NearbyDriver nearby(String driverId, Position position, double squaredMeters) {
+        NearbyDriver nearby = new NearbyDriver();
+        nearby.setDriverId(driverId);
+        nearby.setLat(position.lat);
+        nearby.setLng(position.lng);
+        nearby.setStatus(position.status);
+        nearby.setDistanceMeters(squaredMeters);
+        return nearby;
+    }
+
+    private static List<NearbyDriver> finish(List<NearbyDriver> result) {
+        result.sort(BY_DISTANCE);
+        for (NearbyDriver nearby : result) {
+            nearby.setDistanceMeters(Math.sqrt(nearby.getDistanceMeters()));
+        }
+        return result;
+    }
+
+    // Removing and then re-checking means a concurrent move back into the cell is never lost:
+    // either the re-check sees it, or that mover's own add comes after this removal
+    private void unlink(long cell, String driverId, AtomicReference<Position> current) {
+        ConcurrentHashMap<String, AtomicReference<Position>> members = cells.get(cell);
+        if (members == null) {
+            return;
+        }
+        members.remove(driverId);
+        if (current.get().cell == cell) {
+            members.put(driverId, current);
+        }
+    }
+
+    private long cellOf(double lat, double lng) {
+        return key(row(lat), column(lng));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private int column(double lng) {
+        return (int) Math.floor(lng / cellDegrees);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static final class Position {
+        final double lat;
+        final double lng;
+        final String status;
+        final boolean online;
+        final long timestamp;
+        final long cell; // NOT_INDEXED while offline
+
+        Position(double lat, double lng, String status, long timestamp, long cell) {
+            this.lat = lat;
+            this.lng = lng;
+            this.status = status;
+            this.online = status.equals("online");
+            this.timestamp = timestamp;
+            this.cell = cell;
+        }
+    }
+}
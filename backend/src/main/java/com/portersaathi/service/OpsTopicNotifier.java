@@ -0,0 +1,28 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.EmergencyAlert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes alerts to the ops dashboard over the STOMP broker.
+ */
+@Component
+public class OpsTopicNotifier implements EmergencyNotifier {
+
+    static final String DESTINATION = "/topic/emergency-notifications";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public String getChannel() {
+        return "ops-topic";
+    }
+
+    @Override
+    public void send(EmergencyAlert alert) {
+        messagingTemplate.convertAndSend(DESTINATION, alert);
+    }
+}
@@ -0,0 +1,357 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.Order;
+import com.portersaathi.model.OrderStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe book of orders and their lifecycle.
+ *
+ * The order details are fixed when the order is posted; everything that
+ * changes afterwards (status, assigned driver, timestamps) is an immutable
+ * {@link State} behind an {@link AtomicReference} and moves only by
+ * compare-and-set. When many drivers accept the same order at once exactly
+ * one CAS out of AVAILABLE succeeds and the rest see it taken, without any
+ * lock shared between orders.
+ *
+ * A driver holds at most one active order. The claim on the driver is a
+ * {@code putIfAbsent} taken before the order's CAS and released again if
+ * the CAS loses, so two orders accepted concurrently by the same driver
+ * cannot both go through.
+ *
+ * Available orders are also kept in posting order, so the matcher and
+ * listings walk them oldest first without scanning finished ones.
+ * Delivered and cancelled orders stay readable for
+ * {@code porter.order-retention-minutes} and are then dropped.
+ */
+@Component
+public class OrderBook {
+
+    /**
+     * Result of an accept or a status change.
+     */
+    public enum Outcome {
+        DONE,
+        NOT_FOUND,
+        ALREADY_TAKEN,
+        DRIVER_BUSY,
+        NOT_ASSIGNED,
+        INVALID_TRANSITION
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(OrderBook.class);
+
+    private static final long SWEEP_SECONDS = 60;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    private final ConcurrentHashMap<String, Entry> orders = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> available = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, String> activeByDriver = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Delivered and cancelled orders in the order they finished, for eviction
+    private final ConcurrentLinkedQueue<Finished> finished = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::safeEvict, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Posts a new available order. Status, driver and lifecycle timestamps
+     * in the given order are ignored.
+     * @param order The order details; an ID is generated if missing
+     * @return The stored order
+     * @throws IllegalArgumentException if an order with the same ID exists
+     *         or the pickup coordinates are out of range; see {@link #hasValidPickup}
+     */
+    public Order post(Order order) {
+        if (!hasValidPickup(order)) {
+            throw new IllegalArgumentException("Invalid pickup coordinates " + order.getPickupLat() + ","
+                    + order.getPickupLng());
+        }
+        Order details = copyOf(order);
+        if (details.getId() == null || details.getId().isEmpty()) {
+            details.setId(UUID.randomUUID().toString());
+        }
+        details.setCreatedAt(Instant.now().toString());
+        Entry entry = new Entry(sequence.incrementAndGet(), details);
+        if (orders.putIfAbsent(details.getId(), entry) != null) {
+            throw new IllegalArgumentException("Order " + details.getId() + " already exists");
+        }
+        available.put(entry.sequence, entry);
+        return entry.view();
+    }
+
+    /**
+     * Whether an order's pickup point can be matched: both coordinates
+     * present and in range, or both missing for an order that is only
+     * listed and never matched automatically.
+     */
+    public static boolean hasValidPickup(Order order) {
+        Double lat = order.getPickupLat();
+        Double lng = order.getPickupLng();
+        return lat == null && lng == null || lat != null && lng != null && LocationIndex.isValid(lat, lng);
+    }
+
+    /**
+     * @return A copy of the order, or null if unknown
+     */
+    public Order get(String orderId) {
+        Entry entry = orderId == null ? null : orders.get(orderId);
+        return entry == null ? null : entry.view();
+    }
+
+    /**
+     * @return Up to limit available orders, oldest first
+     */
+    public List<Order> available(int limit) {
+        List<Order> result = new ArrayList<>();
+        for (Entry entry : available.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            // The skip list may briefly hold an order that was just accepted
+            if (entry.state.get().status == OrderStatus.AVAILABLE) {
+                result.add(entry.view());
+            }
+        }
+        return result;
+    }
+
+    public boolean isAvailable(String orderId) {
+        Entry entry = orders.get(orderId);
+        return entry != null && entry.state.get().status == OrderStatus.AVAILABLE;
+    }
+
+    public int availableCount() {
+        return available.size();
+    }
+
+    /**
+     * @return The ID of the driver's active order, or null if the driver is free
+     */
+    public String activeOrderOf(String driverId) {
+        return activeByDriver.get(driverId);
+    }
+
+    /**
+     * Assigns an available order to a driver. Safe to call from any number
+     * of drivers at once: exactly one of them gets the order.
+     * @return DONE if this driver won the order, ALREADY_TAKEN if another
+     * driver did or it was cancelled, DRIVER_BUSY if this driver already
+     * has an active order
+     */
+    public Outcome accept(String orderId, String driverId) {
+        Entry entry = orders.get(orderId);
+        if (entry == null) {
+            return Outcome.NOT_FOUND;
+        }
+        // Cheap early exit for the losers of a race; the CAS below is what decides
+        if (entry.state.get().status != OrderStatus.AVAILABLE) {
+            return Outcome.ALREADY_TAKEN;
+        }
+        if (activeByDriver.putIfAbsent(driverId, orderId) != null) {
+            return Outcome.DRIVER_BUSY;
+        }
+        State current = entry.state.get();
+        State accepted = null;
+        while (current.status == OrderStatus.AVAILABLE) {
+            if (accepted == null) {
+                accepted = current.next(OrderStatus.ACCEPTED, driverId);
+            }
+            State witness = entry.state.compareAndExchange(current, accepted);
+            if (witness == current) {
+                available.remove(entry.sequence, entry);
+                return Outcome.DONE;
+            }
+            current = witness;
+        }
+        activeByDriver.remove(driverId, orderId);
+        return Outcome.ALREADY_TAKEN;
+    }
+
+    /**
+     * Moves an order along its lifecycle. Once accepted, only the assigned
+     * driver may move it; an available order can be cancelled by anyone.
+     * Delivering or cancelling frees the driver for the next order.
+     * @param driverId The driver making the change, or null for the customer
+     */
+    public Outcome transition(String orderId, String driverId, OrderStatus next) {
+        Entry entry = orders.get(orderId);
+        if (entry == null) {
+            return Outcome.NOT_FOUND;
+        }
+        if (next == OrderStatus.ACCEPTED) {
+            return driverId == null ? Outcome.INVALID_TRANSITION : accept(orderId, driverId);
+        }
+        State current = entry.state.get();
+        while (true) {
+            if (current.driverId != null && !current.driverId.equals(driverId)) {
+                return Outcome.NOT_ASSIGNED;
+            }
+            if (!current.status.canMoveTo(next)) {
+                return Outcome.INVALID_TRANSITION;
+            }
+            State witness = entry.state.compareAndExchange(current, current.next(next, current.driverId));
+            if (witness == current) {
+                break;
+            }
+            current = witness;
+        }
+        if (current.status == OrderStatus.AVAILABLE) {
+            available.remove(entry.sequence, entry);
+        }
+        if (current.driverId != null && !next.isActive()) {
+            activeByDriver.remove(current.driverId, orderId);
+        }
+        if (next == OrderStatus.DELIVERED || next == OrderStatus.CANCELLED) {
+            finished.add(new Finished(System.currentTimeMillis(), orderId, entry));
+        }
+        return Outcome.DONE;
+    }
+
+    /**
+     * Drops orders that finished before the retention period.
+     * @return The number of orders dropped
+     */
+    public int evictFinished(long nowMillis) {
+        long cutoff = nowMillis - properties.getOrderRetentionMinutes() * 60_000L;
+        int evicted = 0;
+        Finished oldest;
+        while ((oldest = finished.peek()) != null && oldest.atMillis <= cutoff) {
+            if (finished.remove(oldest) && orders.remove(oldest.orderId, oldest.entry)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    private void safeEvict() {
+        try {
+            evictFinished(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Finished order eviction failed", e);
+        }
+    }
+
+    private static Order copyOf(Order order) {
+        Order copy = new Order();
+        copy.setId(order.getId());
+        copy.setCustomerId(order.getCustomerId());
+        copy.setCustomerName(order.getCustomerName());
+        copy.setCustomerPhone(order.getCustomerPhone());
+        copy.setPickupAddress(order.getPickupAddress());
+        copy.setDeliveryAddress(order.getDeliveryAddress());
+        copy.setPickupLat(order.getPickupLat());
+        copy.setPickupLng(order.getPickupLng());
+        copy.setItems(order.getItems() == null ? new ArrayList<>() : new ArrayList<>(order.getItems()));
+        copy.setPaymentAmount(order.getPaymentAmount());
+        copy.setPickupTime(order.getPickupTime());
+        copy.setDeliveryTime(order.getDeliveryTime());
+        copy.setEstimatedDeliveryTime(order.getEstimatedDeliveryTime());
+        copy.setDistance(order.getDistance());
+        copy.setNotes(order.getNotes());
+        copy.setCreatedAt(order.getCreatedAt());
+        return copy;
+    }
+
+    private static final class Finished {
+        final long atMillis;
+        final String orderId;
+        final Entry entry;
+
+        Finished(long atMillis, String orderId, Entry entry) {
+            this.atMillis = atMillis;
+            this.orderId = orderId;
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final Order details; // Never modified once posted
+        final AtomicReference<State> state = new AtomicReference<>(State.AVAILABLE);
+
+        Entry(long sequence, Order details) {
+            this.sequence = sequence;
+            this.details = details;
+        }
+
+        Order view() {
+            State current = state.get();
+            Order order = copyOf(details);
+            order.setStatus(current.status);
+            order.setDriverId(current.driverId);
+            order.setAcceptedAt(current.acceptedAt);
+            order.setPickedUpAt(current.pickedUpAt);
+            order.setDeliveredAt(current.deliveredAt);
+            return order;
+        }
+    }
+
+    private static final class State {
+        static final State AVAILABLE = new State(OrderStatus.AVAILABLE, null, null, null, null);
+
+        final OrderStatus status;
+        final String driverId;
+        final String acceptedAt;
+        final String pickedUpAt;
+        final String deliveredAt;
+
+        State(OrderStatus status, String driverId, String acceptedAt, String pickedUpAt, String deliveredAt) {
+            this.status = status;
+            this.driverId = driverId;
+            this.acceptedAt = acceptedAt;
+            this.pickedUpAt = pickedUpAt;
+            this.deliveredAt = deliveredAt;
+        }
+
+        State next(OrderStatus status, String driverId) {
+            String now = Instant.now().toString();
+            return new State(status, driverId,
+                    status == OrderStatus.ACCEPTED ? now : acceptedAt,
+                    status == OrderStatus.PICKED_UP ? now : pickedUpAt,
+                    status == OrderStatus.DELIVERED ? now : deliveredAt);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.NearbyDriver;
+import com.portersaathi.model.Order;
+import com.portersaathi.model.OrderOffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proposes available orders to nearby online drivers.
+ *
+ * Matching runs as a periodic pass on a single thread rather than per
+ * order or per ping: every {@code porter.matching-tick-millis} it walks the
+ * available orders oldest first, looks up the nearest free drivers to each
+ * pickup and collects the proposals per driver, so each driver gets one
+ * message per tick however many orders are offered to them. Proposals are
+ * only suggestions; whoever accepts first through the {@link OrderBook}
+ * wins. A driver is never offered the same order twice, so each pass
+ * widens the circle of drivers that have seen a waiting order.
+ */
+@Service
+public class OrderMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderMatcher.class);
+
+    private static final int MAX_OFFERS_PER_DRIVER = 5;
+    private static final int MAX_CANDIDATES = 100;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private OrderBook orderBook;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    private ScheduledExecutorService timer;
+
+    // Only touched by the matching thread
+    private final Map<String, Set<String>> offeredTo = new HashMap<>();
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder offersSent = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-matcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = properties.getMatchingTickMillis();
+        timer.scheduleWithFixedDelay(this::safeTick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    public long getOffersSent() {
+        return offersSent.sum();
+    }
+
+    private void safeTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next tick
+            log.error("Order matching pass failed", e);
+        }
+    }
+
+    /**
+     * One matching pass over the available orders.
+     * @return Proposals per driver; already sent to each driver's offers topic
+     */
+    Map<String, List<OrderOffer>> tick() {
+        ticks.increment();
+        int perOrder = properties.getMatchingOffersPerOrder();
+        Map<String, List<OrderOffer>> batches = new HashMap<>();
+
+        for (Order order : orderBook.available(properties.getMatchingMaxOrdersPerTick())) {
+            if (order.getPickupLat() == null || order.getPickupLng() == null) {
+                continue;
+            }
+            Set<String> seen = offeredTo.computeIfAbsent(order.getId(), id -> new HashSet<>());
+            // Headroom for drivers skipped below, who are usually still pinging as online
+            int wanted = Math.min(MAX_CANDIDATES, 2 * perOrder + seen.size());
+            int offered = 0;
+            for (NearbyDriver driver : locationIndex.nearest(order.getPickupLat(), order.getPickupLng(), wanted)) {
+                if (offered == perOrder) {
+                    break;
+                }
+                String driverId = driver.getDriverId();
+                List<OrderOffer> batch = batches.computeIfAbsent(driverId, id -> new ArrayList<>());
+                if (seen.contains(driverId) || batch.size() >= MAX_OFFERS_PER_DRIVER
+                        || orderBook.activeOrderOf(driverId) != null) {
+                    continue;
+                }
+                batch.add(offer(order, driver));
+                seen.add(driverId);
+                offered++;
+            }
+        }
+        // Forget orders that were taken or cancelled since the last pass
+        offeredTo.keySet().removeIf(orderId -> !orderBook.isAvailable(orderId));
+
+        batches.values().removeIf(List::isEmpty);
+        for (Map.Entry<String, List<OrderOffer>> batch : batches.entrySet()) {
+            messagingTemplate.convertAndSend("/topic/driver/" + batch.getKey() + "/offers", batch.getValue());
+            offersSent.add(batch.getValue().size());
+        }
+        return batches;
+    }
+
+    private static OrderOffer offer(Order order, NearbyDriver driver) {
+        OrderOffer offer = new OrderOffer();
+        offer.setOrderId(order.getId());
+        offer.setPickupAddress(order.getPickupAddress());
+        offer.setDeliveryAddress(order.getDeliveryAddress());
+        offer.setPaymentAmount(order.getPaymentAmount());
+        offer.setDistanceMeters(driver.getDistanceMeters());
+        return offer;
+    }
+}
@@ -0,0 +1,242 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.config.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs REST request handlers according to {@code porter.execution-mode}.
+ *
+ * In "sync" mode the handler runs on the calling Tomcat thread. In "async"
+ * mode it runs on a bounded worker pool and in "virtual" mode on a new
+ * virtual thread; in both the servlet thread is released immediately.
+ * Tomcat itself stays on platform threads: Tomcat 9 handles each socket
+ * inside a synchronized block, which would pin a virtual thread to its
+ * carrier for the whole request. In every mode at most
+ * {@code porter.execution-max-concurrency} handlers run at once; further
+ * requests are rejected rather than queued. Sheddable requests are already
+ * turned away once {@code porter.execution-shed-threshold} of that limit is
+ * in use, which keeps the rest for the queries that matter.
+ *
+ * Urgent handlers have a lane of their own: {@code porter.execution-emergency-reserve}
+ * permits that ordinary requests can never take, and in async mode their own
+ * threads, so they never queue behind ordinary work. When the reserve is
+ * used up they borrow an ordinary permit, and when there is none of those
+ * either they still run: an emergency is never turned away.
+ */
+@Component
+public class QueryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryExecutor.class);
+
+    // Shared and without a stack trace: filling one in would cost more than the refusal itself
+    private static final RejectedExecutionException SHED = refusal("Shedding load");
+    private static final RejectedExecutionException AT_LIMIT = refusal("Too many requests in flight");
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private Semaphore permits;
+    private Semaphore reserved;
+    private int shedBelow; // sheddable requests need more free permits than this
+    private ExecutorService workers; // null in sync mode
+    private ExecutorService urgentWorkers; // null in sync mode
+    private LongAdder rejections;
+    private LongAdder shed;
+    private LongAdder urgentReserved;
+    private LongAdder urgentShared;
+    private LongAdder urgentOverflow;
+
+    @PostConstruct
+    public void start() {
+        String mode = properties.getExecutionMode();
+        int maxConcurrency = Math.max(1, properties.getExecutionMaxConcurrency());
+        permits = new Semaphore(maxConcurrency);
+        reserved = new Semaphore(Math.max(0, properties.getExecutionEmergencyReserve()));
+        shedBelow = (int) Math.round(maxConcurrency * (1 - properties.getExecutionShedThreshold()));
+        rejections = metrics.counter("porter_query_rejected_total", "Queries turned away at the concurrency limit");
+        shed = metrics.counter("porter_query_shed_total", "Sheddable queries turned away above the shed threshold");
+        String urgentHelp = "Urgent requests by the lane they ran in";
+        urgentReserved = metrics.counter("porter_urgent_requests_total", urgentHelp, "lane", "reserved");
+        urgentShared = metrics.counter("porter_urgent_requests_total", urgentHelp, "lane", "shared");
+        urgentOverflow = metrics.counter("porter_urgent_requests_total", urgentHelp, "lane", "overflow");
+        metrics.gauge("porter_query_in_flight", "Queries currently holding an execution permit", this::getInFlight);
+        if ("virtual".equalsIgnoreCase(mode)) {
+            workers = VirtualThreads.newPerTaskExecutor();
+            if (workers == null) {
+                log.warn("porter.execution-mode=virtual needs a Java 21+ runtime; using the async worker pool");
+            }
+        }
+        if (workers == null && ("async".equalsIgnoreCase(mode) || "virtual".equalsIgnoreCase(mode))) {
+            int threads = Math.max(1, properties.getExecutionThreads());
+            workers = newPool(threads, "query-worker-");
+            urgentWorkers = newPool(Math.max(1, properties.getExecutionEmergencyReserve()), "urgent-worker-");
+        } else if (workers != null) {
+            urgentWorkers = workers; // a virtual thread per task never queues
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdown();
+            urgentWorkers.shutdown();
+        }
+    }
+
+    /**
+     * Runs a handler within the concurrency limit.
+     * @return The handler's result; fails with RejectedExecutionException if the limit is reached
+     */
+    public <T> CompletableFuture<T> execute(Supplier<T> handler) {
+        return execute(handler, false);
+    }
+
+    /**
+     * Runs a handler within the concurrency limit.
+     * @param sheddable Whether the request may already be turned away above the shed threshold
+     * @return The handler's result; fails with RejectedExecutionException if the request is not admitted
+     */
+    public <T> CompletableFuture<T> execute(Supplier<T> handler, boolean sheddable) {
+        RejectedExecutionException refusal = admit(sheddable);
+        if (refusal != null) {
+            return rejected(refusal);
+        }
+        return run(handler, permits, workers);
+    }
+
+    /**
+     * Runs a handler that does its work asynchronously, such as a streamed
+     * batch, within the concurrency limit. The handler is started on the
+     * calling thread, and its permit is held until the future it returns completes.
+     * @param sheddable Whether the request may already be turned away above the shed threshold
+     * @return The handler's future; fails with RejectedExecutionException if the request is not admitted
+     *         or the handler refuses it the same way; any other exception from the handler is thrown
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> handler, boolean sheddable) {
+        RejectedExecutionException refusal = admit(sheddable);
+        if (refusal != null) {
+            return rejected(refusal);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = handler.get();
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return rejected(e);
+        } catch (RuntimeException e) {
+            // A failing handler is not a refusal; the caller sees its exception
+            permits.release();
+            throw e;
+        }
+        return result.whenComplete((done, error) -> permits.release());
+    }
+
+    /**
+     * Runs a handler that must never be turned away, such as an emergency.
+     */
+    public <T> CompletableFuture<T> executeUrgent(Supplier<T> handler) {
+        if (reserved.tryAcquire()) {
+            urgentReserved.increment();
+            return run(handler, reserved, urgentWorkers);
+        }
+        if (permits.tryAcquire()) {
+            urgentShared.increment();
+            return run(handler, permits, urgentWorkers);
+        }
+        urgentOverflow.increment();
+        return run(handler, null, urgentWorkers);
+    }
+
+    public int getInFlight() {
+        return properties.getExecutionMaxConcurrency() - permits.availablePermits();
+    }
+
+    // Takes an ordinary permit; returns why not if the request is turned away
+    private RejectedExecutionException admit(boolean sheddable) {
+        if (sheddable && permits.availablePermits() <= shedBelow) {
+            shed.increment();
+            return SHED;
+        }
+        if (!permits.tryAcquire()) {
+            rejections.increment();
+            return AT_LIMIT;
+        }
+        return null;
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<T> handler, Semaphore heldPermit, ExecutorService lane) {
+        Supplier<T> task = () -> {
+            try {
+                return handler.get();
+            } finally {
+                if (heldPermit != null) {
+                    heldPermit.release();
+                }
+            }
+        };
+        if (lane != null) {
+            try {
+                return CompletableFuture.supplyAsync(task, lane);
+            } catch (RuntimeException e) {
+                // The task never ran, so it never released the permit; a pool shutting down refuses it
+                if (heldPermit != null) {
+                    heldPermit.release();
+                }
+                if (e instanceof RejectedExecutionException) {
+                    return rejected((RejectedExecutionException) e);
+                }
+                throw e;
+            }
+        }
+        try {
+            return CompletableFuture.completedFuture(task.get());
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static <T> CompletableFuture<T> rejected(RejectedExecutionException reason) {
+        CompletableFuture<T> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(reason);
+        return rejected;
+    }
+
+    private static RejectedExecutionException refusal(String reason) {
+        RejectedExecutionException refusal = new RejectedExecutionException(reason);
+        refusal.setStackTrace(new StackTraceElement[0]);
+        return refusal;
+    }
+
+    private static ExecutorService newPool(int threads, String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,192 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Brings a query into the form intent keywords are compiled in, so
+ * "कितना कमाया", "Kitna kamaaya" and "kitna kamaya" all route the same way.
+ *
+ * Non-ASCII text is decomposed (NFKD), accents on Latin letters are
+ * dropped and Devanagari is romanized by {@link Transliterator}. Then
+ * common spelling variants are folded: lower case, "ee" to "i", "oo" to
+ * "u", "w" to "v", "q" to "k", "ph" to "f" and doubled letters to one, so
+ * "kamaaya" and "kamaya" meet. Keywords go through the same steps, which
+ * keeps both sides consistent.
+ *
+ * Results are cached by raw query text in two generations of
+ * {@code porter.normalizer-cache-size / 2} entries each: when the young
+ * generation fills up it becomes the old one and the previous old one is
+ * dropped, and a hit in the old generation is copied back. Frequent
+ * utterances therefore stay cached at the cost of one map lookup, and
+ * memory stays bounded without tracking recency per entry.
+ */
+@Component
+public class QueryNormalizer {
+
+    // Longer texts are not worth caching: they are rarely repeated verbatim
+    private static final int MAX_CACHED_LENGTH = 256;
+
+    private static final Normalized EMPTY = new Normalized("", false);
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private volatile ConcurrentHashMap<String, Normalized> young = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, Normalized> old = new ConcurrentHashMap<>();
+    private int generationSize;
+
+    private LongAdder hits;
+    private LongAdder misses;
+
+    /**
+     * A normalized query.
+     */
+    public static final class Normalized {
+        private final String text;
+        private final boolean devanagari;
+
+        Normalized(String text, boolean devanagari) {
+            this.text = text;
+            this.devanagari = devanagari;
+        }
+
+        /**
+         * @return The folded Latin text to match keywords against
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return Whether the query was written in Devanagari
+         */
+        public boolean isDevanagari() {
+            return devanagari;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        generationSize = Math.max(1, properties.getNormalizerCacheSize() / 2);
+        hits = metrics.counter("porter_normalizer_cache_hits_total", "Queries whose normalized form was cached");
+        misses = metrics.counter("porter_normalizer_cache_misses_total", "Queries normalized from scratch");
+    }
+
+    /**
+     * @return The normalized query, from the cache if it was seen recently
+     */
+    public Normalized normalize(String query) {
+        if (query == null || query.isEmpty()) {
+            return EMPTY;
+        }
+        Normalized cached = young.get(query);
+        if (cached == null) {
+            cached = old.get(query);
+            if (cached != null) {
+                remember(query, cached);
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        Normalized normalized = compute(query);
+        if (query.length() <= MAX_CACHED_LENGTH) {
+            remember(query, normalized);
+        }
+        return normalized;
+    }
+
+    /**
+     * Normalizes text without the cache, for compiling keywords.
+     */
+    public static String normalizeText(String text) {
+        return compute(text).getText();
+    }
+
+    private void remember(String query, Normalized normalized) {
+        ConcurrentHashMap<String, Normalized> current = young;
+        current.put(query, normalized);
+        if (current.size() > generationSize) {
+            synchronized (this) {
+                if (young == current) {
+                    old = current;
+                    young = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+    private static Normalized compute(String query) {
+        boolean ascii = true;
+        boolean devanagari = false;
+        for (int i = 0; i < query.length(); i++) {
+            char ch = query.charAt(i);
+            if (ch >= 0x80) {
+                ascii = false;
+                devanagari |= Transliterator.isDevanagari(ch);
+            }
+        }
+        if (ascii) {
+            return new Normalized(fold(query), false);
+        }
+        String decomposed = Normalizer.normalize(query, Normalizer.Form.NFKD);
+        return new Normalized(fold(Transliterator.toLatin(stripLatinAccents(decomposed))), devanagari);
+    }
+
+    // Combining marks after a Latin letter are accents; after Devanagari they are vowel signs and must stay
+    private static String stripLatinAccents(String decomposed) {
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean afterLatin = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) == Character.NON_SPACING_MARK && afterLatin) {
+                continue;
+            }
+            afterLatin = ch < 0x250 && Character.isLetter(ch);
+            out.append(ch);
+        }
+        return out.toString();
+    }
+
+    private static String fold(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = Character.toLowerCase(text.charAt(i));
+            char next = i + 1 < length ? Character.toLowerCase(text.charAt(i + 1)) : 0;
+            if (ch == 'w') {
+                ch = 'v';
+            } else if (ch == 'q') {
+                ch = 'k';
+            } else if (ch == 'e' && next == 'e') {
+                ch = 'i';
+                i++;
+            } else if (ch == 'o' && next == 'o') {
+                ch = 'u';
+                i++;
+            } else if (ch == 'p' && next == 'h') {
+                ch = 'f';
+                i++;
+            }
+            int last = out.length() - 1;
+            if (last >= 0 && out.charAt(last) == ch && Character.isLetter(ch)) {
+                continue;
+            }
+            out.append(ch);
+        }
+        return out.toString();
+    }
+}
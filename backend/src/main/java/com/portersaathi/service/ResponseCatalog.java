@@ -0,0 +1,186 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.AssistantResponse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Pre-rendered response texts, compiled text templates and suggestion maps,
+ * keyed by response key and language. Everything is built once at startup
+ * and shared read-only between requests, so a static answer costs one
+ * AssistantResponse allocation.
+ */
+public final class ResponseCatalog {
+
+    private final String defaultLanguage;
+    private final Map<String, Map<String, Entry>> entries = new HashMap<>();
+    private final Map<String, Map<String, TextTemplate>> templates = new HashMap<>();
+    private final Set<String> languages = new HashSet<>();
+
+    public ResponseCatalog(String defaultLanguage) {
+        this.defaultLanguage = defaultLanguage;
+    }
+
+    /**
+     * Registers a response.
+     * @param key Response key, usually the intent it answers
+     * @param language Language code of the text
+     * @param text Response text, or null if the handler renders it dynamically
+     * @param suggestions Follow-up suggestions in display order
+     */
+    public void register(String key, String language, String text, Map<String, String> suggestions) {
+        Map<String, String> frozen = suggestions == null || suggestions.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(suggestions));
+        entries.computeIfAbsent(key, k -> new HashMap<>()).put(language, new Entry(text, frozen));
+        languages.add(language);
+    }
+
+    public void register(String key, String language, String text) {
+        register(key, language, text, null);
+    }
+
+    /**
+     * Registers a step-by-step guide whose steps become "step_N" suggestions.
+     */
+    public void registerGuide(String key, String language, String intro, List<String> steps) {
+        Map<String, String> suggestions = new LinkedHashMap<>();
+        for (int i = 0; i < steps.size(); i++) {
+            suggestions.put("step_" + (i + 1), "Step " + (i + 1) + ": " + steps.get(i));
+        }
+        register(key, language, intro, suggestions);
+    }
+
+    /**
+     * Registers a dynamic text pattern with "{}" placeholders.
+     */
+    public void registerTemplate(String key, String language, String pattern) {
+        templates.computeIfAbsent(key, k -> new HashMap<>()).put(language, TextTemplate.compile(pattern));
+    }
+
+    /**
+     * @return The compiled template, falling back to the default language
+     */
+    public TextTemplate template(String key, String language) {
+        Map<String, TextTemplate> byLanguage = templates.get(key);
+        if (byLanguage == null) {
+            throw new IllegalArgumentException("Unknown template key: " + key);
+        }
+        TextTemplate template = language == null ? null : byLanguage.get(language);
+        return template != null ? template : byLanguage.get(defaultLanguage);
+    }
+
+    /**
+     * Builds a response from the registered text and suggestions.
+     */
+    public AssistantResponse respond(String key, String language) {
+        Entry entry = lookup(key, language);
+        return newResponse(entry.text, entry.suggestions);
+    }
+
+    /**
+     * Builds a response with dynamic text and the registered suggestions, if any.
+     */
+    public AssistantResponse respond(String key, String language, String text) {
+        Map<String, String> suggestions = entries.containsKey(key)
+                ? lookup(key, language).suggestions
+                : Collections.<String, String>emptyMap();
+        return newResponse(text, suggestions);
+    }
+
+    /**
+     * Matches a requested language, such as "en" or "hi-IN", against the
+     * registered ones.
+     * @return The registered language code, or null if there is none for it
+     */
+    public String supportedLanguage(String requested) {
+        if (requested == null || requested.isEmpty()) {
+            return null;
+        }
+        String language = requested.toLowerCase(Locale.ROOT);
+        int subtag = language.indexOf('-') >= 0 ? language.indexOf('-') : language.indexOf('_');
+        if (subtag > 0) {
+            language = language.substring(0, subtag);
+        }
+        return languages.contains(language) ? language : null;
+    }
+
+    /**
+     * Visits every registered text with its language code.
+     */
+    public void forEachText(BiConsumer<String, String> visitor) {
+        for (Map<String, Entry> byLanguage : entries.values()) {
+            for (Map.Entry<String, Entry> entry : byLanguage.entrySet()) {
+                if (entry.getValue().text != null) {
+                    visitor.accept(entry.getKey(), entry.getValue().text);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits every registered suggestions map, the instances responses carry.
+     */
+    public void forEachSuggestions(Consumer<Map<String, String>> visitor) {
+        for (Map<String, Entry> byLanguage : entries.values()) {
+            for (Entry entry : byLanguage.values()) {
+                visitor.accept(entry.suggestions);
+            }
+        }
+    }
+
+    public String text(String key, String language) {
+        return lookup(key, language).text;
+    }
+
+    /**
+     * @return Step N, counted from 1, of a guide registered with
+     *         {@link #registerGuide}, or null past its last step
+     */
+    public String guideStep(String key, String language, int step) {
+        return lookup(key, language).suggestions.get("step_" + step);
+    }
+
+    // Falls back to the default language when a translation is missing
+    private Entry lookup(String key, String language) {
+        Map<String, Entry> byLanguage = entries.get(key);
+        if (byLanguage == null) {
+            throw new IllegalArgumentException("Unknown response key: " + key);
+        }
+        Entry entry = language == null ? null : byLanguage.get(language);
+        if (entry == null) {
+            entry = byLanguage.get(defaultLanguage);
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("No " + defaultLanguage + " text for response key: " + key);
+        }
+        return entry;
+    }
+
+    private static AssistantResponse newResponse(String text, Map<String, String> suggestions) {
+        AssistantResponse response = new AssistantResponse();
+        response.setResponse(text);
+        response.setType("text");
+        response.setSuggestions(suggestions);
+        return response;
+    }
+
+    private static final class Entry {
+        final String text;
+        final Map<String, String> suggestions;
+
+        Entry(String text, Map<String, String> suggestions) {
+            this.text = text;
+            this.suggestions = suggestions;
+        }
+    }
+}
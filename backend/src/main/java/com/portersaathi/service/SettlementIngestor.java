@@ -0,0 +1,514 @@
+package com.portersaathi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.SettlementReport;
+import com.portersaathi.model.TripSettlement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams per-trip settlement rows into drivers' daily earnings.
+ *
+ * The input is read from a channel in fixed-size chunks and split into
+ * lines as it arrives, so a file of any size needs only the read buffer and
+ * the rows in flight. Rows are routed by driver to
+ * {@code porter.ingest-threads} partitions, each with a bounded queue of
+ * batches and one worker: rows of a driver are always applied in order by
+ * the same worker, and workers never contend for a driver. When a queue is
+ * full the reader waits, which stops reading from the channel and, over
+ * HTTP, lets TCP flow control slow the sender down.
+ *
+ * A worker folds the rows of a batch into one delta per driver and day and
+ * merges the deltas with {@link DriverStore#mergeEarnings}, as a single
+ * journal write. Workers are limited in number and the journal commits
+ * their writes in groups, so queries keep being answered during an import.
+ *
+ * Imports are not idempotent: a file imported twice counts its amounts twice.
+ */
+@Service
+public class SettlementIngestor {
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final long OFFER_MILLIS = 100;
+
+    // Marks the end of a partition's input; compared by identity
+    private static final List<TripSettlement> END = Collections.unmodifiableList(new ArrayList<>());
+
+    /**
+     * Supported input formats.
+     */
+    public enum Format {
+        /** One JSON object per line, with the fields of {@link TripSettlement} */
+        NDJSON,
+        /** A header line naming the columns, then one row per line */
+        CSV;
+
+        /**
+         * @param name A format name or a content type, such as "csv" or "text/csv"
+         * @return The format, or null if it is not supported
+         */
+        public static Format of(String name) {
+            if (name == null) {
+                return null;
+            }
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.contains("csv")) {
+                return CSV;
+            }
+            if (lower.contains("ndjson") || lower.contains("json")) {
+                return NDJSON;
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private DriverStore driverStore;
+
+    @Autowired
+    private EarningsPublisher earningsPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private ObjectReader settlementReader;
+    private ExecutorService workers;
+    private Semaphore imports;
+    private int partitions;
+
+    private LongAdder acceptedRows;
+    private LongAdder rejectedRows;
+    private LatencyHistogram importLatency;
+
+    @PostConstruct
+    public void start() {
+        settlementReader = objectMapper.readerFor(TripSettlement.class);
+        partitions = properties.getIngestThreads() > 0
+                ? properties.getIngestThreads() : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int concurrentImports = Math.max(1, properties.getIngestMaxConcurrent());
+        imports = new Semaphore(concurrentImports);
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(partitions * concurrentImports, runnable -> {
+            Thread thread = new Thread(runnable, "settlement-ingest-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        acceptedRows = metrics.counter("porter_settlement_rows_total", "Settlement rows read, by outcome", "result", "accepted");
+        rejectedRows = metrics.counter("porter_settlement_rows_total", "Settlement rows read, by outcome", "result", "rejected");
+        importLatency = metrics.histogram("porter_settlement_import_seconds", "Duration of settlement imports");
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Imports settlement rows until the channel is exhausted. Rows that do
+     * not parse or name an unknown driver are skipped and reported; the
+     * rest are durable once this returns.
+     * @throws RejectedExecutionException If porter.ingest-max-concurrent imports are already running
+     * @throws IOException If reading the channel fails; rows merged until then stay merged
+     */
+    public SettlementReport ingest(ReadableByteChannel channel, Format format) throws IOException {
+        if (!imports.tryAcquire()) {
+            throw new RejectedExecutionException("Too many settlement imports running");
+        }
+        long start = System.nanoTime();
+        try {
+            SettlementReport report = new Import(format).run(channel);
+            report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return report;
+        } finally {
+            importLatency.recordNanos(System.nanoTime() - start);
+            imports.release();
+        }
+    }
+
+    /**
+     * State of one import: the reader's partition batches and the workers draining them.
+     */
+    private final class Import {
+        private final Format format;
+        private final SettlementReport report = new SettlementReport();
+        private final List<BlockingQueue<List<TripSettlement>>> queues = new ArrayList<>(partitions);
+        private final List<List<TripSettlement>> batches = new ArrayList<>(partitions);
+        private final List<Future<?>> drains = new ArrayList<>(partitions);
+        private final AtomicLong driverDays = new AtomicLong();
+        private final int batchSize = Math.max(1, properties.getIngestBatchSize());
+        private volatile RuntimeException failure;
+
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private boolean lineTooLong;
+        private long lineNumber;
+        private Map<String, Integer> columns; // CSV column positions, from the header
+
+        Import(Format format) {
+            this.format = format;
+            report.setFormat(format.name().toLowerCase(Locale.ROOT));
+        }
+
+        SettlementReport run(ReadableByteChannel channel) throws IOException {
+            for (int p = 0; p < partitions; p++) {
+                BlockingQueue<List<TripSettlement>> queue =
+                        new ArrayBlockingQueue<>(Math.max(1, properties.getIngestQueueBatches()));
+                queues.add(queue);
+                batches.add(new ArrayList<>(batchSize));
+                drains.add(workers.submit(() -> {
+                    drain(queue);
+                    return null;
+                }));
+            }
+            try {
+                read(channel);
+                for (int p = 0; p < partitions; p++) {
+                    if (!batches.get(p).isEmpty()) {
+                        enqueue(p, batches.get(p));
+                    }
+                }
+            } finally {
+                // Workers drain until END even after a failure, so these puts cannot block for long
+                for (BlockingQueue<List<TripSettlement>> queue : queues) {
+                    end(queue);
+                }
+                awaitDrains();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            report.setDriverDays(driverDays.get());
+            return report;
+        }
+
+        private void read(ReadableByteChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            byte[] bytes = buffer.array();
+            while (channel.read(buffer) >= 0) {
+                int end = buffer.position();
+                for (int i = 0; i < end; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n') {
+                        endLine();
+                    } else if (lineLength < MAX_LINE_BYTES) {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, Math.min(MAX_LINE_BYTES, line.length * 2));
+                        }
+                        line[lineLength++] = b;
+                    } else {
+                        lineTooLong = true;
+                    }
+                }
+                buffer.clear();
+            }
+            endLine();
+        }
+
+        private void endLine() throws IOException {
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            boolean tooLong = lineTooLong;
+            lineLength = 0;
+            lineTooLong = false;
+            if (length == 0 && !tooLong) {
+                return;
+            }
+            lineNumber++;
+            report.setLines(lineNumber);
+            if (tooLong) {
+                reject("line longer than " + MAX_LINE_BYTES + " bytes");
+                return;
+            }
+
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            if (format == Format.CSV && columns == null) {
+                columns = parseHeader(text);
+                return;
+            }
+            TripSettlement row;
+            try {
+                row = format == Format.CSV ? parseCsv(text) : settlementReader.readValue(text);
+            } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+                reject("malformed row: " + firstLine(e.getMessage()));
+                return;
+            }
+            String problem = validate(row);
+            if (problem != null) {
+                reject(problem);
+                return;
+            }
+            route(row);
+        }
+
+        private void route(TripSettlement row) throws IOException {
+            int partition = Math.floorMod(row.getDriverId().hashCode(), partitions);
+            List<TripSettlement> batch = batches.get(partition);
+            batch.add(row);
+            report.setAccepted(report.getAccepted() + 1);
+            acceptedRows.increment();
+            if (batch.size() >= batchSize) {
+                enqueue(partition, batch);
+                batches.set(partition, new ArrayList<>(batchSize));
+            }
+        }
+
+        // Blocks while the partition's queue is full; this is the backpressure on the reader
+        private void enqueue(int partition, List<TripSettlement> batch) throws IOException {
+            BlockingQueue<List<TripSettlement>> queue = queues.get(partition);
+            try {
+                while (!queue.offer(batch, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Settlement import interrupted");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void drain(BlockingQueue<List<TripSettlement>> queue) throws InterruptedException {
+            while (true) {
+                List<TripSettlement> batch = queue.take();
+                if (batch == END) {
+                    return;
+                }
+                if (failure != null) {
+                    continue; // keep draining so the reader never blocks on a dead partition
+                }
+                try {
+                    apply(batch);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } catch (Error e) {
+                    // Ending the worker here would leave the reader blocked on this partition's queue
+                    failure = new IllegalStateException("Settlement worker failed", e);
+                }
+            }
+        }
+
+        private void apply(List<TripSettlement> batch) {
+            Map<String, Map<LocalDate, DailyEarnings>> deltas = new HashMap<>();
+            for (TripSettlement row : batch) {
+                DailyEarnings delta = deltas.computeIfAbsent(row.getDriverId(), id -> new HashMap<>())
+                        .computeIfAbsent(row.getDate(), date -> new DailyEarnings());
+                delta.setTotalEarnings(delta.getTotalEarnings() + row.getFare());
+                delta.setExpenses(delta.getExpenses() + row.getExpenses());
+                delta.setNetEarnings(delta.getNetEarnings() + row.getFare() - row.getExpenses());
+                delta.setCompletedTrips(delta.getCompletedTrips() + row.getTrips());
+                if (row.getPenaltyReason() != null) {
+                    delta.getPenalties().put(noteId(row.getPenaltyId(), row), row.getPenaltyReason());
+                }
+                if (row.getRewardReason() != null) {
+                    delta.getRewards().put(noteId(row.getRewardId(), row), row.getRewardReason());
+                }
+            }
+            for (String driverId : driverStore.mergeEarnings(deltas)) {
+                Map<LocalDate, DailyEarnings> days = deltas.get(driverId);
+                driverDays.addAndGet(days.size());
+                for (LocalDate date : days.keySet()) {
+                    earningsPublisher.earningsChanged(driverId, date);
+                }
+            }
+        }
+
+        private void awaitDrains() throws InterruptedIOException {
+            for (Future<?> drain : drains) {
+                try {
+                    drain.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Settlement import interrupted");
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Settlement worker failed", e.getCause());
+                    }
+                }
+            }
+        }
+
+        private void reject(String reason) {
+            report.setRejected(report.getRejected() + 1);
+            rejectedRows.increment();
+            if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+                report.getErrors().add("line " + lineNumber + ": " + reason);
+            }
+        }
+
+        private String validate(TripSettlement row) {
+            if (row.getDriverId() == null || row.getDriverId().isEmpty()) {
+                return "missing driverId";
+            }
+            if (row.getDate() == null) {
+                return "missing date";
+            }
+            if (!EarningsStore.isRecordable(row.getDate())) {
+                return "date out of range";
+            }
+            if (!Double.isFinite(row.getFare()) || !Double.isFinite(row.getExpenses()) || row.getTrips() < 0) {
+                return "invalid amounts";
+            }
+            if (driverStore.get(row.getDriverId()) == null) {
+                return "unknown driver " + row.getDriverId();
+            }
+            return null;
+        }
+
+        private Map<String, Integer> parseHeader(String header) {
+            Map<String, Integer> positions = new HashMap<>();
+            List<String> names = splitCsv(header);
+            for (int i = 0; i < names.size(); i++) {
+                positions.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            return positions;
+        }
+
+        private TripSettlement parseCsv(String text) {
+            List<String> fields = splitCsv(text);
+            TripSettlement row = new TripSettlement();
+            row.setDriverId(field(fields, "driverid"));
+            String date = field(fields, "date");
+            row.setDate(date == null ? null : LocalDate.parse(date));
+            row.setTripId(field(fields, "tripid"));
+            row.setFare(number(field(fields, "fare")));
+            row.setExpenses(number(field(fields, "expenses")));
+            String trips = field(fields, "trips");
+            if (trips != null) {
+                row.setTrips(Integer.parseInt(trips));
+            }
+            row.setPenaltyId(field(fields, "penaltyid"));
+            row.setPenaltyReason(field(fields, "penaltyreason"));
+            row.setRewardId(field(fields, "rewardid"));
+            row.setRewardReason(field(fields, "rewardreason"));
+            return row;
+        }
+
+        // Empty and missing columns read as null
+        private String field(List<String> fields, String column) {
+            Integer position = columns.get(column);
+            if (position == null || position >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(position).trim();
+            return value.isEmpty() ? null : value;
+        }
+    }
+
+    // Parser messages go on to describe the source; the first line says what was wrong
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "unreadable";
+        }
+        int end = message.indexOf('\n');
+        return end < 0 ? message : message.substring(0, end);
+    }
+
+    private static double number(String value) {
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    // Penalties and rewards without their own ID are keyed by trip, or else by day, so the same note is kept once a day.
+    // Amounts are not keyed: importing a file again adds its fares, expenses and trips again.
+    private static String noteId(String id, TripSettlement row) {
+        if (id != null) {
+            return id;
+        }
+        return row.getTripId() != null ? row.getTripId() : row.getDriverId() + "/" + row.getDate();
+    }
+
+    /**
+     * Splits a CSV line; fields may be quoted, with "" for a quote inside.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Waits for room even if interrupted, unless the workers are gone because the application is stopping
+    private void end(BlockingQueue<List<TripSettlement>> queue) {
+        boolean interrupted = false;
+        while (!workers.isShutdown()) {
+            try {
+                if (queue.offer(END, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.portersaathi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response text with "{}" placeholders, split into literal segments once at
+ * startup. Rendering appends segments and values into a per-thread buffer
+ * that is reused across requests, so the only allocation is the final String.
+ *
+ * Usage: {@code template.writer().integer(trips).money(total).toString()}.
+ * Values must be written in placeholder order.
+ */
+public final class TextTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+    private static final long[] POWERS_OF_TEN = {1, 10, 100};
+
+    private final String[] literals;
+    private final ThreadLocal<Writer> writers = ThreadLocal.withInitial(Writer::new);
+
+    private TextTemplate(String[] literals) {
+        this.literals = literals;
+    }
+
+    public static TextTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        int start = 0;
+        int next;
+        while ((next = pattern.indexOf(PLACEHOLDER, start)) >= 0) {
+            literals.add(pattern.substring(start, next));
+            start = next + PLACEHOLDER.length();
+        }
+        literals.add(pattern.substring(start));
+        return new TextTemplate(literals.toArray(new String[0]));
+    }
+
+    /**
+     * @return This thread's writer, reset and ready for the first placeholder
+     */
+    public Writer writer() {
+        Writer writer = writers.get();
+        writer.reset();
+        return writer;
+    }
+
+    public int getPlaceholderCount() {
+        return literals.length - 1;
+    }
+
+    /**
+     * Appends a value with a fixed number of decimals, like {@code %.2f} but
+     * without the Formatter machinery.
+     */
+    static void appendFixed(StringBuilder buffer, double value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= Long.MAX_VALUE / scale) {
+            buffer.append(String.format("%." + decimals + "f", value));
+            return;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            buffer.append('-');
+        }
+        buffer.append(scaled / scale);
+        if (decimals > 0) {
+            buffer.append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                buffer.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+    }
+
+    public final class Writer {
+        private final StringBuilder buffer = new StringBuilder(256);
+        private int next;
+
+        private void reset() {
+            buffer.setLength(0);
+            next = 0;
+        }
+
+        private StringBuilder slot() {
+            if (next >= literals.length - 1) {
+                throw new IllegalStateException("Template has only " + (literals.length - 1) + " placeholders");
+            }
+            return buffer.append(literals[next++]);
+        }
+
+        public Writer integer(long value) {
+            slot().append(value);
+            return this;
+        }
+
+        /**
+         * Writes a rupee amount with two decimals.
+         */
+        public Writer money(double value) {
+            appendFixed(slot(), value, 2);
+            return this;
+        }
+
+        /**
+         * Writes a percentage with two decimals.
+         */
+        public Writer percent(double value) {
+            appendFixed(slot(), value, 2);
+            return this;
+        }
+
+        /**
+         * Writes a number with one decimal, e.g. trips per day.
+         */
+        public Writer decimal(double value) {
+            appendFixed(slot(), value, 1);
+            return this;
+        }
+
+        public Writer text(CharSequence value) {
+            slot().append(value);
+            return this;
+        }
+
+        /**
+         * Appends the remaining literal segments and returns the rendered text.
+         */
+        @Override
+        public String toString() {
+            while (next < literals.length) {
+                buffer.append(literals[next++]);
+            }
+            return buffer.toString();
+        }
+    }
+}
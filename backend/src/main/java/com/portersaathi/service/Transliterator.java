@@ -0,0 +1,160 @@
+package com.portersaathi.service;
+
+/**
+ * Romanizes Devanagari the way drivers type Hindi in Latin letters:
+ * "कितना कमाया" becomes "kitnaa kamaayaa", which variant folding then
+ * reduces to the Hinglish "kitna kamaya".
+ *
+ * Each consonant carries the inherent vowel 'a' unless a vowel sign or
+ * virama replaces it. Hindi drops that vowel at the end of a word and
+ * between a vowel and a following consonant-vowel pair, so "कितना" is
+ * "kitnaa" rather than "kitanaa"; the same schwa deletion is applied from
+ * the end of each word. Expects NFD or NFKD input, where nukta forms such
+ * as "ज़" are a consonant followed by U+093C. Text outside Devanagari is
+ * copied unchanged.
+ */
+final class Transliterator {
+
+    private static final char BASE = 'ऀ';
+    private static final char NUKTA = '़';
+    private static final char VIRAMA = '्';
+    private static final char CHANDRABINDU = 'ँ';
+    private static final char ANUSVARA = 'ं';
+    private static final char VISARGA = 'ः';
+
+    private static final String[] CONSONANTS = new String[128];
+    private static final String[] VOWEL_SIGNS = new String[128];
+    private static final String[] VOWELS = new String[128];
+
+    // Vowel of a unit: its inherent 'a', none (virama or deleted), or a vowel sign.
+    // Compared by identity: table entries are never these instances
+    private static final String INHERENT = "a";
+    private static final String NONE = "";
+
+    static {
+        String consonants = "क k|ख kh|ग g|घ gh|ङ n|च ch|छ chh|ज j|झ jh|ञ n|ट t|ठ th|ड d|ढ dh|ण n|"
+                + "त t|थ th|द d|ध dh|न n|प p|फ ph|ब b|भ bh|म m|य y|र r|ल l|ळ l|व v|श sh|ष sh|स s|ह h";
+        String vowelSigns = "ा aa|ि i|ी ii|ु u|ू uu|ृ ri|ॅ e|ॆ e|े e|ै ai|ॉ o|ॊ o|ो o|ौ au";
+        String vowels = "अ a|आ aa|इ i|ई ii|उ u|ऊ uu|ऋ ri|ऍ e|ए e|ऐ ai|ऑ o|ओ o|औ au";
+        fill(CONSONANTS, consonants);
+        fill(VOWEL_SIGNS, vowelSigns);
+        fill(VOWELS, vowels);
+    }
+
+    private Transliterator() {
+    }
+
+    static boolean isDevanagari(char ch) {
+        return ch >= BASE && ch < BASE + 128;
+    }
+
+    /**
+     * @return The text with every Devanagari word romanized
+     */
+    static String toLatin(CharSequence text) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (!isDevanagari(ch)) {
+                out.append(ch);
+                i++;
+            } else if (ch == '।' || ch == '॥') { // danda, double danda
+                out.append('.');
+                i++;
+            } else if (ch >= '०' && ch <= '९') {
+                out.append((char) ('0' + ch - '०'));
+                i++;
+            } else {
+                int end = i;
+                while (end < length && isWordChar(text.charAt(end))) {
+                    end++;
+                }
+                word(text, i, end, out);
+                i = end;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isWordChar(char ch) {
+        return isDevanagari(ch) && ch != '।' && ch != '॥' && (ch < '०' || ch > '९');
+    }
+
+    private static void word(CharSequence text, int start, int end, StringBuilder out) {
+        int capacity = end - start;
+        String[] consonant = new String[capacity];
+        String[] vowel = new String[capacity];
+        StringBuilder[] tail = new StringBuilder[capacity];
+        int units = 0;
+
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            int index = ch - BASE;
+            if (CONSONANTS[index] != null) {
+                consonant[units] = CONSONANTS[index];
+                vowel[units++] = INHERENT;
+            } else if (VOWELS[index] != null) {
+                consonant[units] = NONE;
+                vowel[units++] = VOWELS[index];
+            } else if (units == 0) {
+                continue; // a sign with nothing to attach to
+            } else if (VOWEL_SIGNS[index] != null) {
+                vowel[units - 1] = VOWEL_SIGNS[index];
+            } else if (ch == VIRAMA) {
+                vowel[units - 1] = NONE;
+            } else if (ch == NUKTA) {
+                consonant[units - 1] = nukta(consonant[units - 1], text.charAt(i - 1));
+            } else if (ch == ANUSVARA || ch == CHANDRABINDU || ch == VISARGA) {
+                if (tail[units - 1] == null) {
+                    tail[units - 1] = new StringBuilder(1);
+                }
+                tail[units - 1].append(ch == VISARGA ? 'h' : 'n');
+            }
+        }
+
+        // Schwa deletion, right to left, so each decision sees the final form of the next unit
+        for (int u = units - 1; u > 0; u--) {
+            if (vowel[u] != INHERENT || tail[u] != null) {
+                continue;
+            }
+            boolean last = u == units - 1;
+            boolean betweenVowels = !last && vowel[u - 1] != NONE
+                    && consonant[u + 1] != NONE && vowel[u + 1] != NONE;
+            if (last || betweenVowels) {
+                vowel[u] = NONE;
+            }
+        }
+
+        for (int u = 0; u < units; u++) {
+            out.append(consonant[u]).append(vowel[u]);
+            if (tail[u] != null) {
+                out.append(tail[u]);
+            }
+        }
+    }
+
+    private static String nukta(String consonant, char base) {
+        switch (base) {
+            case 'ज':
+                return "z";
+            case 'फ':
+                return "f";
+            case 'ड':
+                return "r";
+            case 'ढ':
+                return "rh";
+            case 'क':
+                return "q";
+            default:
+                return consonant;
+        }
+    }
+
+    private static void fill(String[] table, String pairs) {
+        for (String pair : pairs.split("\\|")) {
+            table[pair.charAt(0) - BASE] = pair.substring(2);
+        }
+    }
+}
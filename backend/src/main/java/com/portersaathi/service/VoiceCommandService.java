@@ -0,0 +1,167 @@
+package com.portersaathi.service;
+
+import com.portersaathi.model.AssistantRequest;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.model.VoiceCommand;
+import com.portersaathi.model.VoiceResponse;
+import com.portersaathi.speech.SpeechService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Answers streaming voice transcripts for STOMP sessions.
+ *
+ * Interim transcripts are routed as they arrive; as soon as one resolves to
+ * an intent, an early answer is sent so the client can start speaking it
+ * before recognition finishes. Further interim updates only produce a new
+ * answer if the intent changes. The final transcript is always answered.
+ * Early answers are text only and leave the driver's conversation context
+ * and pending reminders for the final one.
+ * Updates that arrive out of order are dropped.
+ *
+ * Each answer takes a token from the driver's rate limit and a permit from
+ * the {@link QueryExecutor}, as a query on /api/query does; emergencies use
+ * the urgent lane instead. A refused early answer is simply not sent, and
+ * a refused final one is answered with a request to try again.
+ */
+@Service
+public class VoiceCommandService {
+
+    private static final String TOO_QUICK = "You are asking too quickly. Please wait a moment and try again.";
+    private static final String BUSY = "Sorry, I'm having trouble processing your request. Please try again.";
+
+    @Autowired
+    private AssistantService assistantService;
+
+    @Autowired
+    private SpeechService speechService;
+
+    @Autowired
+    private DriverRateLimiter rateLimiter;
+
+    @Autowired
+    private QueryExecutor queryExecutor;
+
+    private final Map<String, VoiceSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Processes one transcript update.
+     * @param sessionId The STOMP session that sent it
+     * @param command The transcript update
+     * @return The answer to send back, or null if there is nothing new to say
+     */
+    public VoiceResponse handle(String sessionId, VoiceCommand command) {
+        if (command.getTranscript() == null || command.getTranscript().isEmpty()) {
+            return null;
+        }
+        VoiceSession session = sessions.computeIfAbsent(sessionId, id -> new VoiceSession());
+        Intent intent = assistantService.detectIntent(command.getTranscript());
+
+        synchronized (session) {
+            if (!session.accept(command)) {
+                return null;
+            }
+            if (command.isPartial()) {
+                // Emergencies trigger real alerts and follow-ups move the conversation on,
+                // so both wait for the final transcript
+                if (intent == Intent.UNKNOWN || intent == Intent.EMERGENCY || intent == Intent.FOLLOW_UP
+                        || intent == session.earlyIntent) {
+                    return null;
+                }
+                session.earlyIntent = intent;
+            }
+        }
+
+        AssistantRequest request = new AssistantRequest();
+        request.setDriverId(command.getDriverId());
+        request.setQuery(command.getTranscript());
+        request.setLanguage(command.getLanguage());
+        AssistantResponse answer = answer(request, intent, command.isPartial());
+        if (answer == null) {
+            return null;
+        }
+
+        VoiceResponse response = new VoiceResponse();
+        response.setUtteranceId(command.getUtteranceId());
+        response.setSequence(command.getSequence());
+        response.setPartial(command.isPartial());
+        response.setIntent(intent.name());
+        response.setAnswer(answer);
+        return response;
+    }
+
+    // Under the same per-driver limit and concurrency limit as /api/query; null if a partial answer was refused
+    private AssistantResponse answer(AssistantRequest request, Intent intent, boolean partial) {
+        if (intent == Intent.EMERGENCY) {
+            return queryExecutor.executeUrgent(() -> answer(request, false)).join();
+        }
+        long waitNanos = rateLimiter.tryAcquire(request.getDriverId());
+        if (waitNanos > 0) {
+            return partial ? null : refusal(TOO_QUICK);
+        }
+        try {
+            return queryExecutor.executeAsync(() -> CompletableFuture.completedFuture(answer(request, partial)),
+                    intent.isSheddable()).join();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof RejectedExecutionException)) {
+                throw e;
+            }
+            return partial ? null : refusal(BUSY);
+        }
+    }
+
+    private AssistantResponse answer(AssistantRequest request, boolean partial) {
+        if (partial) {
+            // The client may discard an early answer, so it neither takes the
+            // driver's reminder, moves the conversation on nor starts a render
+            return assistantService.previewQuery(request);
+        }
+        AssistantResponse answer = assistantService.processQuery(request);
+        speechService.attachAudio(answer, answer.getLanguage());
+        return answer;
+    }
+
+    private static AssistantResponse refusal(String text) {
+        AssistantResponse response = new AssistantResponse();
+        response.setResponse(text);
+        response.setType("text");
+        return response;
+    }
+
+    public void endSession(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    private static final class VoiceSession {
+        long utteranceId = -1;
+        long sequence = -1;
+        Intent earlyIntent;
+
+        // Caller holds the session lock
+        boolean accept(VoiceCommand command) {
+            if (command.getUtteranceId() < utteranceId) {
+                return false;
+            }
+            if (command.getUtteranceId() > utteranceId) {
+                utteranceId = command.getUtteranceId();
+                sequence = -1;
+                earlyIntent = null;
+            }
+            if (command.getSequence() <= sequence) {
+                return false;
+            }
+            sequence = command.getSequence();
+            return true;
+        }
+    }
+}
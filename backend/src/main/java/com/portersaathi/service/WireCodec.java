@@ -0,0 +1,147 @@
+package com.portersaathi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.AssistantResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Object mappers for each {@link WireFormat}, configured like Spring Boot's
+ * JSON one, plus the encoded bytes of static answers.
+ *
+ * A static answer is one whose text and suggestions both come straight
+ * from the response catalog; an answer that took a driver's reminder has
+ * its own suggestions and is encoded each time. Its encoding depends only on its field values, of which there
+ * are a few per catalog entry, so it is encoded once per format and served
+ * from a map keyed by the answer's value. At most
+ * {@code porter.wire-cached-responses} are kept per format.
+ */
+@Component
+public class WireCodec {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private final Map<WireFormat, ObjectMapper> mappers = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, ConcurrentHashMap<AssistantResponse, byte[]>> encoded = new EnumMap<>(WireFormat.class);
+
+    // Catalog texts by identity, as in SpeechService: answers reuse the catalog's String instances
+    private volatile Set<String> staticTexts = Collections.emptySet();
+    private volatile Set<Map<String, String>> staticSuggestions = Collections.emptySet();
+
+    private LongAdder hits;
+    private LongAdder misses;
+
+    @PostConstruct
+    public void start() {
+        mappers.put(WireFormat.JSON, objectMapper);
+        mappers.put(WireFormat.CBOR, objectMapperBuilder.factory(new CBORFactory()).build());
+        // Suggestions repeat across answers; shared values let Smile send each once per document
+        mappers.put(WireFormat.SMILE, objectMapperBuilder.factory(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build()).build());
+        for (WireFormat format : WireFormat.values()) {
+            encoded.put(format, new ConcurrentHashMap<>());
+        }
+
+        hits = metrics.counter("porter_wire_static_hits_total", "Static answers served from their cached encoding");
+        misses = metrics.counter("porter_wire_static_misses_total", "Static answers encoded because they were not cached");
+    }
+
+    /**
+     * Registers the catalog's texts and suggestions as static, so answers
+     * carrying both are encoded once.
+     */
+    public void registerStaticTexts(ResponseCatalog catalog) {
+        Set<String> texts = Collections.newSetFromMap(new IdentityHashMap<>());
+        catalog.forEachText((language, text) -> texts.add(text));
+        Set<Map<String, String>> suggestions = Collections.newSetFromMap(new IdentityHashMap<>());
+        catalog.forEachSuggestions(suggestions::add);
+        suggestions.add(Collections.emptyMap());
+        staticTexts = texts;
+        staticSuggestions = suggestions;
+    }
+
+    public ObjectMapper mapper(WireFormat format) {
+        return mappers.get(format);
+    }
+
+    /**
+     * Encodes an answer, from the cache if it is static.
+     * @return The encoded bytes; shared, so not to be modified
+     */
+    public byte[] encode(AssistantResponse response, WireFormat format) throws IOException {
+        if (!staticTexts.contains(response.getResponse()) || !staticSuggestions.contains(response.getSuggestions())) {
+            return mapper(format).writeValueAsBytes(response);
+        }
+        ConcurrentHashMap<AssistantResponse, byte[]> cache = encoded.get(format);
+        byte[] bytes = cache.get(response);
+        if (bytes != null) {
+            hits.increment();
+            return bytes;
+        }
+        misses.increment();
+        bytes = mapper(format).writeValueAsBytes(response);
+        if (cache.size() < properties.getWireCachedResponses()) {
+            // Keyed by a copy, as the caller's answer may still be changed
+            cache.putIfAbsent(copy(response), bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Re-encodes a JSON document token by token, without building a tree.
+     * @return The document in the given format; the input itself for JSON
+     */
+    public byte[] transcode(byte[] json, WireFormat format) throws IOException {
+        if (format == WireFormat.JSON) {
+            return json;
+        }
+        ByteArrayBuilder buffer = new ByteArrayBuilder(json.length);
+        try (JsonParser parser = objectMapper.getFactory().createParser(json);
+             JsonGenerator generator = mapper(format).getFactory().createGenerator(buffer)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static AssistantResponse copy(AssistantResponse response) {
+        AssistantResponse copy = new AssistantResponse();
+        copy.setResponse(response.getResponse());
+        copy.setType(response.getType());
+        copy.setAudioUrl(response.getAudioUrl());
+        copy.setLanguage(response.getLanguage());
+        copy.setSuggestions(response.getSuggestions());
+        return copy;
+    }
+}
@@ -0,0 +1,274 @@
+package com.portersaathi.speech;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Rendered audio on disk, one file per content-hash name, bounded to
+ * {@code porter.audio-cache-max-bytes} by evicting the least recently used
+ * files.
+ *
+ * Files are written to a temporary name and renamed into place, so a name
+ * that exists is always complete, and they survive restarts. Concurrent
+ * requests for the same missing name share one rendering.
+ *
+ * An evicted file leaves the index at once but stays on disk for
+ * {@value #DELETE_DELAY_SECONDS} seconds. Tomcat's sendfile opens a file by
+ * name only after the handler that looked it up has returned; the delay
+ * keeps that name valid in between. Once opened, the file is unlinked
+ * without disturbing the transfer.
+ */
+@Component
+public class AudioCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioCache.class);
+
+    // Hex content hash plus extension; anything else could escape the directory
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{16,64}\\.[a-z0-9]{1,8}");
+
+    static final long DELETE_DELAY_SECONDS = 30;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    private Path directory;
+    private long maxBytes;
+
+    // Name -> file size, in access order; guarded by itself
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> rendering = new ConcurrentHashMap<>();
+
+    private LongAdder hits;
+    private LongAdder misses;
+    private LongAdder evictions;
+    private ScheduledExecutorService deleter;
+
+    /**
+     * Writes audio for one cache entry.
+     */
+    public interface Renderer {
+        void render(SpeechEngine.Sink sink) throws IOException;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        directory = Paths.get(properties.getAudioCacheDir());
+        maxBytes = properties.getAudioCacheMaxBytes();
+        hits = metrics.counter("porter_tts_cache_hits_total", "Audio requests served from the disk cache");
+        misses = metrics.counter("porter_tts_cache_misses_total", "Audio requests that had to be rendered first");
+        evictions = metrics.counter("porter_tts_cache_evictions_total", "Cached audio files evicted to stay within the size limit");
+        metrics.gauge("porter_tts_cache_bytes", "Bytes of audio in the disk cache", this::getTotalBytes);
+        metrics.gauge("porter_tts_cache_files", "Audio files in the disk cache", this::getFileCount);
+
+        Files.createDirectories(directory);
+        deleter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audio-cache-delete");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path file : entries) {
+                if (NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                } else if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file); // left by a crash mid-write
+                }
+            }
+        }
+        files.sort(Comparator.comparing(AudioCache::lastModified));
+        List<Path> evicted;
+        synchronized (index) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                index.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evicted = evict(null);
+        }
+        delete(evicted); // nothing can be serving them yet
+        log.info("Audio cache at {}: {} files, {} bytes", directory, index.size(), totalBytes);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (deleter != null) {
+            // Files still waiting are over the limit; the next start evicts them again
+            deleter.shutdownNow();
+        }
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    /**
+     * @return The cached file, or null if the name is not cached
+     */
+    public Path get(String name) {
+        synchronized (index) {
+            if (index.get(name) == null) {
+                return null;
+            }
+        }
+        return directory.resolve(name);
+    }
+
+    /**
+     * Returns the cached file, rendering and caching it first if needed.
+     */
+    public CompletableFuture<Path> getOrRender(String name, Renderer renderer) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid audio cache name " + name);
+        }
+        Path cached = get(name);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> inFlight = rendering.putIfAbsent(name, mine);
+        if (inFlight != null) {
+            hits.increment();
+            return inFlight;
+        }
+        misses.increment();
+        try {
+            // Rendered by another caller between our lookup and claiming the name
+            Path file = get(name);
+            mine.complete(file != null ? file : write(name, renderer));
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+        } finally {
+            rendering.remove(name);
+        }
+        return mine;
+    }
+
+    public long getTotalBytes() {
+        synchronized (index) {
+            return totalBytes;
+        }
+    }
+
+    public int getFileCount() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    private Path write(String name, Renderer renderer) throws IOException {
+        Path file = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        long size;
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            renderer.render(chunk -> {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            });
+            size = channel.size();
+        }
+        List<Path> evicted;
+        synchronized (index) {
+            // Under the lock, so a delayed delete of an earlier file with this name cannot remove this one
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Long previous = index.put(name, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evicted = evict(name);
+        }
+        deleteLater(evicted);
+        return file;
+    }
+
+    // Called holding the index lock; the files are deleted after it is released
+    private List<Path> evict(String keep) {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            evicted.add(directory.resolve(entry.getKey()));
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    private void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+                evictions.increment();
+            } catch (IOException e) {
+                log.warn("Could not delete evicted audio {}", file, e);
+            }
+        }
+    }
+
+    private void deleteLater(List<Path> files) {
+        if (!files.isEmpty()) {
+            deleter.schedule(() -> deleteUnlessCachedAgain(files), DELETE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // A name rendered again since has a new file under the same path, which must stay
+    private void deleteUnlessCachedAgain(List<Path> files) {
+        List<Path> stale = new ArrayList<>(files.size());
+        synchronized (index) {
+            for (Path file : files) {
+                if (!index.containsKey(file.getFileName().toString())) {
+                    stale.add(file);
+                }
+            }
+            delete(stale);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
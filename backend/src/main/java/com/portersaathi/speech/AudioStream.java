@@ -0,0 +1,84 @@
+package com.portersaathi.speech;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Audio of one dynamic answer while it is being rendered. Chunks are kept
+ * as they arrive, so a listener that subscribes late first gets everything
+ * rendered so far and then each new chunk as soon as it is appended.
+ */
+public final class AudioStream {
+
+    /**
+     * Receives the chunks of a stream in order.
+     */
+    public interface Listener {
+        void chunk(byte[] chunk) throws IOException;
+
+        /**
+         * @param error Why rendering failed, or null once the audio is complete
+         */
+        void end(Throwable error);
+    }
+
+    private final String contentType;
+    private final long createdNanos = System.nanoTime();
+    private final List<byte[]> chunks = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean done;
+    private Throwable error;
+
+    AudioStream(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * Replays what has been rendered so far, then follows the stream.
+     */
+    public synchronized void subscribe(Listener listener) {
+        try {
+            for (byte[] chunk : chunks) {
+                listener.chunk(chunk);
+            }
+        } catch (IOException e) {
+            return; // the client went away
+        }
+        if (done) {
+            listener.end(error);
+        } else {
+            listeners.add(listener);
+        }
+    }
+
+    // Listeners are called under the lock so each one sees chunks in order
+    synchronized void append(byte[] chunk) {
+        chunks.add(chunk);
+        for (Iterator<Listener> it = listeners.iterator(); it.hasNext(); ) {
+            try {
+                it.next().chunk(chunk);
+            } catch (IOException e) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void finish(Throwable failure) {
+        done = true;
+        error = failure;
+        for (Listener listener : listeners) {
+            listener.end(failure);
+        }
+        listeners.clear();
+    }
+}
@@ -0,0 +1,36 @@
+package com.portersaathi.speech;
+
+import java.io.IOException;
+
+/**
+ * Text-to-speech backend. To plug in a real engine, declare it as a
+ * {@code @Primary} bean; {@link ToneSpeechEngine} is the offline stand-in.
+ */
+public interface SpeechEngine {
+
+    /**
+     * Identifies the engine and voice. Part of every cache key, so it must
+     * change whenever the engine would render the same text differently.
+     */
+    String getName();
+
+    String getContentType();
+
+    /**
+     * File extension for cached renderings, without the dot.
+     */
+    String getFileExtension();
+
+    /**
+     * Renders text, handing the audio over as soon as each piece is ready
+     * so it can be streamed before the whole answer is done. The first
+     * chunk carries the container header, and the concatenated chunks
+     * form one playable file.
+     * @param language Language code of the text
+     */
+    void synthesize(String text, String language, Sink sink) throws IOException;
+
+    interface Sink {
+        void write(byte[] chunk) throws IOException;
+    }
+}
@@ -0,0 +1,235 @@
+package com.portersaathi.speech;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.LatencyHistogram;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.AssistantResponse;
+import com.portersaathi.service.ResponseCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds spoken audio to assistant answers when
+ * {@code porter.voice-responses-enabled} is set.
+ *
+ * Static answers from the response catalog are rendered once, named by a
+ * hash of engine, language and text, and kept in the {@link AudioCache};
+ * their audioUrl points at {@code /api/audio/{name}}. Any other answer is
+ * rendered on the speech threads as soon as it is given and its audioUrl
+ * points at {@code /api/audio/stream/{id}}, which streams each chunk as it
+ * is rendered. Streams are dropped after {@code porter.tts-stream-ttl-seconds}.
+ * When the speech threads are saturated an answer stays text-only rather
+ * than waiting.
+ */
+@Service
+public class SpeechService {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeechService.class);
+
+    private static final String AUDIO_PATH = "/api/audio/";
+    private static final String STREAM_PATH = "/api/audio/stream/";
+    private static final long SWEEP_SECONDS = 10;
+
+    @Autowired
+    private ApplicationProperties properties;
+
+    @Autowired
+    private SpeechEngine engine;
+
+    @Autowired
+    private AudioCache cache;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    // Catalog texts by identity: answers reuse the catalog's String instances, so
+    // telling a static answer from a dynamic one needs no hashing per request
+    private volatile Map<String, Phrase> phrasesByText = Collections.emptyMap();
+    private final Map<String, Phrase> phrasesByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AudioStream> streams = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor renderers;
+    private ScheduledExecutorService timer;
+    private LongAdder skipped;
+    private LatencyHistogram renderLatency;
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, properties.getTtsThreads());
+        AtomicInteger counter = new AtomicInteger();
+        renderers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getTtsMaxStreams())), runnable -> {
+                    Thread thread = new Thread(runnable, "speech-render-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "speech-stream-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::safeSweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+
+        skipped = metrics.counter("porter_tts_skipped_total", "Answers left text-only because speech rendering was saturated");
+        renderLatency = metrics.histogram("porter_tts_render_seconds", "Time to render the audio of one dynamic answer");
+        metrics.gauge("porter_tts_streams", "Dynamic answer streams held for clients", streams::size);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+        renderers.shutdownNow();
+    }
+
+    /**
+     * Registers the catalog's texts as static phrases and renders any that
+     * are not cached yet in the background.
+     */
+    public void registerPhrases(ResponseCatalog catalog) {
+        Map<String, Phrase> byText = new IdentityHashMap<>();
+        catalog.forEachText((language, text) -> {
+            Phrase phrase = new Phrase(name(language, text), language, text);
+            byText.put(text, phrase);
+            phrasesByName.put(phrase.name, phrase);
+        });
+        phrasesByText = byText;
+        if (properties.isVoiceResponsesEnabled()) {
+            for (Phrase phrase : byText.values()) {
+                try {
+                    renderers.execute(() -> cachedAudio(phrase.name));
+                } catch (RejectedExecutionException e) {
+                    break; // the rest are rendered on first request
+                }
+            }
+        }
+    }
+
+    /**
+     * Points the answer at its audio and makes it an audio response. Leaves
+     * it unchanged when voice responses are off or rendering is saturated.
+     * @param language The language the answer was requested in
+     */
+    public void attachAudio(AssistantResponse response, String language) {
+        String text = response.getResponse();
+        if (!properties.isVoiceResponsesEnabled() || text == null || text.isEmpty()) {
+            return;
+        }
+        Phrase phrase = phrasesByText.get(text);
+        if (phrase != null) {
+            response.setType("audio");
+            response.setAudioUrl(AUDIO_PATH + phrase.name);
+            return;
+        }
+        if (streams.size() >= properties.getTtsMaxStreams()) {
+            skipped.increment();
+            return;
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        AudioStream stream = new AudioStream(engine.getContentType());
+        streams.put(id, stream);
+        try {
+            renderers.execute(() -> render(stream, text, language));
+        } catch (RejectedExecutionException e) {
+            streams.remove(id);
+            skipped.increment();
+            return;
+        }
+        response.setType("audio");
+        response.setAudioUrl(STREAM_PATH + id);
+    }
+
+    /**
+     * Audio of a static phrase, rendered first if it is not cached.
+     * @return The file, or null if no phrase has this name
+     */
+    public CompletableFuture<Path> cachedAudio(String name) {
+        Phrase phrase = phrasesByName.get(name);
+        if (phrase == null) {
+            return null;
+        }
+        return cache.getOrRender(name, sink -> engine.synthesize(phrase.text, phrase.language, sink));
+    }
+
+    /**
+     * @return The stream of a dynamic answer, or null if unknown or expired
+     */
+    public AudioStream stream(String id) {
+        return streams.get(id);
+    }
+
+    public String getContentType() {
+        return engine.getContentType();
+    }
+
+    private void render(AudioStream stream, String text, String language) {
+        long start = System.nanoTime();
+        try {
+            engine.synthesize(text, language, stream::append);
+            stream.finish(null);
+        } catch (Exception e) {
+            log.warn("Speech rendering failed", e);
+            stream.finish(e);
+        }
+        renderLatency.recordNanos(System.nanoTime() - start);
+    }
+
+    private void safeSweep() {
+        try {
+            long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(properties.getTtsStreamTtlSeconds());
+            streams.values().removeIf(stream -> stream.getCreatedNanos() - cutoff < 0);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next time
+            log.error("Speech stream sweep failed", e);
+        }
+    }
+
+    private String name(String language, String text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((engine.getName() + '\0' + language + '\0' + text).getBytes(StandardCharsets.UTF_8));
+            byte[] digest = sha.digest();
+            StringBuilder name = new StringBuilder(40);
+            for (int i = 0; i < 16; i++) {
+                name.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return name.append('.').append(engine.getFileExtension()).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Phrase {
+        final String name;
+        final String language;
+        final String text;
+
+        Phrase(String name, String language, String text) {
+            this.name = name;
+            this.language = language;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.portersaathi.speech;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline stand-in for a real text-to-speech engine, for development and
+ * load tests. Every word becomes a short tone whose pitch depends on the
+ * word and whose length on its letters, with pauses between words and
+ * longer ones after sentences, so output is deterministic and about as
+ * long as speech would be. Renders 8 kHz 16-bit mono WAV, one chunk per
+ * sentence.
+ */
+@Component
+public class ToneSpeechEngine implements SpeechEngine {
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final int MILLIS_PER_LETTER = 55;
+    private static final int MIN_WORD_MILLIS = 120;
+    private static final int MAX_WORD_MILLIS = 450;
+    private static final int WORD_GAP_MILLIS = 40;
+    private static final int SENTENCE_GAP_MILLIS = 250;
+    private static final int FADE_SAMPLES = 40; // 5 ms, avoids clicks at tone edges
+    private static final double AMPLITUDE = 0.3 * Short.MAX_VALUE;
+
+    @Override
+    public String getName() {
+        return "tone-stub-1";
+    }
+
+    @Override
+    public String getContentType() {
+        return "audio/wav";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "wav";
+    }
+
+    @Override
+    public void synthesize(String text, String language, Sink sink) throws IOException {
+        List<List<String>> sentences = sentences(text);
+        int totalSamples = 0;
+        for (List<String> sentence : sentences) {
+            totalSamples += sentenceSamples(sentence);
+        }
+        byte[] header = header(totalSamples);
+        boolean first = true;
+        for (List<String> sentence : sentences) {
+            byte[] chunk = render(sentence);
+            if (first) {
+                byte[] withHeader = new byte[header.length + chunk.length];
+                System.arraycopy(header, 0, withHeader, 0, header.length);
+                System.arraycopy(chunk, 0, withHeader, header.length, chunk.length);
+                chunk = withHeader;
+                first = false;
+            }
+            sink.write(chunk);
+        }
+        if (first) {
+            sink.write(header);
+        }
+    }
+
+    private static List<List<String>> sentences(String text) {
+        List<List<String>> sentences = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (String word : text.trim().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            current.add(word);
+            char last = word.charAt(word.length() - 1);
+            if (last == '.' || last == '?' || last == '!' || last == '।') {
+                sentences.add(current);
+                current = new ArrayList<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            sentences.add(current);
+        }
+        return sentences;
+    }
+
+    private static int wordSamples(String word) {
+        int millis = Math.min(MAX_WORD_MILLIS, Math.max(MIN_WORD_MILLIS, word.length() * MILLIS_PER_LETTER));
+        return millis * SAMPLE_RATE / 1000;
+    }
+
+    private static int sentenceSamples(List<String> sentence) {
+        int samples = SENTENCE_GAP_MILLIS * SAMPLE_RATE / 1000;
+        for (String word : sentence) {
+            samples += wordSamples(word) + WORD_GAP_MILLIS * SAMPLE_RATE / 1000;
+        }
+        return samples;
+    }
+
+    private static byte[] render(List<String> sentence) {
+        byte[] pcm = new byte[sentenceSamples(sentence) * 2];
+        int offset = 0;
+        for (String word : sentence) {
+            int samples = wordSamples(word);
+            double frequency = 160 + Math.floorMod(word.hashCode(), 12) * 20;
+            double step = 2 * Math.PI * frequency / SAMPLE_RATE;
+            for (int i = 0; i < samples; i++) {
+                double envelope = Math.min(1, Math.min(i, samples - 1 - i) / (double) FADE_SAMPLES);
+                short sample = (short) (AMPLITUDE * envelope * Math.sin(step * i));
+                pcm[offset++] = (byte) sample;
+                pcm[offset++] = (byte) (sample >> 8);
+            }
+            offset += WORD_GAP_MILLIS * SAMPLE_RATE / 1000 * 2; // silence is already zero
+        }
+        return pcm;
+    }
+
+    private static byte[] header(int samples) {
+        int dataBytes = samples * 2;
+        byte[] header = new byte[WAV_HEADER_BYTES];
+        ascii(header, 0, "RIFF");
+        int32(header, 4, 36 + dataBytes);
+        ascii(header, 8, "WAVE");
+        ascii(header, 12, "fmt ");
+        int32(header, 16, 16); // fmt chunk size
+        int16(header, 20, 1); // PCM
+        int16(header, 22, 1); // mono
+        int32(header, 24, SAMPLE_RATE);
+        int32(header, 28, SAMPLE_RATE * 2); // byte rate
+        int16(header, 32, 2); // block align
+        int16(header, 34, 16); // bits per sample
+        ascii(header, 36, "data");
+        int32(header, 40, dataBytes);
+        return header;
+    }
+
+    private static void ascii(byte[] target, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            target[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void int16(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void int32(byte[] target, int offset, int value) {
+        int16(target, offset, value);
+        int16(target, offset + 2, value >> 16);
+    }
+}
@@ -0,0 +1,193 @@
+package com.portersaathi.persistence;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Recovery of the write-ahead log after a crash: a torn or corrupt frame at
+ * the end of the last segment is truncated away, anywhere else it fails
+ * the start.
+ */
+class DriverJournalTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryRecordAfterACrash() throws IOException {
+        DriverJournal journal = open(new State());
+        writeDays(journal, 3);
+        crash(journal);
+
+        State recovered = new State();
+        open(recovered);
+        assertEquals(List.of(DAY, DAY.plusDays(1), DAY.plusDays(2)), recovered.days());
+    }
+
+    @Test
+    void truncatesATornFrameAtTheEndOfTheLog() throws IOException {
+        DriverJournal journal = open(new State());
+        List<Long> ends = writeDays(journal, 3);
+        crash(journal);
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(ends.get(2) - 3);
+        }
+
+        State recovered = new State();
+        DriverJournal reopened = open(recovered);
+        assertEquals(List.of(DAY, DAY.plusDays(1)), recovered.days());
+        assertEquals(ends.get(1), Files.size(segment));
+
+        // The log stays usable: writes after the repair survive the next crash
+        writeDay(reopened, DAY.plusDays(5));
+        crash(reopened);
+        State again = new State();
+        open(again);
+        assertEquals(List.of(DAY, DAY.plusDays(1), DAY.plusDays(5)), again.days());
+    }
+
+    @Test
+    void truncatesAFrameWithABadChecksumAtTheEndOfTheLog() throws IOException {
+        DriverJournal journal = open(new State());
+        List<Long> ends = writeDays(journal, 3);
+        crash(journal);
+        Path segment = onlySegment();
+        flipByte(segment, ends.get(2) - 1);
+
+        State recovered = new State();
+        open(recovered);
+        assertEquals(List.of(DAY, DAY.plusDays(1)), recovered.days());
+        assertEquals(ends.get(1), Files.size(segment));
+    }
+
+    @Test
+    void refusesToStartWithACorruptFrameBeforeTheLastSegment() throws IOException {
+        DriverJournal first = open(new State());
+        List<Long> ends = writeDays(first, 2);
+        crash(first);
+        // Each start appends to a fresh segment, so this leaves two
+        DriverJournal second = open(new State());
+        writeDay(second, DAY.plusDays(7));
+        crash(second);
+        Path older = segments().get(0);
+        flipByte(older, ends.get(0) - 1);
+
+        assertThrows(UncheckedIOException.class, () -> open(new State()));
+    }
+
+    private DriverJournal open(State state) {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setPersistenceDir(directory.toString());
+        properties.setPersistenceFsync(false);
+        DriverJournal journal = new DriverJournal();
+        ReflectionTestUtils.setField(journal, "properties", properties);
+        journal.open(state);
+        return journal;
+    }
+
+    // Stops the journal without the snapshot a clean shutdown takes, as a crash would
+    private static void crash(DriverJournal journal) throws IOException {
+        ((WriteAheadLog) ReflectionTestUtils.getField(journal, "wal")).close();
+        ((ExecutorService) ReflectionTestUtils.getField(journal, "snapshotter")).shutdownNow();
+    }
+
+    // Writes a driver, then one earnings record per day; returns the segment size after each day
+    private List<Long> writeDays(DriverJournal journal, int days) throws IOException {
+        Driver driver = new Driver();
+        driver.setId("driver1");
+        driver.setName("Test Driver");
+        try (DriverJournal.Write write = journal.begin()) {
+            write.driver(driver);
+        }
+        List<Long> ends = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            writeDay(journal, DAY.plusDays(i));
+            ends.add(Files.size(segments().get(segments().size() - 1)));
+        }
+        return ends;
+    }
+
+    private static void writeDay(DriverJournal journal, LocalDate date) {
+        DailyEarnings earnings = new DailyEarnings();
+        earnings.setTotalEarnings(1000);
+        earnings.setCompletedTrips(4);
+        try (DriverJournal.Write write = journal.begin()) {
+            write.earnings("driver1", date, earnings);
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0xFF));
+            one.rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private static final class State implements JournaledState {
+
+        private final Map<String, Driver> drivers = new LinkedHashMap<>();
+
+        @Override
+        public void restoreDriver(Driver driver) {
+            drivers.put(driver.getId(), driver);
+        }
+
+        @Override
+        public void restoreEarnings(String driverId, LocalDate date, DailyEarnings earnings) {
+            drivers.get(driverId).getEarnings().put(date, earnings);
+        }
+
+        @Override
+        public Iterable<Driver> snapshotDrivers() {
+            return drivers.values();
+        }
+
+        List<LocalDate> days() {
+            Driver driver = drivers.get("driver1");
+            return driver == null ? List.of() : driver.getEarnings().keySet().stream().sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.EmergencyAlert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Which repeated emergencies are sent again and which are answered with
+ * the alert already sent.
+ */
+class EmergencyDispatcherTest {
+
+    private final List<EmergencyAlert> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean holding;
+    private volatile boolean failing;
+    private EmergencyDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEmergencyMaxAttempts(1);
+        properties.setEmergencyResponseTimeout(5);
+        EmergencyNotifier notifier = new EmergencyNotifier() {
+            @Override
+            public String getChannel() {
+                return "test";
+            }
+
+            @Override
+            public void send(EmergencyAlert alert) throws Exception {
+                sent.add(alert);
+                if (holding) {
+                    release.await();
+                }
+                if (failing) {
+                    throw new IllegalStateException("channel down");
+                }
+            }
+        };
+        dispatcher = new EmergencyDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "properties", properties);
+        ReflectionTestUtils.setField(dispatcher, "notifiers", List.of(notifier));
+        ReflectionTestUtils.setField(dispatcher, "metrics", new MetricsRegistry());
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        dispatcher.stop();
+    }
+
+    @Test
+    void answersARepeatWithTheAlertInFlight() throws Exception {
+        holding = true;
+        EmergencyAlert first = alert(null, null);
+        CompletableFuture<EmergencyAlert> sending = dispatcher.dispatch(first);
+
+        EmergencyAlert repeat = alert(null, null);
+        CompletableFuture<EmergencyAlert> answer = dispatcher.dispatch(repeat);
+        release.countDown();
+
+        assertSame(first, answer.get(5, TimeUnit.SECONDS));
+        assertSame(first, sending.get(5, TimeUnit.SECONDS));
+        assertEquals("duplicate", repeat.getStatus());
+        assertEquals(first.getAlertId(), repeat.getAlertId());
+        assertEquals(List.of(first), sent);
+    }
+
+    @Test
+    void sendsARepeatWithANewLocationWhileTheFirstIsInFlight() throws Exception {
+        holding = true;
+        CompletableFuture<EmergencyAlert> first = dispatcher.dispatch(alert(null, null));
+        EmergencyAlert located = alert(null, "12.97,77.59");
+        CompletableFuture<EmergencyAlert> answer = dispatcher.dispatch(located);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        assertSame(located, answer.get(5, TimeUnit.SECONDS));
+        assertEquals("delivered", located.getStatus());
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void answersAClientRetryOfADeliveredAlert() throws Exception {
+        EmergencyAlert first = alert("client-1", null);
+        dispatcher.dispatch(first).get(5, TimeUnit.SECONDS);
+
+        EmergencyAlert retry = alert("client-1", null);
+        assertSame(first, dispatcher.dispatch(retry).get(5, TimeUnit.SECONDS));
+        assertEquals("duplicate", retry.getStatus());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void sendsANewAlertOnceTheLastWasDelivered() throws Exception {
+        dispatcher.dispatch(alert(null, null)).get(5, TimeUnit.SECONDS);
+        EmergencyAlert again = alert(null, null);
+
+        assertSame(again, dispatcher.dispatch(again).get(5, TimeUnit.SECONDS));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void sendsAgainAfterAFailedDelivery() throws Exception {
+        failing = true;
+        EmergencyAlert first = alert("client-1", null);
+        assertEquals("failed", dispatcher.dispatch(first).get(5, TimeUnit.SECONDS).getStatus());
+
+        failing = false;
+        EmergencyAlert retry = alert("client-1", null);
+        EmergencyAlert result = dispatcher.dispatch(retry).get(5, TimeUnit.SECONDS);
+        assertSame(retry, result);
+        assertEquals("delivered", result.getStatus());
+        assertNotEquals("duplicate", retry.getStatus());
+        assertEquals(2, sent.size());
+    }
+
+    private static EmergencyAlert alert(String alertId, String location) {
+        EmergencyAlert alert = new EmergencyAlert();
+        alert.setAlertId(alertId);
+        alert.setDriverId("driver1");
+        alert.setLocation(location);
+        alert.setEmergencyType("sos");
+        return alert;
+    }
+}
@@ -0,0 +1,125 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.ExpiryReminder;
+import com.portersaathi.model.Vehicle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Insurance reminders from indexing to the driver's next answer, for a
+ * driver whose insurance runs out a week from today.
+ */
+class ExpiryRemindersTest {
+
+    private final LocalDate today = LocalDate.now();
+    private final Driver driver = new Driver();
+    private final SimpMessagingTemplate messaging = mock(SimpMessagingTemplate.class);
+    private ExpiryReminders reminders;
+
+    @BeforeEach
+    void setUp() {
+        driver.setId("driver1");
+        driver.setLanguagePreference("en");
+        Vehicle vehicle = new Vehicle();
+        vehicle.setNumber("MH01AB1234");
+        driver.setVehicle(vehicle);
+        DriverStore driverStore = mock(DriverStore.class);
+        when(driverStore.get("driver1")).thenReturn(driver);
+        when(driverStore.all()).thenReturn(List.of());
+
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setExpiryCheckSeconds(Integer.MAX_VALUE);
+        reminders = new ExpiryReminders();
+        ReflectionTestUtils.setField(reminders, "properties", properties);
+        ReflectionTestUtils.setField(reminders, "driverStore", driverStore);
+        ReflectionTestUtils.setField(reminders, "messagingTemplate", messaging);
+        ReflectionTestUtils.setField(reminders, "metrics", new MetricsRegistry());
+        reminders.start();
+
+        ResponseCatalog catalog = new ResponseCatalog("en");
+        catalog.register("greeting", "en", "Hello"); // templates alone do not make a language supported
+        catalog.registerTemplate("reminder_insurance", "en", "The insurance for your vehicle {} expires in {} days, on {}.");
+        catalog.registerTemplate("reminder_insurance_today", "en", "The insurance for your vehicle {} expires today.");
+        reminders.registerTemplates(catalog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reminders.stop();
+    }
+
+    @Test
+    void remindsAWeekAheadAndHoldsTheReminderForTheNextAnswer() {
+        expiresIn(7);
+        reminders.schedule("driver1");
+
+        assertEquals(1, reminders.drain(today));
+        ArgumentCaptor<ExpiryReminder> sent = ArgumentCaptor.forClass(ExpiryReminder.class);
+        verify(messaging).convertAndSend(eq("/topic/driver/driver1/reminders"), sent.capture());
+        assertEquals(7, sent.getValue().getDaysLeft());
+
+        ExpiryReminder taken = reminders.take(driver, "en");
+        assertEquals("The insurance for your vehicle MH01AB1234 expires in 7 days, on "
+                + today.plusDays(7).format(DateTimeFormatter.ofPattern("d MMMM uuuu", Locale.ENGLISH))
+                + ".", taken.getText());
+        assertNull(reminders.take(driver, "en"), "a reminder goes with one answer only");
+    }
+
+    @Test
+    void remindsAgainOnTheLaterLeadDays() {
+        expiresIn(7);
+        reminders.schedule("driver1");
+
+        assertEquals(1, reminders.drain(today));
+        assertEquals(0, reminders.drain(today.plusDays(5)));
+        assertEquals(1, reminders.drain(today.plusDays(6)));
+        assertEquals(1, reminders.drain(today.plusDays(7)));
+        assertEquals(0, reminders.getScheduled());
+    }
+
+    @Test
+    void doesNotRemindAboutInsuranceThatHasAlreadyExpired() {
+        driver.getVehicle().setInsuranceExpiry("2024-12-31");
+        reminders.schedule("driver1");
+
+        assertEquals(0, reminders.getScheduled());
+        assertEquals(0, reminders.drain(today));
+        verify(messaging, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void dropsRemindersForADateThatHasSinceMoved() {
+        expiresIn(7);
+        reminders.schedule("driver1");
+        expiresIn(100);
+
+        assertEquals(0, reminders.drain(today));
+        assertNull(reminders.take(driver, "en"));
+    }
+
+    private void expiresIn(int days) {
+        driver.getVehicle().setInsuranceExpiry(today.plusDays(days).toString());
+    }
+}
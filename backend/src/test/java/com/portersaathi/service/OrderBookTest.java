@@ -0,0 +1,136 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.model.Order;
+import com.portersaathi.model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Simultaneous accepts: every order goes to exactly one driver, and a
+ * driver never holds two orders.
+ */
+class OrderBookTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 300;
+
+    private OrderBook book;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        book = new OrderBook();
+        ReflectionTestUtils.setField(book, "properties", new ApplicationProperties());
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void exactlyOneDriverWinsARacedOrder() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            String orderId = book.post(newOrder()).getId();
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Callable<OrderBook.Outcome>> drivers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String driverId = "driver" + t;
+                drivers.add(() -> {
+                    start.await();
+                    return book.accept(orderId, driverId);
+                });
+            }
+
+            String winner = null;
+            List<Future<OrderBook.Outcome>> outcomes = pool.invokeAll(drivers);
+            for (int t = 0; t < THREADS; t++) {
+                OrderBook.Outcome outcome = outcomes.get(t).get();
+                if (outcome == OrderBook.Outcome.DONE) {
+                    assertNull(winner, "second winner in round " + round);
+                    winner = "driver" + t;
+                } else {
+                    assertEquals(OrderBook.Outcome.ALREADY_TAKEN, outcome);
+                }
+            }
+
+            Order order = book.get(orderId);
+            assertEquals(OrderStatus.ACCEPTED, order.getStatus());
+            assertEquals(winner, order.getDriverId());
+            assertEquals(orderId, book.activeOrderOf(winner));
+            assertFalse(book.isAvailable(orderId));
+            for (int t = 0; t < THREADS; t++) {
+                if (!("driver" + t).equals(winner)) {
+                    assertNull(book.activeOrderOf("driver" + t));
+                }
+            }
+
+            // Delivering frees the winner for the next round
+            assertEquals(OrderBook.Outcome.DONE, book.transition(orderId, winner, OrderStatus.PICKED_UP));
+            assertEquals(OrderBook.Outcome.DONE, book.transition(orderId, winner, OrderStatus.DELIVERED));
+            assertNull(book.activeOrderOf(winner));
+        }
+        assertEquals(0, book.availableCount());
+    }
+
+    @Test
+    void aDriverRacingForSeveralOrdersGetsOnlyOne() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            String driverId = "driver" + round;
+            List<String> orderIds = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                orderIds.add(book.post(newOrder()).getId());
+            }
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Callable<OrderBook.Outcome>> attempts = new ArrayList<>();
+            for (String orderId : orderIds) {
+                attempts.add(() -> {
+                    start.await();
+                    return book.accept(orderId, driverId);
+                });
+            }
+
+            int won = 0;
+            for (Future<OrderBook.Outcome> outcome : pool.invokeAll(attempts)) {
+                if (outcome.get() == OrderBook.Outcome.DONE) {
+                    won++;
+                } else {
+                    assertEquals(OrderBook.Outcome.DRIVER_BUSY, outcome.get());
+                }
+            }
+            assertEquals(1, won);
+
+            String held = book.activeOrderOf(driverId);
+            for (String orderId : orderIds) {
+                assertEquals(!orderId.equals(held), book.isAvailable(orderId));
+            }
+            assertEquals(OrderBook.Outcome.DONE, book.transition(held, driverId, OrderStatus.CANCELLED));
+        }
+    }
+
+    private static Order newOrder() {
+        Order order = new Order();
+        order.setPickupAddress("Pickup");
+        order.setDeliveryAddress("Drop");
+        order.setPaymentAmount(250);
+        return order;
+    }
+}
@@ -0,0 +1,84 @@
+package com.portersaathi.service;
+
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Permits are given back on every path, including refusals and handlers
+ * that throw, so the limit and the shed threshold never drift.
+ */
+class QueryExecutorTest {
+
+    private QueryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setExecutionMode("async");
+        properties.setExecutionMaxConcurrency(4);
+        executor = new QueryExecutor();
+        ReflectionTestUtils.setField(executor, "properties", properties);
+        ReflectionTestUtils.setField(executor, "metrics", new MetricsRegistry());
+        executor.start();
+    }
+
+    @Test
+    void releasesThePermitWhenThePoolRefusesTheTask() {
+        executor.stop();
+
+        CompletableFuture<String> result = executor.execute(() -> "answer");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    void releasesTheUrgentPermitWhenThePoolRefusesTheTask() {
+        executor.stop();
+
+        assertTrue(executor.executeUrgent(() -> "answer").isCompletedExceptionally());
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    void refusesAsyncHandlersThatRejectTheWork() {
+        CompletableFuture<String> result = executor.executeAsync(() -> {
+            throw new RejectedExecutionException("pool closed");
+        }, false);
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    void rethrowsOtherAsyncHandlerFailures() {
+        assertThrows(IllegalStateException.class, () -> executor.executeAsync(() -> {
+            throw new IllegalStateException("bug");
+        }, false));
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    void releasesAnAsyncPermitWhenTheHandlerCompletes() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> result = executor.executeAsync(() -> pending, false);
+        assertEquals(1, executor.getInFlight());
+
+        pending.complete("done");
+        assertEquals("done", result.join());
+        assertEquals(0, executor.getInFlight());
+    }
+}
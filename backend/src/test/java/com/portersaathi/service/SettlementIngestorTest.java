@@ -0,0 +1,125 @@
+package com.portersaathi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portersaathi.config.ApplicationProperties;
+import com.portersaathi.metrics.MetricsRegistry;
+import com.portersaathi.model.DailyEarnings;
+import com.portersaathi.model.Driver;
+import com.portersaathi.model.SettlementReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CSV splitting and quoting, on its own and through a whole import.
+ */
+class SettlementIngestorTest {
+
+    private final Map<String, Map<LocalDate, DailyEarnings>> merged = new HashMap<>();
+    private SettlementIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        DriverStore driverStore = mock(DriverStore.class);
+        when(driverStore.get("driver1")).thenReturn(new Driver());
+        when(driverStore.mergeEarnings(any())).thenAnswer(invocation -> {
+            Map<String, Map<LocalDate, DailyEarnings>> deltas = invocation.getArgument(0);
+            synchronized (merged) {
+                deltas.forEach((driverId, days) -> merged.computeIfAbsent(driverId, id -> new HashMap<>()).putAll(days));
+            }
+            return new ArrayList<>(deltas.keySet());
+        });
+
+        ingestor = new SettlementIngestor();
+        ReflectionTestUtils.setField(ingestor, "driverStore", driverStore);
+        ReflectionTestUtils.setField(ingestor, "earningsPublisher", mock(EarningsPublisher.class));
+        ReflectionTestUtils.setField(ingestor, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(ingestor, "properties", new ApplicationProperties());
+        ReflectionTestUtils.setField(ingestor, "metrics", new MetricsRegistry());
+        ingestor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestor.stop();
+    }
+
+    @Test
+    void splitsPlainFields() {
+        assertEquals(List.of("a", "b", "c"), SettlementIngestor.splitCsv("a,b,c"));
+    }
+
+    @Test
+    void keepsEmptyFields() {
+        assertEquals(List.of("", "b", "", ""), SettlementIngestor.splitCsv(",b,,"));
+        assertEquals(List.of(""), SettlementIngestor.splitCsv(""));
+    }
+
+    @Test
+    void keepsCommasInsideQuotes() {
+        assertEquals(List.of("a", "Late, by 10 min", "c"), SettlementIngestor.splitCsv("a,\"Late, by 10 min\",c"));
+    }
+
+    @Test
+    void unescapesDoubledQuotes() {
+        assertEquals(List.of("say \"hi\"", "x"), SettlementIngestor.splitCsv("\"say \"\"hi\"\"\",x"));
+        assertEquals(List.of("\""), SettlementIngestor.splitCsv("\"\"\"\""));
+    }
+
+    @Test
+    void readsAnUnterminatedQuoteToTheEndOfTheLine() {
+        assertEquals(List.of("a", "b,c"), SettlementIngestor.splitCsv("a,\"b,c"));
+    }
+
+    @Test
+    void importsQuotedFieldsByHeaderName() throws IOException {
+        LocalDate day = LocalDate.now();
+        String csv = "DriverId,\"Date\",tripId,fare,expenses,penaltyReason,rewardReason\r\n"
+                + "driver1," + day + ",t1,500,50,\"Late, by 10 min\",\r\n"
+                + "\"driver1\",\"" + day + "\",\"t2\",\" 700.5 \",70,,\"Said \"\"thanks\"\"\"\n";
+
+        SettlementReport report = ingest(csv);
+
+        assertEquals(2, report.getAccepted());
+        assertEquals(0, report.getRejected());
+        DailyEarnings earnings = merged.get("driver1").get(day);
+        assertEquals(1200.5, earnings.getTotalEarnings(), 1e-9);
+        assertEquals(120, earnings.getExpenses(), 1e-9);
+        assertEquals(2, earnings.getCompletedTrips());
+        assertEquals(Map.of("t1", "Late, by 10 min"), earnings.getPenalties());
+        assertEquals(Map.of("t2", "Said \"thanks\""), earnings.getRewards());
+    }
+
+    @Test
+    void rejectsRowsWhoseQuotedFieldsDoNotParse() throws IOException {
+        String csv = "driverId,date,fare\n"
+                + "driver1," + LocalDate.now() + ",\"5,00\"\n"
+                + "driver1,\"not, a date\",5\n";
+
+        SettlementReport report = ingest(csv);
+
+        assertEquals(0, report.getAccepted());
+        assertEquals(2, report.getRejected());
+    }
+
+    private SettlementReport ingest(String csv) throws IOException {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        return ingestor.ingest(Channels.newChannel(new ByteArrayInputStream(bytes)), SettlementIngestor.Format.CSV);
+    }
+}